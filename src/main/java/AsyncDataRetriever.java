@@ -0,0 +1,216 @@
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Asynchronous façade of a DataStore: every call runs on a virtual thread and returns a
+ * CompletableFuture, so independent lookups can be composed concurrently. At most
+ * maxConcurrency calls run at once, the others wait for a slot without holding a platform
+ * thread. A call that times out or whose future is cancelled has its running JDBC statement
+ * cancelled on the server, see QueryCancellation.
+ */
+public class AsyncDataRetriever implements AutoCloseable {
+    private final DataStore dataStore;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Duration timeout;
+
+    public AsyncDataRetriever(DataStore dataStore, int maxConcurrency, Duration timeout) {
+        this(dataStore, Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("async-data-", 0).factory()),
+                new Semaphore(maxConcurrency), timeout);
+    }
+
+    private AsyncDataRetriever(DataStore dataStore, ExecutorService executor, Semaphore permits, Duration timeout) {
+        this.dataStore = dataStore;
+        this.executor = executor;
+        this.permits = permits;
+        this.timeout = timeout;
+    }
+
+    /**
+     * View of this façade whose calls time out after the given duration; it shares the
+     * executor and the concurrency limit.
+     */
+    public AsyncDataRetriever withTimeout(Duration callTimeout) {
+        return new AsyncDataRetriever(dataStore, executor, permits, callTimeout);
+    }
+
+    /**
+     * Runs any call against the data store; the building block of the other methods.
+     */
+    public <T> CompletableFuture<T> submit(Function<DataStore, T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        QueryCancellation cancellation = new QueryCancellation();
+        // The restaurant of the caller, for a data store routing by TenantContext, and its
+        // session, so that the call reads the caller's writes.
+        String tenant = TenantContext.current();
+        ReadSession session = ReadSession.current();
+        Runnable task = tenant == null
+                ? () -> run(call, future, cancellation)
+                : () -> TenantContext.run(tenant, () -> run(call, future, cancellation));
+        try {
+            executor.execute(() -> ReadSession.run(session, task));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        future.whenComplete((result, failure) -> {
+            if (failure != null) {
+                cancellation.cancel();
+            }
+        });
+        return future;
+    }
+
+    private <T> void run(Function<DataStore, T> call, CompletableFuture<T> future, QueryCancellation cancellation) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            future.completeExceptionally(e);
+            return;
+        }
+        try {
+            // Timed out or cancelled while waiting for a slot.
+            if (!future.isDone()) {
+                future.complete(cancellation.run(() -> call.apply(dataStore)));
+            }
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public CompletableFuture<Order> findOrderByReference(String reference) {
+        return submit(store -> store.findOrderByReference(reference));
+    }
+
+    public CompletableFuture<Order> saveOrder(Order orderToSave) {
+        return submit(store -> store.saveOrder(orderToSave));
+    }
+
+    public CompletableFuture<OrderSubmission> submitOrder(Order orderToSave) {
+        return submit(store -> store.submitOrder(orderToSave));
+    }
+
+    public CompletableFuture<Page<Order>> findOrders(OrderFilter filter, Instant afterCreationDatetime, Integer afterId, int limit) {
+        return submit(store -> store.findOrders(filter, afterCreationDatetime, afterId, limit));
+    }
+
+    public CompletableFuture<Dish> findDishById(Integer id) {
+        return submit(store -> store.findDishById(id));
+    }
+
+    public CompletableFuture<Dish> saveDish(Dish toSave) {
+        return submit(store -> store.saveDish(toSave));
+    }
+
+    public CompletableFuture<List<Dish>> findAllDishes() {
+        return submit(DishRepository::findAllDishes);
+    }
+
+    public CompletableFuture<Page<Dish>> findDishes(DishFilter filter, Integer afterId, int limit) {
+        return submit(store -> store.findDishes(filter, afterId, limit));
+    }
+
+    public CompletableFuture<List<Dish>> searchDishesByName(String query, int limit) {
+        return submit(store -> store.searchDishesByName(query, limit));
+    }
+
+    public CompletableFuture<List<Dish>> findDishesUpdatedSince(Instant since) {
+        return submit(store -> store.findDishesUpdatedSince(since));
+    }
+
+    public CompletableFuture<Ingredient> findIngredientById(Integer id) {
+        return submit(store -> store.findIngredientById(id));
+    }
+
+    public CompletableFuture<Ingredient> saveIngredient(Ingredient toSave) {
+        return submit(store -> store.saveIngredient(toSave));
+    }
+
+    public CompletableFuture<List<Ingredient>> createIngredients(List<Ingredient> newIngredients) {
+        return submit(store -> store.createIngredients(newIngredients));
+    }
+
+    public CompletableFuture<List<Ingredient>> findAllIngredients() {
+        return submit(IngredientRepository::findAllIngredients);
+    }
+
+    public CompletableFuture<Page<Ingredient>> findIngredients(IngredientFilter filter, Integer afterId, int limit) {
+        return submit(store -> store.findIngredients(filter, afterId, limit));
+    }
+
+    public CompletableFuture<List<Ingredient>> searchIngredientsByName(String query, int limit) {
+        return submit(store -> store.searchIngredientsByName(query, limit));
+    }
+
+    public CompletableFuture<List<Ingredient>> findIngredientsUpdatedSince(Instant since) {
+        return submit(store -> store.findIngredientsUpdatedSince(since));
+    }
+
+    public CompletableFuture<Double> findIngredientPriceAt(Integer ingredientId, Instant at) {
+        return submit(store -> store.findIngredientPriceAt(ingredientId, at));
+    }
+
+    public CompletableFuture<List<IngredientPrice>> findIngredientPriceHistory(List<Integer> ingredientIds, Instant from, Instant to) {
+        return submit(store -> store.findIngredientPriceHistory(ingredientIds, from, to));
+    }
+
+    public CompletableFuture<List<StockMovement>> findStockMovementsByIngredientId(Integer id) {
+        return submit(store -> store.findStockMovementsByIngredientId(id));
+    }
+
+    public CompletableFuture<List<StockMovement>> findStockMovementsByIngredientId(Integer id, Instant from, Instant to) {
+        return submit(store -> store.findStockMovementsByIngredientId(id, from, to));
+    }
+
+    public CompletableFuture<Map<Integer, List<StockMovement>>> findStockMovements(Instant from, Instant to) {
+        return submit(store -> store.findStockMovements(from, to));
+    }
+
+    public CompletableFuture<List<StockLot>> findExpiringLots(Instant from, Instant to) {
+        return submit(store -> store.findExpiringLots(from, to));
+    }
+
+    public CompletableFuture<List<StockMovement>> saveStockMovements(Integer ingredientId, List<StockMovement> stockMovements) {
+        return submit(store -> store.saveStockMovements(ingredientId, stockMovements));
+    }
+
+    public CompletableFuture<RestaurantTable> saveTable(RestaurantTable table) {
+        return submit(store -> store.saveTable(table));
+    }
+
+    public CompletableFuture<List<RestaurantTable>> findAllTables() {
+        return submit(TableRepository::findAllTables);
+    }
+
+    public CompletableFuture<List<RestaurantTable>> findAvailableTables(Instant from, Instant to) {
+        return submit(store -> store.findAvailableTables(from, to));
+    }
+
+    public CompletableFuture<List<Order>> findTableBookings(Instant from, Instant to) {
+        return submit(store -> store.findTableBookings(from, to));
+    }
+
+    public CompletableFuture<List<Order>> findTableBookingsUpdatedSince(Instant since) {
+        return submit(store -> store.findTableBookingsUpdatedSince(since));
+    }
+
+    /**
+     * Stops accepting calls and waits for the running ones.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
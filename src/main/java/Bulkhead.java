@@ -0,0 +1,48 @@
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps the calls of one kind of traffic running at once, so that a burst of slow writes
+ * cannot take every connection from the reads, or the other way round. A call waits at
+ * most maxWait for a slot, then is refused.
+ */
+public class Bulkhead {
+    private final String name;
+    private final Semaphore permits;
+    private final long maxWaitNanos;
+    private final ResilienceMetrics metrics;
+
+    public Bulkhead(String name, int maxConcurrentCalls, Duration maxWait, ResilienceMetrics metrics) {
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.metrics = metrics;
+    }
+
+    public <T> T execute(Supplier<T> call) {
+        try {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                metrics.bulkheadRejected(name);
+                throw new DatabaseUnavailableException("The " + name + " bulkhead is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAvailableSlots() {
+        return permits.availablePermits();
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of dishes and ingredients, kept coherent across nodes by the
+ * changes of a ChangeNotificationListener. Entries are kept per restaurant of the
+ * TenantContext, whose ids overlap; a change of an id drops it for every restaurant, since
+ * notifications do not name theirs. Cached entities are shared between callers and must
+ * not be modified.
+ */
+public class CatalogCache implements Consumer<CatalogChanges> {
+    private final DishRepository dishRepository;
+    private final IngredientRepository ingredientRepository;
+    private final Map<Key, Dish> dishesById = new ConcurrentHashMap<>();
+    private final Map<Key, Ingredient> ingredientsById = new ConcurrentHashMap<>();
+    // Bumped on every invalidation, so that a load racing with it is not cached.
+    private final AtomicLong generation = new AtomicLong();
+
+    public CatalogCache(DataStore dataStore) {
+        this(dataStore, dataStore);
+    }
+
+    public CatalogCache(DishRepository dishRepository, IngredientRepository ingredientRepository) {
+        this.dishRepository = dishRepository;
+        this.ingredientRepository = ingredientRepository;
+    }
+
+    public CatalogCache listenTo(ChangeNotificationListener listener) {
+        listener.subscribe(this);
+        return this;
+    }
+
+    public Dish getDish(Integer id) {
+        return get(dishesById, id, dishRepository::findDishById);
+    }
+
+    public Ingredient getIngredient(Integer id) {
+        return get(ingredientsById, id, ingredientRepository::findIngredientById);
+    }
+
+    @Override
+    public void accept(CatalogChanges changes) {
+        generation.incrementAndGet();
+        if (changes.isReset()) {
+            dishesById.clear();
+            ingredientsById.clear();
+            return;
+        }
+        dishesById.keySet().removeIf(key -> changes.getDishIds().contains(key.id()));
+        ingredientsById.keySet().removeIf(key -> changes.getIngredientIds().contains(key.id()));
+        if (!changes.getIngredientIds().isEmpty()) {
+            // Dishes embed their ingredients, prices and stock included.
+            dishesById.values().removeIf(dish -> dish.getDishIngredients() != null && dish.getDishIngredients().stream()
+                    .anyMatch(dishIngredient -> changes.getIngredientIds().contains(dishIngredient.getIngredient().getId())));
+        }
+    }
+
+    private <T> T get(Map<Key, T> cache, Integer id, Function<Integer, T> loader) {
+        Key key = new Key(TenantContext.current(), id);
+        T cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long loadedAt = generation.get();
+        T loaded = loader.apply(id);
+        if (generation.get() == loadedAt) {
+            T raced = cache.putIfAbsent(key, loaded);
+            if (generation.get() != loadedAt) {
+                cache.remove(key, loaded);
+            }
+            return raced != null ? raced : loaded;
+        }
+        return loaded;
+    }
+
+    private record Key(String tenant, Integer id) {
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Entities changed by any node, coalesced from a burst of catalog_change notifications.
+ * A reset means the listener may have missed changes and every cache must be dropped.
+ */
+public class CatalogChanges {
+    private final Set<Integer> dishIds = new HashSet<>();
+    private final Set<Integer> ingredientIds = new HashSet<>();
+    private final Set<Integer> orderIds = new HashSet<>();
+    private boolean reset;
+
+    static CatalogChanges resetAll() {
+        CatalogChanges changes = new CatalogChanges();
+        changes.reset = true;
+        return changes;
+    }
+
+    void add(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0) {
+            reset = reset || payload.equals("reset");
+            return;
+        }
+        Integer id = Integer.valueOf(payload.substring(separator + 1));
+        switch (payload.substring(0, separator)) {
+            case "dish" -> dishIds.add(id);
+            case "ingredient" -> ingredientIds.add(id);
+            case "order" -> orderIds.add(id);
+            default -> reset = true;
+        }
+    }
+
+    boolean isEmpty() {
+        return !reset && dishIds.isEmpty() && ingredientIds.isEmpty() && orderIds.isEmpty();
+    }
+
+    public Set<Integer> getDishIds() {
+        return dishIds;
+    }
+
+    public Set<Integer> getIngredientIds() {
+        return ingredientIds;
+    }
+
+    public Set<Integer> getOrderIds() {
+        return orderIds;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogChanges{" +
+                "dishIds=" + dishIds +
+                ", ingredientIds=" + ingredientIds +
+                ", orderIds=" + orderIds +
+                ", reset=" + reset +
+                '}';
+    }
+}
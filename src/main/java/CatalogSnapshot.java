@@ -0,0 +1,434 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Dishes with their recipes, ingredients without stock, tables and the table bookings of a
+ * time window, as loaded at takenAt. A snapshot is written to a compact binary file and
+ * read back memory-mapped, so that a node starts warm without querying the catalog, then
+ * brought up to date by reconcile, which only loads the rows whose updated_at changed.
+ * Entities are shared between callers and must not be modified.
+ * File layout: magic, format version, payload length and CRC32 of the payload, then the
+ * payload. Enums are stored by ordinal: bump VERSION when one changes.
+ */
+public class CatalogSnapshot {
+    static final int MAGIC = 0x4D444353;
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    // Covers transactions still running when a snapshot is taken (updated_at is their start)
+    // and the clock skew between this node and the database.
+    private static final Duration RECONCILE_OVERLAP = Duration.ofMinutes(5);
+
+    private final Instant takenAt;
+    private final Instant bookingsFrom;
+    private final Instant bookingsTo;
+    private final Map<Integer, Dish> dishesById;
+    private final Map<Integer, Ingredient> ingredientsById;
+    private final List<RestaurantTable> tables;
+    private final Map<Integer, Order> bookingsById;
+
+    private CatalogSnapshot(Instant takenAt, Instant bookingsFrom, Instant bookingsTo, Map<Integer, Dish> dishesById,
+                            Map<Integer, Ingredient> ingredientsById, List<RestaurantTable> tables,
+                            Map<Integer, Order> bookingsById) {
+        this.takenAt = takenAt;
+        this.bookingsFrom = bookingsFrom;
+        this.bookingsTo = bookingsTo;
+        this.dishesById = dishesById;
+        this.ingredientsById = ingredientsById;
+        this.tables = List.copyOf(tables);
+        this.bookingsById = bookingsById;
+    }
+
+    /**
+     * Snapshot of the whole catalog, with the bookings overlapping [bookingsFrom, bookingsTo).
+     */
+    public static CatalogSnapshot capture(DataStore dataStore, Instant bookingsFrom, Instant bookingsTo) {
+        Instant takenAt = Instant.now();
+        Map<Integer, Ingredient> ingredientsById = byId(dataStore.findIngredientsUpdatedSince(null), Ingredient::getId);
+        Map<Integer, Dish> dishesById = byId(dataStore.findDishesUpdatedSince(null), Dish::getId);
+        Map<Integer, Order> bookingsById = byId(dataStore.findTableBookings(bookingsFrom, bookingsTo), Order::getId);
+        return new CatalogSnapshot(takenAt, bookingsFrom, bookingsTo, dishesById, ingredientsById,
+                dataStore.findAllTables(), bookingsById);
+    }
+
+    /**
+     * This snapshot brought up to date with the rows changed since it was taken, its bookings
+     * moved to the window [bookingsFrom, bookingsTo). Rows deleted since are not seen.
+     */
+    public CatalogSnapshot reconcile(DataStore dataStore, Instant newBookingsFrom, Instant newBookingsTo) {
+        Instant reconciledAt = Instant.now();
+        Instant since = takenAt.minus(RECONCILE_OVERLAP);
+
+        Map<Integer, Ingredient> ingredients = new TreeMap<>(ingredientsById);
+        Set<Integer> changedIngredientIds = new HashSet<>();
+        for (Ingredient ingredient : dataStore.findIngredientsUpdatedSince(since)) {
+            ingredients.put(ingredient.getId(), ingredient);
+            changedIngredientIds.add(ingredient.getId());
+        }
+
+        Map<Integer, Dish> dishes = new TreeMap<>(dishesById);
+        Set<Integer> changedDishIds = new HashSet<>();
+        for (Dish dish : dataStore.findDishesUpdatedSince(since)) {
+            dishes.put(dish.getId(), dish);
+            changedDishIds.add(dish.getId());
+        }
+        // Dishes embed their ingredients, prices included.
+        for (Dish dish : dishesById.values()) {
+            if (!changedDishIds.contains(dish.getId()) && dishIngredientsOf(dish).stream()
+                    .anyMatch(dishIngredient -> changedIngredientIds.contains(dishIngredient.getIngredient().getId()))) {
+                dishes.put(dish.getId(), withIngredients(dish, ingredients));
+            }
+        }
+
+        Map<Integer, Order> bookings = new TreeMap<>();
+        for (Order booking : bookingsById.values()) {
+            if (overlaps(booking, newBookingsFrom, newBookingsTo)) {
+                bookings.put(booking.getId(), booking);
+            }
+        }
+        if (newBookingsFrom.isBefore(bookingsFrom)) {
+            putBookings(bookings, dataStore.findTableBookings(newBookingsFrom, bookingsFrom), newBookingsFrom, newBookingsTo);
+        }
+        if (newBookingsTo.isAfter(bookingsTo)) {
+            putBookings(bookings, dataStore.findTableBookings(bookingsTo, newBookingsTo), newBookingsFrom, newBookingsTo);
+        }
+        for (Order booking : dataStore.findTableBookingsUpdatedSince(since)) {
+            if (overlaps(booking, newBookingsFrom, newBookingsTo)) {
+                bookings.put(booking.getId(), booking);
+            } else {
+                bookings.remove(booking.getId());
+            }
+        }
+
+        return new CatalogSnapshot(reconciledAt, newBookingsFrom, newBookingsTo, dishes, ingredients,
+                dataStore.findAllTables(), bookings);
+    }
+
+    public Instant getTakenAt() {
+        return takenAt;
+    }
+
+    public Instant getBookingsFrom() {
+        return bookingsFrom;
+    }
+
+    public Instant getBookingsTo() {
+        return bookingsTo;
+    }
+
+    public Dish getDish(Integer id) {
+        return dishesById.get(id);
+    }
+
+    public Collection<Dish> getDishes() {
+        return Collections.unmodifiableCollection(dishesById.values());
+    }
+
+    public Ingredient getIngredient(Integer id) {
+        return ingredientsById.get(id);
+    }
+
+    public Collection<Ingredient> getIngredients() {
+        return Collections.unmodifiableCollection(ingredientsById.values());
+    }
+
+    public List<RestaurantTable> getTables() {
+        return tables;
+    }
+
+    public Collection<Order> getBookings() {
+        return Collections.unmodifiableCollection(bookingsById.values());
+    }
+
+    /**
+     * Writes the snapshot to the file, replacing it atomically.
+     */
+    public void write(Path path) {
+        try {
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+            writePayload(new DataOutputStream(payloadBytes));
+            byte[] payload = payloadBytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(payload.length).putInt((int) crc.getValue())
+                    .flip();
+
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer body = ByteBuffer.wrap(payload);
+                while (header.hasRemaining() || body.hasRemaining()) {
+                    channel.write(new ByteBuffer[]{header, body});
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads a snapshot written by write; fails when the file is of another format version,
+     * truncated or corrupted.
+     */
+    public static CatalogSnapshot read(Path path) {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new RuntimeException("Not a catalog snapshot " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new RuntimeException("Catalog snapshot " + path + " is of version " + version + ", expected " + VERSION);
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length != buffer.remaining()) {
+            throw new RuntimeException("Catalog snapshot " + path + " is truncated");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice());
+        if ((int) crc.getValue() != checksum) {
+            throw new RuntimeException("Catalog snapshot " + path + " is corrupted");
+        }
+        return readPayload(buffer);
+    }
+
+    private void writePayload(DataOutputStream out) throws IOException {
+        writeInstant(out, takenAt);
+        writeInstant(out, bookingsFrom);
+        writeInstant(out, bookingsTo);
+
+        // Ingredients a dish was read with but the ingredient list was not, if any.
+        Map<Integer, Ingredient> ingredients = new TreeMap<>(ingredientsById);
+        for (Dish dish : dishesById.values()) {
+            for (DishIngredient dishIngredient : dishIngredientsOf(dish)) {
+                ingredients.putIfAbsent(dishIngredient.getIngredient().getId(), dishIngredient.getIngredient());
+            }
+        }
+        out.writeInt(ingredients.size());
+        for (Ingredient ingredient : ingredients.values()) {
+            out.writeInt(ingredient.getId());
+            writeString(out, ingredient.getName());
+            writeDouble(out, ingredient.getPrice());
+            writeEnum(out, ingredient.getCategory());
+        }
+
+        out.writeInt(dishesById.size());
+        for (Dish dish : dishesById.values()) {
+            out.writeInt(dish.getId());
+            writeString(out, dish.getName());
+            writeEnum(out, dish.getDishType());
+            writeDouble(out, dish.getPrice());
+            out.writeInt(dishIngredientsOf(dish).size());
+            for (DishIngredient dishIngredient : dishIngredientsOf(dish)) {
+                out.writeInt(dishIngredient.getIngredient().getId());
+                writeDouble(out, dishIngredient.getQuantity());
+                writeEnum(out, dishIngredient.getUnit());
+            }
+        }
+
+        out.writeInt(tables.size());
+        for (RestaurantTable table : tables) {
+            out.writeInt(table.getId());
+            writeInteger(out, table.getNumber());
+            writeInteger(out, table.getCapacity());
+        }
+
+        out.writeInt(bookingsById.size());
+        for (Order booking : bookingsById.values()) {
+            out.writeInt(booking.getId());
+            writeString(out, booking.getReference());
+            writeInstant(out, booking.getCreationDatetime());
+            writeInstant(out, booking.getInstallationDate());
+            writeInstant(out, booking.getDepartureDate());
+            out.writeInt(booking.getTable().getId());
+            writeInteger(out, booking.getTable().getNumber());
+        }
+        out.flush();
+    }
+
+    private static CatalogSnapshot readPayload(ByteBuffer in) {
+        Instant takenAt = readInstant(in);
+        Instant bookingsFrom = readInstant(in);
+        Instant bookingsTo = readInstant(in);
+
+        Map<Integer, Ingredient> ingredientsById = new TreeMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            Integer id = in.getInt();
+            String name = readString(in);
+            Double price = readDouble(in);
+            CategoryEnum category = readEnum(in, CategoryEnum.values());
+            ingredientsById.put(id, new Ingredient(id, name, category, price, null));
+        }
+
+        Map<Integer, Dish> dishesById = new TreeMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            Dish dish = new Dish();
+            dish.setId(in.getInt());
+            dish.setName(readString(in));
+            dish.setDishType(readEnum(in, DishTypeEnum.values()));
+            dish.setPrice(readDouble(in));
+            List<DishIngredient> dishIngredients = new ArrayList<>();
+            for (int j = in.getInt(); j > 0; j--) {
+                DishIngredient dishIngredient = new DishIngredient();
+                dishIngredient.setIngredient(ingredientsById.get(in.getInt()));
+                dishIngredient.setQuantity(readDouble(in));
+                dishIngredient.setUnit(readEnum(in, Unit.values()));
+                dishIngredients.add(dishIngredient);
+            }
+            dish.setDishIngredients(dishIngredients);
+            dishesById.put(dish.getId(), dish);
+        }
+
+        List<RestaurantTable> tables = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            tables.add(new RestaurantTable(in.getInt(), readInteger(in), readInteger(in)));
+        }
+
+        Map<Integer, Order> bookingsById = new TreeMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            Order booking = new Order();
+            booking.setId(in.getInt());
+            booking.setReference(readString(in));
+            booking.setCreationDatetime(readInstant(in));
+            booking.setInstallationDate(readInstant(in));
+            booking.setDepartureDate(readInstant(in));
+            booking.setTable(new RestaurantTable(in.getInt(), readInteger(in)));
+            bookingsById.put(booking.getId(), booking);
+        }
+        return new CatalogSnapshot(takenAt, bookingsFrom, bookingsTo, dishesById, ingredientsById, tables, bookingsById);
+    }
+
+    // A dish built without its recipe counts as having no ingredient.
+    private static List<DishIngredient> dishIngredientsOf(Dish dish) {
+        return dish.getDishIngredients() == null ? List.of() : dish.getDishIngredients();
+    }
+
+    private static Dish withIngredients(Dish dish, Map<Integer, Ingredient> ingredientsById) {
+        Dish copy = new Dish();
+        copy.setId(dish.getId());
+        copy.setName(dish.getName());
+        copy.setDishType(dish.getDishType());
+        copy.setPrice(dish.getPrice());
+        List<DishIngredient> dishIngredients = new ArrayList<>();
+        for (DishIngredient dishIngredient : dishIngredientsOf(dish)) {
+            DishIngredient dishIngredientCopy = new DishIngredient();
+            dishIngredientCopy.setIngredient(ingredientsById.getOrDefault(dishIngredient.getIngredient().getId(),
+                    dishIngredient.getIngredient()));
+            dishIngredientCopy.setQuantity(dishIngredient.getQuantity());
+            dishIngredientCopy.setUnit(dishIngredient.getUnit());
+            dishIngredients.add(dishIngredientCopy);
+        }
+        copy.setDishIngredients(dishIngredients);
+        return copy;
+    }
+
+    private static void putBookings(Map<Integer, Order> bookings, List<Order> loaded, Instant from, Instant to) {
+        for (Order booking : loaded) {
+            if (overlaps(booking, from, to)) {
+                bookings.put(booking.getId(), booking);
+            }
+        }
+    }
+
+    private static boolean overlaps(Order booking, Instant from, Instant to) {
+        return booking.getInstallationDate().isBefore(to) && booking.getDepartureDate().isAfter(from);
+    }
+
+    private static <T> Map<Integer, T> byId(List<T> entities, Function<T, Integer> id) {
+        Map<Integer, T> byId = new TreeMap<>();
+        for (T entity : entities) {
+            byId.put(id.apply(entity), entity);
+        }
+        return byId;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Null is stored as NaN, which no price or quantity takes.
+    private static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        out.writeDouble(value == null ? Double.NaN : value);
+    }
+
+    private static Double readDouble(ByteBuffer in) {
+        double value = in.getDouble();
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        out.writeInt(value == null ? 0 : value);
+    }
+
+    private static Integer readInteger(ByteBuffer in) {
+        boolean present = in.get() != 0;
+        int value = in.getInt();
+        return present ? value : null;
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        out.writeLong(value == null ? 0 : value.getEpochSecond());
+        out.writeInt(value == null ? 0 : value.getNano());
+    }
+
+    private static Instant readInstant(ByteBuffer in) {
+        boolean present = in.get() != 0;
+        long seconds = in.getLong();
+        int nanos = in.getInt();
+        return present ? Instant.ofEpochSecond(seconds, nanos) : null;
+    }
+
+    private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+        out.writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    private static <E extends Enum<E>> E readEnum(ByteBuffer in, E[] values) {
+        byte ordinal = in.get();
+        return ordinal < 0 ? null : values[ordinal];
+    }
+}
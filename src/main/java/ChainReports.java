@@ -0,0 +1,69 @@
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Chain-wide reports: a query runs for every restaurant of the directory at once, each on
+ * its own virtual thread and shard, and the results are merged.
+ */
+public class ChainReports {
+    private final ShardDirectory directory;
+    private final DataStore dataStore;
+
+    /**
+     * dataStore must route by TenantContext, like a DataRetriever over a RoutingDBConnection.
+     */
+    public ChainReports(ShardDirectory directory, DataStore dataStore) {
+        this.directory = directory;
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * Result of the query for every restaurant, by restaurant; fails when one of them fails.
+     */
+    public <T> Map<String, T> fanOut(Function<DataStore, T> query) {
+        List<String> tenants = directory.getTenants();
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String tenant : tenants) {
+                futures.put(tenant, executor.submit(() -> TenantContext.run(tenant, () -> query.apply(dataStore))));
+            }
+            Map<String, T> results = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+                try {
+                    results.put(future.getKey(), future.getValue().get());
+                } catch (ExecutionException e) {
+                    executor.shutdownNow();
+                    throw new RuntimeException("Report failed for restaurant " + future.getKey(), e.getCause());
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stock of the whole chain at the given time, by ingredient name then unit.
+     */
+    public Map<String, Map<Unit, Double>> stockByIngredientName(Instant at) {
+        Map<String, Map<Unit, Double>> stock = new TreeMap<>();
+        fanOut(store -> store.findAllIngredients().stream()
+                .filter(ingredient -> !ingredient.getStockMovementList().isEmpty())
+                .map(ingredient -> Map.entry(ingredient.getName(), ingredient.getStockValueAt(at)))
+                .toList())
+                .values()
+                .forEach(values -> values.forEach(value -> stock
+                        .computeIfAbsent(value.getKey(), name -> new TreeMap<>())
+                        .merge(value.getValue().getUnit(), value.getValue().getQuantity(), Double::sum)));
+        return stock;
+    }
+}
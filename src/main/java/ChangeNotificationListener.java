@@ -0,0 +1,159 @@
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Listens to the catalog_change channel on a dedicated connection and hands the changes
+ * committed by every node, this one included, to its subscribers. Notifications arriving
+ * within the coalescing window of each other are delivered as one CatalogChanges, at most
+ * maxDelay after the first. Once connected again after a failure, subscribers receive a
+ * reset, since notifications sent while disconnected are gone.
+ */
+public class ChangeNotificationListener implements AutoCloseable {
+    private static final String CHANNEL = "catalog_change";
+    private static final int POLL_MILLIS = 1_000;
+    private static final long RECONNECT_DELAY_MILLIS = 2_000;
+
+    private final DBConnection dbConnection;
+    private final int coalesceMillis;
+    private final long maxDelayNanos;
+    private final List<Consumer<CatalogChanges>> subscribers = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+    private volatile Connection connection;
+    private Thread thread;
+
+    public ChangeNotificationListener() {
+        this(new DBConnection(), Duration.ofMillis(50), Duration.ofMillis(500));
+    }
+
+    public ChangeNotificationListener(DBConnection dbConnection, Duration coalesceWindow, Duration maxDelay) {
+        this.dbConnection = dbConnection;
+        this.coalesceMillis = (int) Math.max(1, coalesceWindow.toMillis());
+        this.maxDelayNanos = maxDelay.toNanos();
+    }
+
+    public ChangeNotificationListener subscribe(Consumer<CatalogChanges> subscriber) {
+        subscribers.add(subscriber);
+        return this;
+    }
+
+    public synchronized ChangeNotificationListener start() {
+        if (!running) {
+            running = true;
+            thread = new Thread(this::listen, "catalog-change-listener");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        Thread listenerThread;
+        synchronized (this) {
+            running = false;
+            listenerThread = thread;
+            thread = null;
+        }
+        if (listenerThread != null) {
+            try {
+                listenerThread.join(POLL_MILLIS * 2L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void listen() {
+        boolean missedChanges = false;
+        while (running) {
+            try {
+                connection = dbConnection.getConnection();
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (missedChanges) {
+                    dispatch(CatalogChanges.resetAll());
+                    missedChanges = false;
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null && notifications.length > 0) {
+                        dispatch(coalesce(pgConnection, notifications));
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                missedChanges = true;
+                if (running) {
+                    System.err.println("[WARN] Change notifications interrupted, reconnecting: " + e.getMessage());
+                    pause();
+                }
+            } finally {
+                closeQuietly();
+            }
+        }
+    }
+
+    private CatalogChanges coalesce(PGConnection pgConnection, PGNotification[] first) throws SQLException {
+        CatalogChanges changes = new CatalogChanges();
+        long deadline = System.nanoTime() + maxDelayNanos;
+        PGNotification[] notifications = first;
+        while (notifications != null && notifications.length > 0) {
+            for (PGNotification notification : notifications) {
+                try {
+                    changes.add(notification.getParameter());
+                } catch (NumberFormatException e) {
+                    System.err.println("[WARN] Skipping malformed change notification " + notification.getParameter());
+                }
+            }
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                break;
+            }
+            notifications = pgConnection.getNotifications((int) Math.min(coalesceMillis, remainingMillis));
+        }
+        return changes;
+    }
+
+    private void dispatch(CatalogChanges changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (Consumer<CatalogChanges> subscriber : subscribers) {
+            try {
+                subscriber.accept(changes);
+            } catch (RuntimeException e) {
+                System.err.println("[WARN] Change subscriber failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private void closeQuietly() {
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (SQLException e) {
+                // The connection is already unusable.
+            }
+        }
+    }
+}
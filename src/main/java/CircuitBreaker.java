@@ -0,0 +1,112 @@
+import java.time.Duration;
+
+/**
+ * Sheds load while the database is unhealthy. Closed, it lets every call through and keeps
+ * the outcome of the last windowSize calls; once at least minimumCalls are known and the
+ * share of failures reaches failureRateThreshold it opens and refuses every call for
+ * openDuration. It then lets trialCalls through, half-open: all succeeding closes it, one
+ * failing opens it again. Outcomes of calls let through before a transition are ignored.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int trialCalls;
+    private final ResilienceMetrics metrics;
+
+    private final boolean[] failedWindow;
+    private int windowNext;
+    private int windowCount;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    // Bumped on every transition, so that late outcomes of an earlier state are ignored.
+    private long epoch;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration,
+                          int trialCalls, ResilienceMetrics metrics) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.trialCalls = trialCalls;
+        this.metrics = metrics;
+        this.failedWindow = new boolean[windowSize];
+    }
+
+    public static CircuitBreaker defaults(ResilienceMetrics metrics) {
+        return new CircuitBreaker(50, 20, 0.5, Duration.ofSeconds(5), 3, metrics);
+    }
+
+    /**
+     * Ticket to pass to onResult when the call may go through, -1 when it is refused.
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return -1;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted == trialCalls) {
+                return -1;
+            }
+            trialsStarted++;
+        }
+        return epoch;
+    }
+
+    public synchronized void onResult(long ticket, boolean failed) {
+        if (ticket != epoch) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (failed) {
+                transition(State.OPEN);
+            } else if (++trialsSucceeded == trialCalls) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (windowCount == windowSize && failedWindow[windowNext]) {
+            windowFailures--;
+        }
+        failedWindow[windowNext] = failed;
+        windowNext = (windowNext + 1) % windowSize;
+        windowCount = Math.min(windowCount + 1, windowSize);
+        if (failed) {
+            windowFailures++;
+            if (windowCount >= minimumCalls && windowFailures >= failureRateThreshold * windowCount) {
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void transition(State next) {
+        state = next;
+        epoch++;
+        trialsStarted = 0;
+        trialsSucceeded = 0;
+        if (next == State.OPEN) {
+            openedAt = System.nanoTime();
+            metrics.circuitOpened();
+        } else if (next == State.CLOSED) {
+            windowNext = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+    }
+}
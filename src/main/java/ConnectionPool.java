@@ -0,0 +1,175 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DBConnection keeping up to maxSize physical connections to one database open between
+ * calls. Closing a connection it handed out gives it back instead: an open transaction is
+ * rolled back and the autocommit and isolation defaults restored; a broken connection is
+ * discarded. The most recently returned idle connection is reused first. A caller waits at
+ * most maxWait for a connection when all are in use, then gets a transient connection
+ * failure.
+ */
+public class ConnectionPool extends DBConnection implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+    // The schema each physical connection was last switched to, see getConnection(String).
+    private final Map<Connection, String> schemas = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password, int maxSize, Duration maxWait) {
+        super(url, user, password);
+        this.maxSize = maxSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    @Override
+    public Connection getConnection() {
+        return getConnection(null);
+    }
+
+    /**
+     * Pooled connection whose search_path starts with the given schema, or is left as it was
+     * when schema is null.
+     */
+    Connection getConnection(String schema) {
+        if (closed) {
+            throw new IllegalStateException("Connection pool " + getUrl() + " is closed");
+        }
+        try {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                throw new RuntimeException(new SQLTransientConnectionException(
+                        "No connection to " + getUrl() + " available within the wait time", "08001"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        try {
+            Connection physical = borrow();
+            if (schema != null && !schema.equals(schemas.get(physical))) {
+                try (Statement statement = physical.createStatement()) {
+                    statement.execute("set search_path to \"" + schema + "\", public");
+                }
+                schemas.put(physical, schema);
+            }
+            return pooled(physical);
+        } catch (SQLException e) {
+            permits.release();
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection borrow() throws SQLException {
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return connection;
+            }
+            discard(connection);
+        }
+        return DriverManager.getConnection(getUrl(), getUser(), getPassword());
+    }
+
+    private Connection pooled(Connection physical) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean returned;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            giveBack(physical);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || physical.isClosed();
+                    default:
+                        if (returned) {
+                            throw new SQLException("Connection has been returned to the pool", "08003");
+                        }
+                }
+                try {
+                    return method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    private void giveBack(Connection physical) {
+        try {
+            if (closed || physical.isClosed()) {
+                discard(physical);
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.getTransactionIsolation() != Connection.TRANSACTION_READ_COMMITTED) {
+                physical.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+            idle.offerFirst(physical);
+        } catch (SQLException e) {
+            discard(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(Connection physical) {
+        schemas.remove(physical);
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            System.err.println("[WARN] Failed to close a pooled connection: " + e.getMessage());
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getInUseCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            discard(connection);
+        }
+    }
+}
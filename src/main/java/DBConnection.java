@@ -3,18 +3,41 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DBConnection {
+    private final String url;
+    private final String user;
+    private final String password;
+
+    public DBConnection() {
+        this("jdbc:postgresql://localhost:5432/mini_dish_db", "postgres", "postgres");
+    }
+
+    public DBConnection(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
 
     public Connection getConnection() {
         try {
-            String jdbcURl = System.getenv("JDBC_URl"); //
-            String user = System.getenv("USER"); //mini_dish_db_manager
-            String password = System.getenv("PASSWORD"); //123456
-            return DriverManager.getConnection("jdbc:postgresql://localhost:5432/mini_dish_db", "postgres", "postgres");
+            return DriverManager.getConnection(url, user, password);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Connection for a read-only call, which may lag behind getConnection; the same by default.
+     */
+    public Connection getReadConnection() {
+        return getConnection();
+    }
+
+    /**
+     * Called once a write made on a connection of getConnection has committed.
+     */
+    public void writeCommitted() {
+    }
+
     public void closeConnection(Connection connection) {
         if (connection != null) {
             try {
@@ -24,4 +47,16 @@ public class DBConnection {
             }
         }
     }
+
+    public String getUrl() {
+        return url;
+    }
+
+    protected String getUser() {
+        return user;
+    }
+
+    protected String getPassword() {
+        return password;
+    }
 }
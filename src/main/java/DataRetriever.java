@@ -6,132 +6,306 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
-public class DataRetriever {
+public class DataRetriever implements DataStore {
+    private static final String UNDEFINED_FUNCTION = "42883";
+    // Saves of other nodes reach the name indexes of the search fallback after at most this long.
+    private static final long NAME_INDEX_TTL_NANOS = 60_000_000_000L;
 
-    Order findOrderByReference(String reference) {
-        DBConnection dbConnection = new DBConnection();
-        try (Connection connection = dbConnection.getConnection()) {
-            PreparedStatement preparedStatement = connection.prepareStatement("""
-                    select o.id, o.reference, o.creation_datetime, o.installation_datetime, o.departure_datetime,
-                      t.id as table_id, t.number as table_number
-                    from "order" o
-                    left join restaurant_table t on o.id_table = t.id
-                    where o.reference like ?""");
+    private final DBConnection dbConnection;
+    private final int isolationLevel;
+    private final List<OrderListener> orderListeners = new CopyOnWriteArrayList<>();
+    // Name indexes of the search fallback by restaurant, of ids; built on first use and dropped by the saves.
+    private final Map<String, AtomicReference<CachedNameIndex>> dishNameIndexes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicReference<CachedNameIndex>> ingredientNameIndexes = new ConcurrentHashMap<>();
+
+    public DataRetriever() {
+        this(new DBConnection());
+    }
+
+    public DataRetriever(DBConnection dbConnection) {
+        this(dbConnection, Connection.TRANSACTION_READ_COMMITTED);
+    }
+
+    public DataRetriever(DBConnection dbConnection, int isolationLevel) {
+        this.dbConnection = dbConnection;
+        this.isolationLevel = isolationLevel;
+    }
+
+    /**
+     * Scope sharing one connection and transaction across several calls of this retriever.
+     */
+    public UnitOfWork unitOfWork() {
+        return new UnitOfWork(dbConnection);
+    }
+
+    // On the primary: idempotent submissions look up the original of a replayed reference.
+    @Override
+    public Order findOrderByReference(String reference) {
+        return withConnection(connection -> {
+            Order order = findOrderByReference(connection, reference);
+            if (order == null) {
+                throw new NotFoundException("Order not found with reference " + reference);
+            }
+            return order;
+        });
+    }
+
+    private Order findOrderByReference(Connection connection, String reference) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("""
+                select o.id, o.reference, o.creation_datetime, o.installation_datetime, o.departure_datetime,
+                  t.id as table_id, t.number as table_number
+                from "order" o
+                left join restaurant_table t on o.id_table = t.id
+                where o.reference = ?""")) {
             preparedStatement.setString(1, reference);
             ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                Order order = new Order();
-                Integer idOrder = resultSet.getInt("id");
-                order.setId(idOrder);
-                order.setReference(resultSet.getString("reference"));
-                order.setCreationDatetime(resultSet.getTimestamp("creation_datetime").toInstant());
+            OrderRowMapper orderRowMapper = new OrderRowMapper(resultSet);
+            if (!resultSet.next()) {
+                return null;
+            }
+            Order order = orderRowMapper.map(resultSet);
+            order.setDishOrderList(findDishOrdersByOrderIds(connection, List.of(order.getId()))
+                    .getOrDefault(order.getId(), new ArrayList<>()));
+            return order;
+        }
+    }
 
-                Timestamp installDate = resultSet.getTimestamp("installation_datetime");
-                if (installDate != null) {
-                    order.setInstallationDate(installDate.toInstant());
-                }
-                Timestamp departDate = resultSet.getTimestamp("departure_datetime");
-                if (departDate != null) {
-                    order.setDepartureDate(departDate.toInstant());
+    @Override
+    public Dish findDishById(Integer id) {
+        return withReadConnection(connection -> {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    """
+                            select id, name, dish_type, selling_price
+                            from dish
+                            where id = ?;
+                            """)) {
+                preparedStatement.setInt(1, id);
+                ResultSet resultSet = preparedStatement.executeQuery();
+                DishRowMapper dishRowMapper = new DishRowMapper(resultSet);
+                if (resultSet.next()) {
+                    Dish dish = dishRowMapper.map(resultSet);
+                    dish.setDishIngredients(findDishIngredientsByDishIds(connection, List.of(id)).getOrDefault(id, new ArrayList<>()));
+                    return dish;
                 }
+                throw new NotFoundException("Dish not found " + id);
+            }
+        });
+    }
+
 
-                int tableId = resultSet.getInt("table_id");
-                if (!resultSet.wasNull()) {
-                   RestaurantTable table = new RestaurantTable();
-                   table.setId(tableId);
-                   table.setNumber(resultSet.getInt("table_number"));
-                   order.setTable(table);
+    @Override
+    public List<Dish> findAllDishes() {
+        return withReadConnection(connection -> {
+            Map<Integer, List<DishIngredient>> dishIngredientsByDish = findDishIngredientsByDishIds(connection, null);
+            List<Dish> dishes = new ArrayList<>();
+            try (PreparedStatement dishStatement = connection.prepareStatement(
+                    "select id, name, dish_type, selling_price from dish order by id;")) {
+                ResultSet dishResultSet = dishStatement.executeQuery();
+                DishRowMapper dishRowMapper = new DishRowMapper(dishResultSet);
+                while (dishResultSet.next()) {
+                    Dish dish = dishRowMapper.map(dishResultSet);
+                    dish.setDishIngredients(dishIngredientsByDish.getOrDefault(dish.getId(), new ArrayList<>()));
+                    dishes.add(dish);
                 }
+            }
+            return dishes;
+        });
+    }
 
-                order.setDishOrderList(findDishOrderByIdOrder(idOrder));
-                return order;
+    @Override
+    public Page<Dish> findDishes(DishFilter filter, Integer afterId, int limit) {
+        StringBuilder sql = new StringBuilder("select id, name, dish_type, selling_price from dish where true");
+        List<Object> parameters = new ArrayList<>();
+        if (afterId != null) {
+            sql.append(" and id > ?");
+            parameters.add(afterId);
+        }
+        if (filter != null) {
+            if (filter.getDishType() != null) {
+                sql.append(" and dish_type = ?::dish_type");
+                parameters.add(filter.getDishType().name());
+            }
+            if (filter.getMinPrice() != null) {
+                sql.append(" and selling_price >= ?");
+                parameters.add(filter.getMinPrice());
+            }
+            if (filter.getMaxPrice() != null) {
+                sql.append(" and selling_price <= ?");
+                parameters.add(filter.getMaxPrice());
+            }
+            if (filter.getNamePrefix() != null && !filter.getNamePrefix().isEmpty()) {
+                sql.append(" and name like ?");
+                parameters.add(escapeLike(filter.getNamePrefix()) + "%");
             }
-            throw new RuntimeException("Order not found with reference " + reference);
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
+        sql.append(" order by id limit ?");
+        parameters.add(limit + 1);
+
+        return withReadConnection(connection -> {
+            List<Dish> dishes = new ArrayList<>();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql.toString())) {
+                bindParameters(preparedStatement, parameters);
+                ResultSet resultSet = preparedStatement.executeQuery();
+                DishRowMapper dishRowMapper = new DishRowMapper(resultSet);
+                while (resultSet.next()) {
+                    dishes.add(dishRowMapper.map(resultSet));
+                }
+            }
+            boolean hasMore = dishes.size() > limit;
+            if (hasMore) {
+                dishes.remove(limit);
+            }
+
+            List<Integer> dishIds = dishes.stream().map(Dish::getId).toList();
+            Map<Integer, List<DishIngredient>> dishIngredientsByDish = findDishIngredientsByDishIds(connection, dishIds);
+            for (Dish dish : dishes) {
+                dish.setDishIngredients(dishIngredientsByDish.getOrDefault(dish.getId(), new ArrayList<>()));
+            }
+            return new Page<>(dishes, hasMore);
+        });
     }
 
-    private List<DishOrder> findDishOrderByIdOrder(Integer idOrder) {
-        DBConnection dbConnection = new DBConnection();
-        Connection connection = dbConnection.getConnection();
-        List<DishOrder> dishOrders = new ArrayList<>();
+    @Override
+    public List<Dish> findDishesUpdatedSince(Instant since) {
+        return withReadConnection(connection -> {
+            List<Dish> dishes = new ArrayList<>();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "select id, name, dish_type, selling_price from dish"
+                            + (since == null ? "" : " where updated_at >= ?") + " order by id")) {
+                if (since != null) {
+                    preparedStatement.setTimestamp(1, Timestamp.from(since));
+                }
+                ResultSet resultSet = preparedStatement.executeQuery();
+                DishRowMapper dishRowMapper = new DishRowMapper(resultSet);
+                while (resultSet.next()) {
+                    dishes.add(dishRowMapper.map(resultSet));
+                }
+            }
+            Map<Integer, List<DishIngredient>> dishIngredientsByDish = findDishIngredientsByDishIds(connection,
+                    since == null ? null : dishes.stream().map(Dish::getId).toList());
+            for (Dish dish : dishes) {
+                dish.setDishIngredients(dishIngredientsByDish.getOrDefault(dish.getId(), new ArrayList<>()));
+            }
+            return dishes;
+        });
+    }
+
+    @Override
+    public List<Dish> searchDishesByName(String query, int limit) {
+        String sql = """
+                select id, name, dish_type, selling_price
+                from dish
+                where lower(immutable_unaccent(?)) <% lower(immutable_unaccent(name))
+                order by word_similarity(lower(immutable_unaccent(?)), lower(immutable_unaccent(name))) desc, id
+                limit ?
+                """;
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement(
-                    """
-                            select id, id_dish, quantity from dish_order where dish_order.id_order = ?
-                            """);
-            preparedStatement.setInt(1, idOrder);
+            return withReadConnection(connection -> {
+                List<Dish> dishes = new ArrayList<>();
+                try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                    preparedStatement.setString(1, query);
+                    preparedStatement.setString(2, query);
+                    preparedStatement.setInt(3, limit);
+                    ResultSet resultSet = preparedStatement.executeQuery();
+                    DishRowMapper dishRowMapper = new DishRowMapper(resultSet);
+                    while (resultSet.next()) {
+                        dishes.add(dishRowMapper.map(resultSet));
+                    }
+                }
+                List<Integer> dishIds = dishes.stream().map(Dish::getId).toList();
+                Map<Integer, List<DishIngredient>> dishIngredientsByDish = findDishIngredientsByDishIds(connection, dishIds);
+                for (Dish dish : dishes) {
+                    dish.setDishIngredients(dishIngredientsByDish.getOrDefault(dish.getId(), new ArrayList<>()));
+                }
+                return dishes;
+            });
+        } catch (RuntimeException e) {
+            if (isUndefinedFunction(e)) {
+                // pg_trgm/unaccent not installed on this database
+                List<Integer> dishIds = nameIndex(forTenant(dishNameIndexes), "dish").search(query, limit);
+                return withReadConnection(connection -> findDishesByIds(connection, dishIds));
+            }
+            throw e;
+        }
+    }
+
+    // The dishes in the order of their ids, skipping those deleted meanwhile.
+    private List<Dish> findDishesByIds(Connection connection, List<Integer> dishIds) throws SQLException {
+        Map<Integer, Dish> dishesById = new HashMap<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                "select id, name, dish_type, selling_price from dish where id = any(?)")) {
+            preparedStatement.setArray(1, connection.createArrayOf("integer", dishIds.toArray()));
             ResultSet resultSet = preparedStatement.executeQuery();
+            DishRowMapper dishRowMapper = new DishRowMapper(resultSet);
             while (resultSet.next()) {
-                Dish dish = findDishById(resultSet.getInt("id_dish"));
-                DishOrder dishOrder = new DishOrder();
-                dishOrder.setId(resultSet.getInt("id"));
-                dishOrder.setQuantity(resultSet.getInt("quantity"));
-                dishOrder.setDish(dish);
-                dishOrders.add(dishOrder);
-            }
-            dbConnection.closeConnection(connection);
-            return dishOrders;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+                Dish dish = dishRowMapper.map(resultSet);
+                dishesById.put(dish.getId(), dish);
+            }
+        }
+        Map<Integer, List<DishIngredient>> dishIngredientsByDish = findDishIngredientsByDishIds(connection, dishIds);
+        List<Dish> dishes = new ArrayList<>();
+        for (Integer dishId : dishIds) {
+            Dish dish = dishesById.get(dishId);
+            if (dish != null) {
+                dish.setDishIngredients(dishIngredientsByDish.getOrDefault(dishId, new ArrayList<>()));
+                dishes.add(dish);
+            }
         }
+        return dishes;
     }
 
-    Dish findDishById(Integer id) {
-        DBConnection dbConnection = new DBConnection();
-        Connection connection = dbConnection.getConnection();
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(
-                    """
-                            select dish.id as dish_id, dish.name as dish_name, dish_type, dish.selling_price as dish_price
-                            from dish
-                            where dish.id = ?;
-                            """);
-            preparedStatement.setInt(1, id);
+    private Map<Integer, List<DishIngredient>> findDishIngredientsByDishIds(Connection connection, List<Integer> dishIds)
+            throws SQLException {
+        Map<Integer, List<DishIngredient>> dishIngredientsByDish = new HashMap<>();
+        if (dishIds != null && dishIds.isEmpty()) {
+            return dishIngredientsByDish;
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                """
+                        select di.id_dish, ingredient.id, ingredient.name, ingredient.price, ingredient.category,
+                          di.quantity_required, di.unit
+                        from ingredient join dish_ingredient di on di.id_ingredient = ingredient.id
+                        """ + (dishIds == null ? "" : "where di.id_dish = any(?)"))) {
+            if (dishIds != null) {
+                preparedStatement.setArray(1, connection.createArrayOf("integer", dishIds.toArray()));
+            }
             ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                Dish dish = new Dish();
-                dish.setId(resultSet.getInt("dish_id"));
-                dish.setName(resultSet.getString("dish_name"));
-                dish.setDishType(DishTypeEnum.valueOf(resultSet.getString("dish_type")));
-                dish.setPrice(resultSet.getObject("dish_price") == null
-                        ? null : resultSet.getDouble("dish_price"));
-                dish.setDishIngredients(findIngredientByDishId(id));
-                return dish;
-            }
-            dbConnection.closeConnection(connection);
-            throw new RuntimeException("Dish not found " + id);
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+            DishIngredientRowMapper dishIngredientRowMapper = new DishIngredientRowMapper(resultSet);
+            while (resultSet.next()) {
+                dishIngredientsByDish
+                        .computeIfAbsent(dishIngredientRowMapper.getDishId(resultSet), key -> new ArrayList<>())
+                        .add(dishIngredientRowMapper.map(resultSet));
+            }
         }
+        return dishIngredientsByDish;
     }
 
 
-    Ingredient saveIngredient(Ingredient toSave) {
+    @Override
+    public Ingredient saveIngredient(Ingredient toSave) {
         String upsertIngredientSql = """
-                    INSERT INTO ingredient (id, name, price, category)
-                    VALUES (?, ?, ?, ?::dish_type)
+                    INSERT INTO ingredient (id, price, name, category)
+                    VALUES (coalesce(?, nextval(pg_get_serial_sequence('ingredient', 'id'))), ?, ?, ?::ingredient_category)
                     ON CONFLICT (id) DO UPDATE
                     SET name = EXCLUDED.name,
                         category = EXCLUDED.category,
                         price = EXCLUDED.price
-                    RETURNING id
+                    RETURNING id, name, price, category
                 """;
 
-        try (Connection conn = new DBConnection().getConnection()) {
-            conn.setAutoCommit(false);
-            Integer ingredientId;
+        return inTransaction(conn -> {
+            Ingredient saved;
             try (PreparedStatement ps = conn.prepareStatement(upsertIngredientSql)) {
-                if (toSave.getId() != null) {
-                    ps.setInt(1, toSave.getId());
-                } else {
-                    ps.setInt(1, getNextSerialValue(conn, "ingredient", "id"));
-                }
+                ps.setObject(1, toSave.getId(), Types.INTEGER);
                 if (toSave.getPrice() != null) {
                     ps.setDouble(2, toSave.getPrice());
                 } else {
@@ -140,123 +314,406 @@ public class DataRetriever {
                 ps.setString(3, toSave.getName());
                 ps.setString(4, toSave.getCategory().name());
                 try (ResultSet rs = ps.executeQuery()) {
+                    IngredientRowMapper ingredientRowMapper = new IngredientRowMapper(rs);
                     rs.next();
-                    ingredientId = rs.getInt(1);
+                    saved = ingredientRowMapper.map(rs);
                 }
             }
 
-            insertIngredientStockMovements(conn, toSave);
+            insertStockMovements(conn, saved.getId(), toSave.getStockMovementList());
+            UnitOfWork.afterCommit(() -> dropNameIndex(forTenant(ingredientNameIndexes)));
 
-            conn.commit();
-            return findIngredientById(ingredientId);
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+            saved.setStockMovementList(findStockMovementsByIngredientIds(conn, List.of(saved.getId()), null, null)
+                    .getOrDefault(saved.getId(), new ArrayList<>()));
+            return saved;
+        });
+    }
+
+    @Override
+    public Double findIngredientPriceAt(Integer ingredientId, Instant at) {
+        return withReadConnection(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("""
+                    select price
+                    from ingredient_price
+                    where id_ingredient = ? and valid_from <= ?
+                    order by valid_from desc
+                    limit 1""")) {
+                ps.setInt(1, ingredientId);
+                ps.setTimestamp(2, Timestamp.from(at));
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getDouble(1) : null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<IngredientPrice> findIngredientPriceHistory(List<Integer> ingredientIds, Instant from, Instant to) {
+        if (ingredientIds != null && ingredientIds.isEmpty()) {
+            return new ArrayList<>();
         }
+        StringBuilder sql = new StringBuilder("""
+                select id_ingredient, price, valid_from, valid_to
+                from ingredient_price
+                where valid_from < ? and (valid_to is null or valid_to > ?)""");
+        return withReadConnection(connection -> {
+            List<Object> parameters = new ArrayList<>(List.of(Timestamp.from(to), Timestamp.from(from)));
+            if (ingredientIds != null) {
+                sql.append(" and id_ingredient = any(?)");
+                parameters.add(connection.createArrayOf("integer", ingredientIds.toArray()));
+            }
+            sql.append(" order by id_ingredient, valid_from");
+            try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+                bindParameters(ps, parameters);
+                List<IngredientPrice> prices = new ArrayList<>();
+                ResultSet rs = ps.executeQuery();
+                IngredientPriceRowMapper priceRowMapper = new IngredientPriceRowMapper(rs);
+                while (rs.next()) {
+                    prices.add(priceRowMapper.map(rs));
+                }
+                return prices;
+            }
+        });
     }
 
-    private void insertIngredientStockMovements(Connection conn, Ingredient ingredient) {
-        List<StockMovement> stockMovementList = ingredient.getStockMovementList();
+    private void insertStockMovements(Connection conn, Integer ingredientId, List<StockMovement> stockMovementList)
+            throws SQLException {
+        if (stockMovementList == null || stockMovementList.isEmpty()) {
+            return;
+        }
         String sql = """
-                insert into stock_movement(id, id_ingredient, quantity, type, unit, creation_datetime)
-                values (?, ?, ?, ?::movement_type, ?::unit, ?)
-                on conflict (id) do nothing
+                insert into stock_movement(id, id_ingredient, quantity, type, unit, creation_datetime, unit_price,
+                  expiry_datetime, id_lot, carried_forward)
+                values (?, ?, ?, ?::movement_type, ?::unit, ?, ?, ?, ?, ?)
+                on conflict (id, creation_datetime) do nothing
                 """;
-        try {
-            PreparedStatement preparedStatement = conn.prepareStatement(sql);
+        long newMovementCount = stockMovementList.stream().filter(stockMovement -> stockMovement.getId() == null).count();
+        List<Integer> newIds = nextSerialValues(conn, "stock_movement", (int) newMovementCount);
+        int newIdIndex = 0;
+        try (PreparedStatement preparedStatement = conn.prepareStatement(sql)) {
             for (StockMovement stockMovement : stockMovementList) {
-                if (ingredient.getId() != null) {
-                    preparedStatement.setInt(1, ingredient.getId());
-                } else {
-                    preparedStatement.setInt(1, getNextSerialValue(conn, "stock_movement", "id"));
+                if (stockMovement.getId() == null) {
+                    stockMovement.setId(newIds.get(newIdIndex++));
                 }
-                preparedStatement.setInt(2, ingredient.getId());
+                preparedStatement.setInt(1, stockMovement.getId());
+                preparedStatement.setInt(2, ingredientId);
                 preparedStatement.setDouble(3, stockMovement.getValue().getQuantity());
-                preparedStatement.setObject(4, stockMovement.getType());
-                preparedStatement.setObject(5, stockMovement.getValue().getUnit());
+                preparedStatement.setString(4, stockMovement.getType().name());
+                preparedStatement.setString(5, stockMovement.getValue().getUnit().name());
                 preparedStatement.setTimestamp(6, Timestamp.from(stockMovement.getCreationDatetime()));
+                preparedStatement.setObject(7, stockMovement.getUnitPrice(), Types.DOUBLE);
+                preparedStatement.setTimestamp(8, stockMovement.getExpiryDatetime() == null
+                        ? null : Timestamp.from(stockMovement.getExpiryDatetime()));
+                preparedStatement.setObject(9, stockMovement.getLotId(), Types.INTEGER);
+                preparedStatement.setBoolean(10, stockMovement.isCarriedForward());
                 preparedStatement.addBatch();
             }
             preparedStatement.executeBatch();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
     }
 
 
-    Ingredient findIngredientById(Integer id) {
-        DBConnection dbConnection = new DBConnection();
-        try (Connection connection = dbConnection.getConnection()) {
-            PreparedStatement preparedStatement = connection.prepareStatement("select id, name, price, category from ingredient where id = ?;");
-            preparedStatement.setInt(1, id);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                int idIngredient = resultSet.getInt("id");
-                String name = resultSet.getString("name");
-                CategoryEnum category = CategoryEnum.valueOf(resultSet.getString("category"));
-                Double price = resultSet.getDouble("price");
-                return new Ingredient(idIngredient, name, category, price, findStockMovementsByIngredientId(idIngredient));
-            }
-            throw new RuntimeException("Ingredient not found " + id);
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    @Override
+    public List<StockMovement> saveStockMovements(Integer ingredientId, List<StockMovement> stockMovements) {
+        return inTransaction(conn -> {
+            insertStockMovements(conn, ingredientId, stockMovements);
+            return stockMovements;
+        });
+    }
+
+    @Override
+    public Ingredient findIngredientById(Integer id) {
+        return withReadConnection(connection -> {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "select id, name, price, category from ingredient where id = ?;")) {
+                preparedStatement.setInt(1, id);
+                ResultSet resultSet = preparedStatement.executeQuery();
+                IngredientRowMapper ingredientRowMapper = new IngredientRowMapper(resultSet);
+                if (resultSet.next()) {
+                    Ingredient ingredient = ingredientRowMapper.map(resultSet);
+                    ingredient.setStockMovementList(findStockMovementsByIngredientIds(connection, List.of(id), null, null)
+                            .getOrDefault(id, new ArrayList<>()));
+                    return ingredient;
+                }
+                throw new NotFoundException("Ingredient not found " + id);
+            }
+        });
+    }
+
+    @Override
+    public List<Ingredient> findAllIngredients() {
+        return withReadConnection(connection -> {
+            Map<Integer, List<StockMovement>> movementsByIngredient = findStockMovementsByIngredientIds(connection, null, null, null);
+            List<Ingredient> ingredients = new ArrayList<>();
+            try (PreparedStatement ingredientStatement = connection.prepareStatement(
+                    "select id, name, price, category from ingredient order by id;")) {
+                ResultSet ingredientResultSet = ingredientStatement.executeQuery();
+                IngredientRowMapper ingredientRowMapper = new IngredientRowMapper(ingredientResultSet);
+                while (ingredientResultSet.next()) {
+                    Ingredient ingredient = ingredientRowMapper.map(ingredientResultSet);
+                    ingredient.setStockMovementList(movementsByIngredient.getOrDefault(ingredient.getId(), new ArrayList<>()));
+                    ingredients.add(ingredient);
+                }
+            }
+            return ingredients;
+        });
+    }
+
+    @Override
+    public Page<Ingredient> findIngredients(IngredientFilter filter, Integer afterId, int limit) {
+        StringBuilder sql = new StringBuilder("select id, name, price, category from ingredient where true");
+        List<Object> parameters = new ArrayList<>();
+        if (afterId != null) {
+            sql.append(" and id > ?");
+            parameters.add(afterId);
         }
+        if (filter != null) {
+            if (filter.getCategory() != null) {
+                sql.append(" and category = ?::ingredient_category");
+                parameters.add(filter.getCategory().name());
+            }
+            if (filter.getMinPrice() != null) {
+                sql.append(" and price >= ?");
+                parameters.add(filter.getMinPrice());
+            }
+            if (filter.getMaxPrice() != null) {
+                sql.append(" and price <= ?");
+                parameters.add(filter.getMaxPrice());
+            }
+            if (filter.getNamePrefix() != null && !filter.getNamePrefix().isEmpty()) {
+                sql.append(" and name like ?");
+                parameters.add(escapeLike(filter.getNamePrefix()) + "%");
+            }
+        }
+        sql.append(" order by id limit ?");
+        parameters.add(limit + 1);
+
+        return withReadConnection(connection -> {
+            List<Ingredient> ingredients = new ArrayList<>();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql.toString())) {
+                bindParameters(preparedStatement, parameters);
+                ResultSet resultSet = preparedStatement.executeQuery();
+                IngredientRowMapper ingredientRowMapper = new IngredientRowMapper(resultSet);
+                while (resultSet.next()) {
+                    ingredients.add(ingredientRowMapper.map(resultSet));
+                }
+            }
+            boolean hasMore = ingredients.size() > limit;
+            if (hasMore) {
+                ingredients.remove(limit);
+            }
+
+            List<Integer> ingredientIds = ingredients.stream().map(Ingredient::getId).toList();
+            Map<Integer, List<StockMovement>> movementsByIngredient = findStockMovementsByIngredientIds(connection, ingredientIds, null, null);
+            for (Ingredient ingredient : ingredients) {
+                ingredient.setStockMovementList(movementsByIngredient.getOrDefault(ingredient.getId(), new ArrayList<>()));
+            }
+            return new Page<>(ingredients, hasMore);
+        });
     }
 
-    List<StockMovement> findStockMovementsByIngredientId(Integer id) {
+    @Override
+    public List<Ingredient> findIngredientsUpdatedSince(Instant since) {
+        return withReadConnection(connection -> {
+            List<Ingredient> ingredients = new ArrayList<>();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "select id, name, price, category from ingredient"
+                            + (since == null ? "" : " where updated_at >= ?") + " order by id")) {
+                if (since != null) {
+                    preparedStatement.setTimestamp(1, Timestamp.from(since));
+                }
+                ResultSet resultSet = preparedStatement.executeQuery();
+                IngredientRowMapper ingredientRowMapper = new IngredientRowMapper(resultSet);
+                while (resultSet.next()) {
+                    ingredients.add(ingredientRowMapper.map(resultSet));
+                }
+            }
+            return ingredients;
+        });
+    }
 
-        DBConnection dbConnection = new DBConnection();
-        Connection connection = dbConnection.getConnection();
-        List<StockMovement> stockMovementList = new ArrayList<>();
+    @Override
+    public List<Ingredient> searchIngredientsByName(String query, int limit) {
+        String sql = """
+                select id, name, price, category
+                from ingredient
+                where lower(immutable_unaccent(?)) <% lower(immutable_unaccent(name))
+                order by word_similarity(lower(immutable_unaccent(?)), lower(immutable_unaccent(name))) desc, id
+                limit ?
+                """;
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement(
-                    """
-                            select id, quantity, unit, type, creation_datetime
-                            from stock_movement
-                            where stock_movement.id_ingredient = ?;
-                            """);
-            preparedStatement.setInt(1, id);
+            return withReadConnection(connection -> {
+                List<Ingredient> ingredients = new ArrayList<>();
+                try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                    preparedStatement.setString(1, query);
+                    preparedStatement.setString(2, query);
+                    preparedStatement.setInt(3, limit);
+                    ResultSet resultSet = preparedStatement.executeQuery();
+                    IngredientRowMapper ingredientRowMapper = new IngredientRowMapper(resultSet);
+                    while (resultSet.next()) {
+                        ingredients.add(ingredientRowMapper.map(resultSet));
+                    }
+                }
+                List<Integer> ingredientIds = ingredients.stream().map(Ingredient::getId).toList();
+                Map<Integer, List<StockMovement>> movementsByIngredient = findStockMovementsByIngredientIds(connection, ingredientIds, null, null);
+                for (Ingredient ingredient : ingredients) {
+                    ingredient.setStockMovementList(movementsByIngredient.getOrDefault(ingredient.getId(), new ArrayList<>()));
+                }
+                return ingredients;
+            });
+        } catch (RuntimeException e) {
+            if (isUndefinedFunction(e)) {
+                List<Integer> ingredientIds = nameIndex(forTenant(ingredientNameIndexes), "ingredient").search(query, limit);
+                return withReadConnection(connection -> findIngredientsByIds(connection, ingredientIds));
+            }
+            throw e;
+        }
+    }
+
+    // The ingredients in the order of their ids, skipping those deleted meanwhile.
+    private List<Ingredient> findIngredientsByIds(Connection connection, List<Integer> ingredientIds) throws SQLException {
+        Map<Integer, Ingredient> ingredientsById = new HashMap<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                "select id, name, price, category from ingredient where id = any(?)")) {
+            preparedStatement.setArray(1, connection.createArrayOf("integer", ingredientIds.toArray()));
             ResultSet resultSet = preparedStatement.executeQuery();
+            IngredientRowMapper ingredientRowMapper = new IngredientRowMapper(resultSet);
             while (resultSet.next()) {
-                StockMovement stockMovement = new StockMovement();
-                stockMovement.setId(resultSet.getInt("id"));
-                stockMovement.setType(MovementTypeEnum.valueOf(resultSet.getString("type")));
-                stockMovement.setCreationDatetime(resultSet.getTimestamp("creation_datetime").toInstant());
-
-                StockValue stockValue = new StockValue();
-                stockValue.setQuantity(resultSet.getDouble("quantity"));
-                stockValue.setUnit(Unit.valueOf(resultSet.getString("unit")));
-                stockMovement.setValue(stockValue);
+                Ingredient ingredient = ingredientRowMapper.map(resultSet);
+                ingredientsById.put(ingredient.getId(), ingredient);
+            }
+        }
+        Map<Integer, List<StockMovement>> movementsByIngredient = findStockMovementsByIngredientIds(connection, ingredientIds, null, null);
+        List<Ingredient> ingredients = new ArrayList<>();
+        for (Integer ingredientId : ingredientIds) {
+            Ingredient ingredient = ingredientsById.get(ingredientId);
+            if (ingredient != null) {
+                ingredient.setStockMovementList(movementsByIngredient.getOrDefault(ingredientId, new ArrayList<>()));
+                ingredients.add(ingredient);
+            }
+        }
+        return ingredients;
+    }
 
-                stockMovementList.add(stockMovement);
+    /**
+     * Movements of the ingredients, all of them when ingredientIds is null. The optional
+     * creation_datetime bounds let PostgreSQL prune the monthly partitions outside of them.
+     */
+    private Map<Integer, List<StockMovement>> findStockMovementsByIngredientIds(Connection connection, List<Integer> ingredientIds,
+                                                                                Instant from, Instant to)
+            throws SQLException {
+        Map<Integer, List<StockMovement>> movementsByIngredient = new HashMap<>();
+        if (ingredientIds != null && ingredientIds.isEmpty()) {
+            return movementsByIngredient;
+        }
+        StringBuilder sql = new StringBuilder("""
+                select id, id_ingredient, quantity, unit, type, creation_datetime, unit_price, expiry_datetime, id_lot,
+                  carried_forward
+                from stock_movement
+                where true""");
+        List<Object> parameters = new ArrayList<>();
+        if (ingredientIds != null) {
+            sql.append(" and id_ingredient = any(?)");
+            parameters.add(connection.createArrayOf("integer", ingredientIds.toArray()));
+        }
+        if (from != null) {
+            sql.append(" and creation_datetime >= ?");
+            parameters.add(Timestamp.from(from));
+        }
+        if (to != null) {
+            sql.append(" and creation_datetime < ?");
+            parameters.add(Timestamp.from(to));
+        }
+        sql.append(" order by id_ingredient, creation_datetime");
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql.toString())) {
+            bindParameters(preparedStatement, parameters);
+            ResultSet resultSet = preparedStatement.executeQuery();
+            StockMovementRowMapper stockMovementRowMapper = new StockMovementRowMapper(resultSet);
+            while (resultSet.next()) {
+                movementsByIngredient
+                        .computeIfAbsent(stockMovementRowMapper.getIngredientId(resultSet), key -> new ArrayList<>())
+                        .add(stockMovementRowMapper.map(resultSet));
             }
-            dbConnection.closeConnection(connection);
-            return stockMovementList;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
+        return movementsByIngredient;
+    }
+
+    @Override
+    public Map<Integer, List<StockMovement>> findStockMovements(Instant from, Instant to) {
+        return withReadConnection(connection -> findStockMovementsByIngredientIds(connection, null, from, to));
+    }
+
+    @Override
+    public List<StockLot> findExpiringLots(Instant from, Instant to) {
+        StringBuilder sql = new StringBuilder("""
+                select lot.id, lot.id_ingredient, lot.quantity - coalesce(used.quantity, 0) as remaining_quantity,
+                       lot.unit, lot.unit_price, lot.expiry_datetime, lot.creation_datetime
+                from stock_movement lot
+                left join lateral (select sum(o.quantity) as quantity
+                                   from stock_movement o
+                                   where o.id_lot = lot.id
+                                     and o.type = 'OUT') used on true
+                where lot.type = 'IN'
+                  and lot.expiry_datetime is not null""");
+        List<Object> parameters = new ArrayList<>();
+        if (from != null) {
+            sql.append(" and lot.expiry_datetime >= ?");
+            parameters.add(Timestamp.from(from));
+        }
+        if (to != null) {
+            sql.append(" and lot.expiry_datetime < ?");
+            parameters.add(Timestamp.from(to));
+        }
+        sql.append(" and lot.quantity - coalesce(used.quantity, 0) > 0 order by lot.expiry_datetime, lot.id");
+        return withReadConnection(connection -> {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql.toString())) {
+                bindParameters(preparedStatement, parameters);
+                ResultSet resultSet = preparedStatement.executeQuery();
+                List<StockLot> lots = new ArrayList<>();
+                while (resultSet.next()) {
+                    lots.add(new StockLot(
+                            resultSet.getInt(1),
+                            resultSet.getInt(2),
+                            resultSet.getDouble(3),
+                            EnumDecoder.UNIT.decode(resultSet.getString(4)),
+                            ResultSetColumns.getNullableDouble(resultSet, 5),
+                            ResultSetColumns.getInstant(resultSet, 6),
+                            ResultSetColumns.getInstant(resultSet, 7)));
+                }
+                return lots;
+            }
+        });
+    }
+
+    @Override
+    public List<StockMovement> findStockMovementsByIngredientId(Integer id) {
+        return withReadConnection(connection -> findStockMovementsByIngredientIds(connection, List.of(id), null, null)
+                .getOrDefault(id, new ArrayList<>()));
+    }
+
+    @Override
+    public List<StockMovement> findStockMovementsByIngredientId(Integer id, Instant from, Instant to) {
+        return withReadConnection(connection -> findStockMovementsByIngredientIds(connection, List.of(id), from, to)
+                .getOrDefault(id, new ArrayList<>()));
     }
 
 
-    Dish saveDish(Dish toSave) {
+    @Override
+    public Dish saveDish(Dish toSave) {
         String upsertDishSql = """
                     INSERT INTO dish (id, selling_price, name, dish_type)
-                    VALUES (?, ?, ?, ?::dish_type)
+                    VALUES (coalesce(?, nextval(pg_get_serial_sequence('dish', 'id'))), ?, ?, ?::dish_type)
                     ON CONFLICT (id) DO UPDATE
                     SET name = EXCLUDED.name,
                         dish_type = EXCLUDED.dish_type,
                         selling_price = EXCLUDED.selling_price
-                    RETURNING id
+                    RETURNING id, name, dish_type, selling_price
                 """;
 
-        try (Connection conn = new DBConnection().getConnection()) {
-            conn.setAutoCommit(false);
-            Integer dishId;
+        return inTransaction(conn -> {
+            Dish saved;
             try (PreparedStatement ps = conn.prepareStatement(upsertDishSql)) {
-                if (toSave.getId() != null) {
-                    ps.setInt(1, toSave.getId());
-                } else {
-                    ps.setInt(1, getNextSerialValue(conn, "dish", "id"));
-                }
+                ps.setObject(1, toSave.getId(), Types.INTEGER);
                 if (toSave.getPrice() != null) {
                     ps.setDouble(2, toSave.getPrice());
                 } else {
@@ -265,296 +722,366 @@ public class DataRetriever {
                 ps.setString(3, toSave.getName());
                 ps.setString(4, toSave.getDishType().name());
                 try (ResultSet rs = ps.executeQuery()) {
+                    DishRowMapper dishRowMapper = new DishRowMapper(rs);
                     rs.next();
-                    dishId = rs.getInt(1);
+                    saved = dishRowMapper.map(rs);
                 }
             }
 
-            List<DishIngredient> newDishIngredients = toSave.getDishIngredients();
-            detachIngredients(conn, newDishIngredients);
-            attachIngredients(conn, newDishIngredients);
+            detachIngredients(conn, saved.getId());
+            UnitOfWork.afterCommit(() -> dropNameIndex(forTenant(dishNameIndexes)));
+            attachIngredients(conn, saved.getId(), toSave.getDishIngredients());
 
-            conn.commit();
-            return findDishById(dishId);
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+            saved.setDishIngredients(findDishIngredientsByDishIds(conn, List.of(saved.getId())).getOrDefault(saved.getId(), new ArrayList<>()));
+            return saved;
+        });
     }
 
+    @Override
     public List<Ingredient> createIngredients(List<Ingredient> newIngredients) {
         if (newIngredients == null || newIngredients.isEmpty()) {
             return List.of();
         }
-        List<Ingredient> savedIngredients = new ArrayList<>();
-        DBConnection dbConnection = new DBConnection();
-        Connection conn = dbConnection.getConnection();
-        try {
-            conn.setAutoCommit(false);
-            String insertSql = """
-                        INSERT INTO ingredient (id, name, category, price)
-                        VALUES (?, ?, ?::ingredient_category, ?)
-                        RETURNING id
-                    """;
+        String insertSql = """
+                    INSERT INTO ingredient (id, name, category, price)
+                    VALUES (coalesce(?, nextval(pg_get_serial_sequence('ingredient', 'id'))), ?, ?::ingredient_category, ?)
+                    RETURNING id
+                """;
+        return inTransaction(conn -> {
+            UnitOfWork.afterCommit(() -> dropNameIndex(forTenant(ingredientNameIndexes)));
+            List<Ingredient> savedIngredients = new ArrayList<>();
             try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
                 for (Ingredient ingredient : newIngredients) {
-                    if (ingredient.getId() != null) {
-                        ps.setInt(1, ingredient.getId());
-                    } else {
-                        ps.setInt(1, getNextSerialValue(conn, "ingredient", "id"));
-                    }
+                    ps.setObject(1, ingredient.getId(), Types.INTEGER);
                     ps.setString(2, ingredient.getName());
                     ps.setString(3, ingredient.getCategory().name());
                     ps.setDouble(4, ingredient.getPrice());
 
                     try (ResultSet rs = ps.executeQuery()) {
                         rs.next();
-                        int generatedId = rs.getInt(1);
-                        ingredient.setId(generatedId);
+                        ingredient.setId(rs.getInt(1));
                         savedIngredients.add(ingredient);
                     }
                 }
-                conn.commit();
-                return savedIngredients;
-            } catch (SQLException e) {
-                conn.rollback();
-                throw new RuntimeException(e);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        } finally {
-            dbConnection.closeConnection(conn);
-        }
+            return savedIngredients;
+        });
     }
 
 
-    private void detachIngredients(Connection conn, List<DishIngredient> dishIngredients) {
-        Map<Integer, List<DishIngredient>> dishIngredientsGroupByDishId = dishIngredients.stream()
-                .collect(Collectors.groupingBy(dishIngredient -> dishIngredient.getDish().getId()));
-        dishIngredientsGroupByDishId.forEach((dishId, dishIngredientList) -> {
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "DELETE FROM dish_ingredient where id_dish = ?")) {
-                ps.setInt(1, dishId);
-                ps.executeUpdate(); // TODO: must be a grouped by batch
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
-            }
-        });
+    private void detachIngredients(Connection conn, Integer dishId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM dish_ingredient where id_dish = ?")) {
+            ps.setInt(1, dishId);
+            ps.executeUpdate();
+        }
     }
 
-    private void attachIngredients(Connection conn, List<DishIngredient> ingredients)
+    private void attachIngredients(Connection conn, Integer dishId, List<DishIngredient> ingredients)
             throws SQLException {
 
         if (ingredients == null || ingredients.isEmpty()) {
             return;
         }
         String attachSql = """
-                    insert into dish_ingredient (id, id_ingredient, id_dish, quantity_required, unit)
-                    values (?, ?, ?, ?, ?::unit)
+                    insert into dish_ingredient (id_ingredient, id_dish, quantity_required, unit)
+                    values (?, ?, ?, ?::unit)
                 """;
 
         try (PreparedStatement ps = conn.prepareStatement(attachSql)) {
             for (DishIngredient dishIngredient : ingredients) {
-                ps.setInt(1, getNextSerialValue(conn, "dish_ingredient", "id"));
-                ps.setInt(2, dishIngredient.getIngredient().getId());
-                ps.setInt(3, dishIngredient.getDish().getId());
-                ps.setDouble(4, dishIngredient.getQuantity());
-                ps.setObject(5, dishIngredient.getUnit());
+                ps.setInt(1, dishIngredient.getIngredient().getId());
+                ps.setInt(2, dishId);
+                ps.setDouble(3, dishIngredient.getQuantity());
+                ps.setString(4, dishIngredient.getUnit().name());
                 ps.addBatch(); // Can be substitute ps.executeUpdate() but bad performance
             }
             ps.executeBatch();
         }
     }
 
-    private List<DishIngredient> findIngredientByDishId(Integer idDish) {
-        DBConnection dbConnection = new DBConnection();
-        Connection connection = dbConnection.getConnection();
-        List<DishIngredient> dishIngredients = new ArrayList<>();
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(
-                    """
-                            select ingredient.id, ingredient.name, ingredient.price, ingredient.category, di.quantity_required, di.unit
-                            from ingredient join dish_ingredient di on di.id_ingredient = ingredient.id where id_dish = ?;
-                            """);
-            preparedStatement.setInt(1, idDish);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            while (resultSet.next()) {
-                Ingredient ingredient = new Ingredient();
-                ingredient.setId(resultSet.getInt("id"));
-                ingredient.setName(resultSet.getString("name"));
-                ingredient.setPrice(resultSet.getDouble("price"));
-                ingredient.setCategory(CategoryEnum.valueOf(resultSet.getString("category")));
-
-                DishIngredient dishIngredient = new DishIngredient();
-                dishIngredient.setIngredient(ingredient);
-                dishIngredient.setQuantity(resultSet.getObject("quantity_required") == null ? null : resultSet.getDouble("quantity_required"));
-                dishIngredient.setUnit(Unit.valueOf(resultSet.getString("unit")));
-
-                dishIngredients.add(dishIngredient);
+    @Override
+    public Page<Order> findOrders(OrderFilter filter, Instant afterCreationDatetime, Integer afterId, int limit) {
+        OrderValidation.validateCursor(afterCreationDatetime, afterId);
+        StringBuilder sql = new StringBuilder("""
+                select o.id, o.reference, o.creation_datetime, o.installation_datetime, o.departure_datetime,
+                  t.id as table_id, t.number as table_number
+                from "order" o
+                left join restaurant_table t on o.id_table = t.id
+                where true""");
+        List<Object> parameters = new ArrayList<>();
+        if (afterId != null) {
+            sql.append(" and (o.creation_datetime, o.id) > (?, ?)");
+            parameters.add(Timestamp.from(afterCreationDatetime));
+            parameters.add(afterId);
+        }
+        if (filter != null) {
+            if (filter.getTableId() != null) {
+                sql.append(" and o.id_table = ?");
+                parameters.add(filter.getTableId());
+            }
+            if (filter.getCreatedFrom() != null) {
+                sql.append(" and o.creation_datetime >= ?");
+                parameters.add(Timestamp.from(filter.getCreatedFrom()));
+            }
+            if (filter.getCreatedTo() != null) {
+                sql.append(" and o.creation_datetime < ?");
+                parameters.add(Timestamp.from(filter.getCreatedTo()));
             }
-            dbConnection.closeConnection(connection);
-            return dishIngredients;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
-    }
-
-
-    private String getSerialSequenceName(Connection conn, String tableName, String columnName)
-            throws SQLException {
+        sql.append(" order by o.creation_datetime, o.id limit ?");
+        parameters.add(limit + 1);
 
-        String sql = "SELECT pg_get_serial_sequence(?, ?)";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, tableName);
-            ps.setString(2, columnName);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString(1);
+        return withReadConnection(connection -> {
+            List<Order> orders = new ArrayList<>();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql.toString())) {
+                bindParameters(preparedStatement, parameters);
+                ResultSet resultSet = preparedStatement.executeQuery();
+                OrderRowMapper orderRowMapper = new OrderRowMapper(resultSet);
+                while (resultSet.next()) {
+                    orders.add(orderRowMapper.map(resultSet));
                 }
             }
-        }
-        return null;
+            boolean hasMore = orders.size() > limit;
+            if (hasMore) {
+                orders.remove(limit);
+            }
+
+            List<Integer> orderIds = orders.stream().map(Order::getId).toList();
+            Map<Integer, List<DishOrder>> dishOrdersByOrder = findDishOrdersByOrderIds(connection, orderIds);
+            for (Order order : orders) {
+                order.setDishOrderList(dishOrdersByOrder.getOrDefault(order.getId(), new ArrayList<>()));
+            }
+            return new Page<>(orders, hasMore);
+        });
     }
 
-    private int getNextSerialValue(Connection conn, String tableName, String columnName)
+    private Map<Integer, List<DishOrder>> findDishOrdersByOrderIds(Connection connection, List<Integer> orderIds)
             throws SQLException {
-
-        String sequenceName = getSerialSequenceName(conn, tableName, columnName);
-        if (sequenceName == null) {
-            throw new IllegalArgumentException(
-                    "Any sequence found for " + tableName + "." + columnName
-            );
+        Map<Integer, List<DishOrder>> dishOrdersByOrder = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return dishOrdersByOrder;
         }
-        updateSequenceNextValue(conn, tableName, columnName, sequenceName);
-
-        String nextValSql = "SELECT nextval(?)";
-
-        try (PreparedStatement ps = conn.prepareStatement(nextValSql)) {
-            ps.setString(1, sequenceName);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                return rs.getInt(1);
+        Map<Integer, List<DishOrder>> dishOrdersByDish = new HashMap<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                "select id, id_order, id_dish, quantity from dish_order where id_order = any(?) order by id")) {
+            preparedStatement.setArray(1, connection.createArrayOf("integer", orderIds.toArray()));
+            ResultSet resultSet = preparedStatement.executeQuery();
+            DishOrderRowMapper dishOrderRowMapper = new DishOrderRowMapper(resultSet);
+            while (resultSet.next()) {
+                DishOrder dishOrder = dishOrderRowMapper.map(resultSet);
+                dishOrdersByOrder.computeIfAbsent(dishOrderRowMapper.getOrderId(resultSet), key -> new ArrayList<>()).add(dishOrder);
+                dishOrdersByDish.computeIfAbsent(dishOrderRowMapper.getDishId(resultSet), key -> new ArrayList<>()).add(dishOrder);
             }
         }
-    }
+        if (dishOrdersByDish.isEmpty()) {
+            return dishOrdersByOrder;
+        }
 
-    private void updateSequenceNextValue(Connection conn, String tableName, String columnName, String sequenceName) throws SQLException {
-        String sql = String.format("SELECT COALESCE(MAX(%s), 0) FROM %s", columnName, tableName);
-        int maxId = 0;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    maxId = rs.getInt(1);
+        List<Integer> dishIds = new ArrayList<>(dishOrdersByDish.keySet());
+        Map<Integer, List<DishIngredient>> dishIngredientsByDish = findDishIngredientsByDishIds(connection, dishIds);
+        try (PreparedStatement dishStatement = connection.prepareStatement(
+                "select id, name, dish_type, selling_price from dish where id = any(?)")) {
+            dishStatement.setArray(1, connection.createArrayOf("integer", dishIds.toArray()));
+            ResultSet dishResultSet = dishStatement.executeQuery();
+            DishRowMapper dishRowMapper = new DishRowMapper(dishResultSet);
+            while (dishResultSet.next()) {
+                Dish dish = dishRowMapper.map(dishResultSet);
+                dish.setDishIngredients(dishIngredientsByDish.getOrDefault(dish.getId(), new ArrayList<>()));
+                for (DishOrder dishOrder : dishOrdersByDish.get(dish.getId())) {
+                    dishOrder.setDish(dish);
                 }
             }
         }
+        return dishOrdersByOrder;
+    }
 
-        String setValSql;
-        if (maxId == 0) {
-            setValSql = String.format("SELECT setval('%s', 1, false)", sequenceName);
-        } else {
-            setValSql = String.format("SELECT setval('%s', %d, true)", sequenceName, maxId);
+    private void bindParameters(PreparedStatement preparedStatement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            preparedStatement.setObject(i + 1, parameters.get(i));
         }
+    }
 
-        try (PreparedStatement ps = conn.prepareStatement(setValSql)) {
-            ps.executeQuery();
-        }
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 
-    public Order saveOrder(Order orderToSave) {
-        if (orderToSave.getTable() == null) {
-             throw new RuntimeException("Table is mandatory for an order");
+    /**
+     * Reserves `count` ids of a serial column in a single round trip.
+     */
+    private List<Integer> nextSerialValues(Connection conn, String tableName, int count) throws SQLException {
+        List<Integer> ids = new ArrayList<>(count);
+        if (count == 0) {
+            return ids;
         }
-        if (orderToSave.getInstallationDate() == null || orderToSave.getDepartureDate() == null) {
-            throw new RuntimeException("Installation and departure dates are mandatory");
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)")) {
+            ps.setString(1, tableName);
+            ps.setInt(2, count);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
         }
+        return ids;
+    }
 
-        List<RestaurantTable> availableTables = findAvailableTables(orderToSave.getInstallationDate(), orderToSave.getDepartureDate());
-
-        boolean isSelectedTableAvailable = availableTables.stream()
-            .anyMatch(t -> t.getId().equals(orderToSave.getTable().getId()));
-
-        if (!isSelectedTableAvailable) {
-            String availableMsg = availableTables.isEmpty()
-                ? "aucun table n'est disponible"
-                : "les tables numéro " + availableTables.stream()
-                      .map(t -> t.getNumber().toString())
-                      .collect(Collectors.joining(" et ")) + " sont actuellement libres";
+    @Override
+    public Order saveOrder(Order orderToSave) {
+        return submitOrder(orderToSave).getOrder();
+    }
 
-            throw new RuntimeException("La table numéro " + orderToSave.getTable().getNumber() + " n'est pas disponible, " + availableMsg);
-        }
+    @Override
+    public OrderSubmission submitOrder(Order orderToSave) {
+        OrderValidation.validateOrder(orderToSave);
+        boolean isNew = orderToSave.getId() == null;
 
-        // Proceed to save
+        // A new order whose reference is taken inserts nothing and returns no row.
         String upsertOrderSql = """
             INSERT INTO "order" (id, reference, creation_datetime, id_table, installation_datetime, departure_datetime)
-            VALUES (?, ?, ?, ?, ?, ?)
+            VALUES (coalesce(?, nextval(pg_get_serial_sequence('"order"', 'id'))), ?, ?, ?, ?, ?)
+        """ + (isNew ? """
+            ON CONFLICT (reference) DO NOTHING
+        """ : """
             ON CONFLICT (id) DO UPDATE
             SET reference = EXCLUDED.reference,
                 creation_datetime = EXCLUDED.creation_datetime,
                 id_table = EXCLUDED.id_table,
                 installation_datetime = EXCLUDED.installation_datetime,
                 departure_datetime = EXCLUDED.departure_datetime
-            RETURNING id
+        """) + """
+            RETURNING id, reference, creation_datetime, installation_datetime, departure_datetime,
+              id_table as table_id, (select number from restaurant_table where id = id_table) as table_number
         """;
 
-        try (Connection conn = new DBConnection().getConnection()) {
-             conn.setAutoCommit(false);
-             Integer orderId;
-             try (PreparedStatement ps = conn.prepareStatement(upsertOrderSql)) {
-                 if (orderToSave.getId() != null) {
-                     ps.setInt(1, orderToSave.getId());
-                 } else {
-                     ps.setInt(1, getNextSerialValue(conn, "\"order\"", "id"));
-                 }
-                 ps.setString(2, orderToSave.getReference());
-                 ps.setTimestamp(3, Timestamp.from(orderToSave.getCreationDatetime()));
-                 ps.setInt(4, orderToSave.getTable().getId());
-                 ps.setTimestamp(5, Timestamp.from(orderToSave.getInstallationDate()));
-                 ps.setTimestamp(6, Timestamp.from(orderToSave.getDepartureDate()));
-
-                 try (ResultSet rs = ps.executeQuery()) {
-                     rs.next();
-                     orderId = rs.getInt(1);
-                 }
-             }
-
-             // Save DishOrders
-             // First delete existing
-             try (PreparedStatement psDelete = conn.prepareStatement("DELETE FROM dish_order WHERE id_order = ?")) {
-                 psDelete.setInt(1, orderId);
-                 psDelete.executeUpdate();
-             }
-
-             // Then insert new
-             if (orderToSave.getDishOrderList() != null && !orderToSave.getDishOrderList().isEmpty()) {
-                 String insertDishOrder = "INSERT INTO dish_order (id, id_order, id_dish, quantity) VALUES (?, ?, ?, ?)";
-                 try (PreparedStatement psDish = conn.prepareStatement(insertDishOrder)) {
-                     for (DishOrder dishOrder : orderToSave.getDishOrderList()) {
-                          psDish.setInt(1, getNextSerialValue(conn, "dish_order", "id"));
-                          psDish.setInt(2, orderId);
-                          psDish.setInt(3, dishOrder.getDish().getId());
-                          psDish.setInt(4, dishOrder.getQuantity());
-                          psDish.addBatch();
-                     }
-                     psDish.executeBatch();
-                 }
-             }
-
-             conn.commit();
-             return findOrderByReference(orderToSave.getReference()); // Re-fetch to return complete object
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        return inTransaction(conn -> {
+            // Locking the table row serialises concurrent bookings of the same table.
+            RestaurantTable table;
+            try (PreparedStatement psLock = conn.prepareStatement(
+                    "SELECT id, number, capacity FROM restaurant_table WHERE id = ? FOR UPDATE")) {
+                psLock.setInt(1, orderToSave.getTable().getId());
+                try (ResultSet rs = psLock.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new NotFoundException("Table not found " + orderToSave.getTable().getId());
+                    }
+                    table = new RestaurantTableRowMapper(rs).map(rs);
+                }
+            }
+            List<RestaurantTable> availableTables = findAvailableTables(orderToSave.getInstallationDate(), orderToSave.getDepartureDate());
+            if (isNew && orderToSave.getReference() != null
+                    && !OrderValidation.isTableAvailable(orderToSave, availableTables)) {
+                // A retry finds its table booked by the original submission.
+                Order original = findOrderByReference(conn, orderToSave.getReference());
+                if (original != null) {
+                    return OrderSubmission.replayed(original);
+                }
+            }
+            OrderValidation.checkTableAvailable(orderToSave, table, availableTables);
+
+            Order saved;
+            try (PreparedStatement ps = conn.prepareStatement(upsertOrderSql)) {
+                ps.setObject(1, orderToSave.getId(), Types.INTEGER);
+                ps.setString(2, orderToSave.getReference());
+                ps.setTimestamp(3, Timestamp.from(orderToSave.getCreationDatetime()));
+                ps.setInt(4, orderToSave.getTable().getId());
+                ps.setTimestamp(5, Timestamp.from(orderToSave.getInstallationDate()));
+                ps.setTimestamp(6, Timestamp.from(orderToSave.getDepartureDate()));
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    OrderRowMapper orderRowMapper = new OrderRowMapper(rs);
+                    if (!rs.next()) {
+                        return OrderSubmission.replayed(findOrderByReference(conn, orderToSave.getReference()));
+                    }
+                    saved = orderRowMapper.map(rs);
+                }
+            }
+
+            // Save DishOrders
+            // First delete existing
+            try (PreparedStatement psDelete = conn.prepareStatement("DELETE FROM dish_order WHERE id_order = ?")) {
+                psDelete.setInt(1, saved.getId());
+                psDelete.executeUpdate();
+            }
+
+            // Then insert new
+            if (orderToSave.getDishOrderList() != null && !orderToSave.getDishOrderList().isEmpty()) {
+                String insertDishOrder = "INSERT INTO dish_order (id_order, id_dish, quantity) VALUES (?, ?, ?)";
+                try (PreparedStatement psDish = conn.prepareStatement(insertDishOrder)) {
+                    for (DishOrder dishOrder : orderToSave.getDishOrderList()) {
+                        psDish.setInt(1, saved.getId());
+                        psDish.setInt(2, dishOrder.getDish().getId());
+                        psDish.setInt(3, dishOrder.getQuantity());
+                        psDish.addBatch();
+                    }
+                    psDish.executeBatch();
+                }
+            }
+
+            saved.setDishOrderList(findDishOrdersByOrderIds(conn, List.of(saved.getId()))
+                    .getOrDefault(saved.getId(), new ArrayList<>()));
+            Order committed = saved;
+            String tenant = TenantContext.current();
+            UnitOfWork.afterCommit(() -> orderListeners.stream()
+                    .filter(listener -> Objects.equals(listener.tenant(), tenant))
+                    .forEach(listener -> listener.listener().accept(committed)));
+            return OrderSubmission.created(saved);
+        });
+    }
+
+    @Override
+    public void addOrderListener(Consumer<Order> listener) {
+        orderListeners.add(new OrderListener(TenantContext.current(), listener));
+    }
+
+    @Override
+    public RestaurantTable saveTable(RestaurantTable table) {
+        String upsertTableSql = """
+                INSERT INTO restaurant_table (id, number, capacity)
+                VALUES (coalesce(?, nextval(pg_get_serial_sequence('restaurant_table', 'id'))), ?, coalesce(?, ?))
+                ON CONFLICT (number) DO UPDATE
+                SET capacity = coalesce(?, restaurant_table.capacity)
+                RETURNING id, number, capacity
+                """;
+        RestaurantTable saved = withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(upsertTableSql)) {
+                ps.setObject(1, table.getId(), Types.INTEGER);
+                ps.setInt(2, table.getNumber());
+                ps.setObject(3, table.getCapacity(), Types.INTEGER);
+                ps.setInt(4, RestaurantTable.DEFAULT_CAPACITY);
+                ps.setObject(5, table.getCapacity(), Types.INTEGER);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return new RestaurantTableRowMapper(rs).map(rs);
+                }
+            }
+        });
+        UnitOfWork.afterCommit(dbConnection::writeCommitted);
+        return saved;
+    }
+
+    @Override
+    public List<RestaurantTable> findAllTables() {
+        return withReadConnection(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("select id, number, capacity from restaurant_table order by number")) {
+                List<RestaurantTable> tables = new ArrayList<>();
+                ResultSet rs = ps.executeQuery();
+                RestaurantTableRowMapper tableRowMapper = new RestaurantTableRowMapper(rs);
+                while (rs.next()) {
+                    tables.add(tableRowMapper.map(rs));
+                }
+                return tables;
+            }
+        });
     }
 
+    @Override
     public List<RestaurantTable> findAvailableTables(Instant from, Instant to) {
         // A table is available if it does NOT have any overlapping order.
         // Overlap: (StartA <= EndB) and (EndA >= StartB)
         // So we want tables where NOT EXISTS (conflict)
 
         String sql = """
-            SELECT t.id, t.number
+            SELECT t.id, t.number, t.capacity
             FROM restaurant_table t
             WHERE NOT EXISTS (
                 SELECT 1 FROM "order" o
@@ -569,20 +1096,164 @@ public class DataRetriever {
           Overlap if: o.install < to AND o.depart > from
         */
 
-        DBConnection dbConnection = new DBConnection();
-        try (Connection connection = dbConnection.getConnection()) {
-             PreparedStatement ps = connection.prepareStatement(sql);
-             ps.setTimestamp(1, Timestamp.from(to));
-             ps.setTimestamp(2, Timestamp.from(from));
-
-             List<RestaurantTable> tables = new ArrayList<>();
-             ResultSet rs = ps.executeQuery();
-             while (rs.next()) {
-                 tables.add(new RestaurantTable(rs.getInt("id"), rs.getInt("number")));
-             }
-             return tables;
+        return withReadConnection(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setTimestamp(1, Timestamp.from(to));
+                ps.setTimestamp(2, Timestamp.from(from));
+
+                List<RestaurantTable> tables = new ArrayList<>();
+                ResultSet rs = ps.executeQuery();
+                RestaurantTableRowMapper tableRowMapper = new RestaurantTableRowMapper(rs);
+                while (rs.next()) {
+                    tables.add(tableRowMapper.map(rs));
+                }
+                return tables;
+            }
+        });
+    }
+
+    @Override
+    public List<Order> findTableBookings(Instant from, Instant to) {
+        return withReadConnection(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("""
+                    select o.id, o.reference, o.creation_datetime, o.installation_datetime, o.departure_datetime,
+                      t.id as table_id, t.number as table_number
+                    from "order" o
+                    join restaurant_table t on o.id_table = t.id
+                    where o.installation_datetime < ? and o.departure_datetime > ?
+                    order by t.id, o.installation_datetime""")) {
+                ps.setTimestamp(1, Timestamp.from(to));
+                ps.setTimestamp(2, Timestamp.from(from));
+
+                List<Order> orders = new ArrayList<>();
+                ResultSet rs = ps.executeQuery();
+                OrderRowMapper orderRowMapper = new OrderRowMapper(rs);
+                while (rs.next()) {
+                    orders.add(orderRowMapper.map(rs));
+                }
+                return orders;
+            }
+        });
+    }
+
+    @Override
+    public List<Order> findTableBookingsUpdatedSince(Instant since) {
+        return withReadConnection(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("""
+                    select o.id, o.reference, o.creation_datetime, o.installation_datetime, o.departure_datetime,
+                      t.id as table_id, t.number as table_number
+                    from "order" o
+                    join restaurant_table t on o.id_table = t.id
+                    """ + (since == null ? "" : "where o.updated_at >= ?\n") + "order by o.id")) {
+                if (since != null) {
+                    ps.setTimestamp(1, Timestamp.from(since));
+                }
+
+                List<Order> orders = new ArrayList<>();
+                ResultSet rs = ps.executeQuery();
+                OrderRowMapper orderRowMapper = new OrderRowMapper(rs);
+                while (rs.next()) {
+                    orders.add(orderRowMapper.map(rs));
+                }
+                return orders;
+            }
+        });
+    }
+
+    /**
+     * Runs the work on the connection bound by the current UnitOfWork, or on a
+     * short-lived auto-commit connection when there is none.
+     */
+    private <T> T withConnection(SqlWork<T> work) {
+        Connection bound = UnitOfWork.currentConnection(dbConnection);
+        try {
+            if (bound != null) {
+                return executeTracked(bound, work);
+            }
+            try (Connection connection = dbConnection.getConnection()) {
+                return executeTracked(connection, work);
+            }
         } catch (SQLException e) {
-             throw new RuntimeException(e);
+            throw new RuntimeException(e);
         }
     }
+
+    private static <T> T executeTracked(Connection connection, SqlWork<T> work) throws SQLException {
+        Connection previous = QueryCancellation.track(connection);
+        try {
+            return work.execute(connection);
+        } finally {
+            QueryCancellation.untrack(previous);
+        }
+    }
+
+    /**
+     * Like withConnection, but outside of a UnitOfWork the work may run on a replica.
+     */
+    private <T> T withReadConnection(SqlWork<T> work) {
+        if (UnitOfWork.currentConnection(dbConnection) != null) {
+            return withConnection(work);
+        }
+        try (Connection connection = dbConnection.getReadConnection()) {
+            return executeTracked(connection, work);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private <T> T inTransaction(SqlWork<T> work) {
+        return unitOfWork().execute(isolationLevel, () -> {
+            T result = withConnection(work);
+            UnitOfWork.afterCommit(dbConnection::writeCommitted);
+            return result;
+        });
+    }
+
+    // Index of the names of the table, by id, rebuilt once expired or dropped by a save.
+    private NameSearchIndex<Integer> nameIndex(AtomicReference<CachedNameIndex> cache, String table) {
+        CachedNameIndex cached = cache.get();
+        if (cached != null && cached.index() != null && System.nanoTime() - cached.builtAt() < NAME_INDEX_TTL_NANOS) {
+            return cached.index();
+        }
+        long builtAt = System.nanoTime();
+        Map<Integer, String> names = withReadConnection(connection -> {
+            Map<Integer, String> namesById = new HashMap<>();
+            try (PreparedStatement preparedStatement = connection.prepareStatement("select id, name from " + table);
+                 ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    namesById.put(resultSet.getInt("id"), resultSet.getString("name"));
+                }
+            }
+            return namesById;
+        });
+        NameSearchIndex<Integer> index = NameSearchIndex.of(new ArrayList<>(names.keySet()), names::get);
+        // Not kept when a save committed meanwhile, as it may be missing from it.
+        cache.compareAndSet(cached, new CachedNameIndex(index, builtAt));
+        return index;
+    }
+
+    private static AtomicReference<CachedNameIndex> forTenant(Map<String, AtomicReference<CachedNameIndex>> indexes) {
+        String tenant = TenantContext.current();
+        return indexes.computeIfAbsent(tenant == null ? "" : tenant, key -> new AtomicReference<>());
+    }
+
+    // A new empty entry rather than null, so that an index being built cannot replace it.
+    private static void dropNameIndex(AtomicReference<CachedNameIndex> cache) {
+        cache.set(new CachedNameIndex(null, 0));
+    }
+
+    private static boolean isUndefinedFunction(RuntimeException e) {
+        return e.getCause() instanceof SQLException sqlException
+                && UNDEFINED_FUNCTION.equals(sqlException.getSQLState());
+    }
+
+    private record CachedNameIndex(NameSearchIndex<Integer> index, long builtAt) {
+    }
+
+    private record OrderListener(String tenant, Consumer<Order> listener) {
+    }
+
+    private interface SqlWork<T> {
+        T execute(Connection connection) throws SQLException;
+    }
 }
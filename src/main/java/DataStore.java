@@ -0,0 +1,5 @@
+/**
+ * All repositories of one storage engine, see DataStoreFactory.
+ */
+public interface DataStore extends OrderRepository, DishRepository, IngredientRepository, StockRepository, TableRepository {
+}
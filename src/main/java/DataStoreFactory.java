@@ -0,0 +1,38 @@
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+public class DataStoreFactory {
+    public static final String JDBC = "jdbc";
+    public static final String MEMORY = "memory";
+    private static final int REPLICA_MAX_LAG_SECONDS = 2;
+
+    public static DataStore fromEnvironment() {
+        String engine = System.getenv("DATA_ENGINE");
+        return create(engine == null || engine.isBlank() ? JDBC : engine);
+    }
+
+    public static DataStore create(String engine) {
+        return switch (engine.toLowerCase()) {
+            case JDBC -> new DataRetriever(jdbcConnection());
+            case MEMORY -> new InMemoryDataStore();
+            default -> throw new IllegalArgumentException("Unknown data engine " + engine);
+        };
+    }
+
+    // DB_REPLICA_URLS lists JDBC URLs of read replicas of the default database, comma-separated.
+    private static DBConnection jdbcConnection() {
+        DBConnection primary = new DBConnection();
+        String replicaUrls = System.getenv("DB_REPLICA_URLS");
+        if (replicaUrls == null || replicaUrls.isBlank()) {
+            return primary;
+        }
+        List<DBConnection> replicas = Arrays.stream(replicaUrls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(url -> new DBConnection(url, primary.getUser(), primary.getPassword()))
+                .toList();
+        return new ReplicatedDBConnection(primary, replicas, Duration.ofSeconds(REPLICA_MAX_LAG_SECONDS))
+                .start(Duration.ofSeconds(1));
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * A call was refused without reaching the database, because its circuit breaker is open
+ * or its bulkhead is full. Worth retrying later, not right away.
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseUnavailableException(String message) {
+        super(message);
+    }
+}
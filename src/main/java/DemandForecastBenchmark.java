@@ -0,0 +1,72 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class DemandForecastBenchmark {
+    private static final int INGREDIENT_COUNT = 10_000;
+    private static final int HISTORY_DAYS = 90;
+    private static final double[] WEEKLY_PATTERN = {0.6, 0.8, 0.9, 1.0, 1.3, 1.6, 0.8};
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        ZoneId zoneId = ZoneId.systemDefault();
+        Instant now = LocalDate.of(2024, 4, 1).atTime(10, 0).atZone(zoneId).toInstant();
+        Random random = new Random(42);
+        List<Ingredient> ingredients = generateIngredients(random, now, zoneId);
+
+        System.out.println("=== Demand forecast: " + INGREDIENT_COUNT + " ingredients x " + HISTORY_DAYS + " days ===");
+        long start = System.nanoTime();
+        DemandForecaster forecaster = new DemandForecaster().load(ingredients, now);
+        System.out.printf("load: %.2f ms%n", (System.nanoTime() - start) / 1_000_000.0);
+
+        forecaster.suggest(now); // warm up
+        long best = Long.MAX_VALUE;
+        List<ReorderSuggestion> suggestions = List.of();
+        for (int round = 0; round < ROUNDS; round++) {
+            Instant at = now.plusSeconds(60L * round);
+            for (int id = 1; id <= INGREDIENT_COUNT; id++) {
+                forecaster.apply(id, movement(MovementTypeEnum.OUT, random.nextDouble(), at));
+            }
+            long roundStart = System.nanoTime();
+            suggestions = forecaster.suggest(at);
+            best = Math.min(best, System.nanoTime() - roundStart);
+        }
+        System.out.printf("suggest: %.2f ms, %d reorders, first %s%n",
+                best / 1_000_000.0, suggestions.size(), suggestions.isEmpty() ? null : suggestions.get(0));
+    }
+
+    private static List<Ingredient> generateIngredients(Random random, Instant now, ZoneId zoneId) {
+        LocalDate firstDay = LocalDate.ofInstant(now, zoneId).minusDays(HISTORY_DAYS);
+        List<Ingredient> ingredients = new ArrayList<>(INGREDIENT_COUNT);
+        for (int id = 1; id <= INGREDIENT_COUNT; id++) {
+            double dailyMean = 1 + random.nextInt(20);
+            List<StockMovement> stockMovements = new ArrayList<>();
+            stockMovements.add(movement(MovementTypeEnum.IN, dailyMean * (HISTORY_DAYS + random.nextInt(15)),
+                    firstDay.atStartOfDay(zoneId).toInstant()));
+            for (int day = 0; day < HISTORY_DAYS; day++) {
+                LocalDate date = firstDay.plusDays(day);
+                double consumption = dailyMean * WEEKLY_PATTERN[date.getDayOfWeek().ordinal()] * (0.8 + 0.4 * random.nextDouble());
+                for (int service = 0; service < 3; service++) {
+                    stockMovements.add(movement(MovementTypeEnum.OUT, consumption / 3,
+                            date.atTime(11 + 4 * service, 0).atZone(zoneId).toInstant()));
+                }
+            }
+            ingredients.add(new Ingredient(id, "Ingredient " + id, CategoryEnum.OTHER, 100.0, stockMovements));
+        }
+        return ingredients;
+    }
+
+    private static StockMovement movement(MovementTypeEnum type, double quantity, Instant at) {
+        StockValue stockValue = new StockValue();
+        stockValue.setQuantity(quantity);
+        stockValue.setUnit(Unit.KG);
+        StockMovement stockMovement = new StockMovement();
+        stockMovement.setType(type);
+        stockMovement.setValue(stockValue);
+        stockMovement.setCreationDatetime(at);
+        return stockMovement;
+    }
+}
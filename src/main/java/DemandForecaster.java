@@ -0,0 +1,395 @@
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Forecasts the daily consumption of every ingredient from its OUT movements and suggests
+ * reorders. Consumption is summed per local day and smoothed exponentially (Holt-Winters
+ * without trend) with a multiplicative day-of-week factor, so that the busy Saturday and
+ * the quiet Monday are projected as such. The factors are first estimated from two weeks
+ * of history. On-hand stock is the movements applied summed IN less OUT, as getStockValueAt
+ * computes it, without rescanning the history.
+ * The state is updated incrementally: refresh only reads the movements created since the
+ * previous one, with a small overlap for late commits, and never rescans history.
+ * Orders booked ahead, exploded through their dishes' recipes, raise the demand expected
+ * over the lead time when they exceed the forecast.
+ */
+public class DemandForecaster {
+    private static final int HORIZON_DAYS = 365;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(5);
+    private static final double MIN_SEASON = 0.01;
+    private static final int WARM_UP_DAYS = 14;
+
+    private final ZoneId zoneId;
+    private final double levelSmoothing;
+    private final double seasonSmoothing;
+    private final int leadTimeDays;
+    private final int coverDays;
+    private final double safetyFactor;
+    private final Map<Integer, IngredientForecast> forecasts = new HashMap<>();
+    private final Map<Integer, BookedOrder> bookedOrders = new HashMap<>();
+    // Movements already applied that a refresh overlap may return again, with their creation.
+    private final Map<Integer, Instant> recentMovements = new HashMap<>();
+    private Instant watermark;
+
+    public DemandForecaster() {
+        this(ZoneId.systemDefault(), 0.3, 0.1, 2, 7, 0.5);
+    }
+
+    /**
+     * Reorders cover the consumption of leadTimeDays plus coverDays, plus a safety stock of
+     * safetyFactor times the lead time consumption; they are suggested once the stock on
+     * hand falls to the lead time consumption plus the safety stock.
+     */
+    public DemandForecaster(ZoneId zoneId, double levelSmoothing, double seasonSmoothing, int leadTimeDays,
+                            int coverDays, double safetyFactor) {
+        this.zoneId = zoneId;
+        this.levelSmoothing = levelSmoothing;
+        this.seasonSmoothing = seasonSmoothing;
+        this.leadTimeDays = leadTimeDays;
+        this.coverDays = coverDays;
+        this.safetyFactor = safetyFactor;
+    }
+
+    /**
+     * Replays the whole history of the ingredients, once; refresh takes over from now.
+     */
+    public synchronized DemandForecaster load(List<Ingredient> ingredients, Instant now) {
+        for (Ingredient ingredient : ingredients) {
+            IngredientForecast forecast = forecasts.computeIfAbsent(ingredient.getId(), key -> new IngredientForecast());
+            if (ingredient.getStockMovementList() == null) {
+                continue;
+            }
+            List<StockMovement> movements = new ArrayList<>(ingredient.getStockMovementList());
+            movements.sort(Comparator.comparing(StockMovement::getCreationDatetime));
+            for (StockMovement movement : movements) {
+                if (!movement.getCreationDatetime().isAfter(now)) {
+                    apply(forecast, movement);
+                    remember(movement, now);
+                }
+            }
+        }
+        watermark = now;
+        return this;
+    }
+
+    /**
+     * Registers the forecaster for the orders saved from now on, see addBookedOrder. A
+     * forecaster serves one restaurant: with a tenant-routed repository, register it inside
+     * TenantContext.run.
+     */
+    public DemandForecaster listenTo(OrderRepository orderRepository) {
+        orderRepository.addOrderListener(this::addBookedOrder);
+        return this;
+    }
+
+    /**
+     * Applies the movements created since the previous refresh and returns their count.
+     */
+    public synchronized int refresh(StockRepository stockRepository, Instant now) {
+        Instant from = watermark == null ? null : watermark.minus(REFRESH_OVERLAP);
+        int applied = 0;
+        for (var entry : stockRepository.findStockMovements(from, null).entrySet()) {
+            IngredientForecast forecast = forecasts.computeIfAbsent(entry.getKey(), key -> new IngredientForecast());
+            for (StockMovement movement : entry.getValue()) {
+                if (movement.getId() != null && recentMovements.containsKey(movement.getId())) {
+                    continue;
+                }
+                apply(forecast, movement);
+                remember(movement, now);
+                applied++;
+            }
+        }
+        watermark = now;
+        Instant forgetBefore = now.minus(REFRESH_OVERLAP);
+        recentMovements.values().removeIf(creation -> creation.isBefore(forgetBefore));
+        return applied;
+    }
+
+    /**
+     * Applies one movement of the ingredient, for callers that see movements as they happen.
+     */
+    public synchronized void apply(Integer ingredientId, StockMovement movement) {
+        apply(forecasts.computeIfAbsent(ingredientId, key -> new IngredientForecast()), movement);
+    }
+
+    /**
+     * Adds the ingredients the dishes of an upcoming order will need; saving the order again
+     * replaces them. Orders are forgotten once installed.
+     */
+    public synchronized void addBookedOrder(Order order) {
+        if (order.getId() == null || order.getInstallationDate() == null) {
+            return;
+        }
+        Map<Integer, Double> quantities = new HashMap<>();
+        if (order.getDishOrderList() != null) {
+            for (DishOrder dishOrder : order.getDishOrderList()) {
+                if (dishOrder.getDish() == null || dishOrder.getDish().getDishIngredients() == null) {
+                    continue;
+                }
+                for (DishIngredient dishIngredient : dishOrder.getDish().getDishIngredients()) {
+                    if (dishIngredient.getQuantity() != null) {
+                        quantities.merge(dishIngredient.getIngredient().getId(),
+                                dishIngredient.getQuantity() * dishOrder.getQuantity(), Double::sum);
+                    }
+                }
+            }
+        }
+        bookedOrders.put(order.getId(), new BookedOrder(order.getInstallationDate(), quantities));
+    }
+
+    /**
+     * Expected consumption of the ingredient over [now, now + days), or 0 when unknown.
+     * Like every method taking now, it closes the days before now as observed.
+     */
+    public synchronized double forecastConsumption(Integer ingredientId, Instant now, int days) {
+        IngredientForecast forecast = forecasts.get(ingredientId);
+        if (forecast == null) {
+            return 0;
+        }
+        forecast.closeDaysBefore(epochDay(now), this);
+        return forecast.expectedConsumption(now, days, this);
+    }
+
+    public synchronized Instant getStockOutAt(Integer ingredientId, Instant now) {
+        IngredientForecast forecast = forecasts.get(ingredientId);
+        if (forecast == null) {
+            return null;
+        }
+        forecast.closeDaysBefore(epochDay(now), this);
+        return forecast.stockOutAt(now, this);
+    }
+
+    public synchronized double getOnHand(Integer ingredientId) {
+        IngredientForecast forecast = forecasts.get(ingredientId);
+        return forecast == null ? 0 : forecast.onHand;
+    }
+
+    /**
+     * Reorder suggestions for every ingredient at or below its reorder point, soonest
+     * stock-out first.
+     */
+    public synchronized List<ReorderSuggestion> suggest(Instant now) {
+        Map<Integer, Double> bookedDemand = bookedDemandBefore(now, now.plusSeconds(leadTimeDays * SECONDS_PER_DAY));
+        long today = epochDay(now);
+        List<ReorderSuggestion> suggestions = new ArrayList<>();
+        for (Map.Entry<Integer, IngredientForecast> entry : forecasts.entrySet()) {
+            IngredientForecast forecast = entry.getValue();
+            forecast.closeDaysBefore(today, this);
+            double leadTimeDemand = Math.max(forecast.expectedConsumption(now, leadTimeDays, this),
+                    bookedDemand.getOrDefault(entry.getKey(), 0.0));
+            double safetyStock = safetyFactor * leadTimeDemand;
+            double reorderPoint = leadTimeDemand + safetyStock;
+            if (reorderPoint <= 0 || forecast.onHand > reorderPoint) {
+                continue;
+            }
+            double coverDemand = forecast.expectedConsumption(now.plusSeconds(leadTimeDays * SECONDS_PER_DAY), coverDays, this);
+            double quantity = Math.ceil((leadTimeDemand + coverDemand + safetyStock - forecast.onHand) * 100) / 100;
+            suggestions.add(new ReorderSuggestion(entry.getKey(), forecast.onHand, forecast.level, reorderPoint,
+                    quantity, forecast.stockOutAt(now, this)));
+        }
+        suggestions.sort(Comparator.comparing(ReorderSuggestion::getStockOutAt, Comparator.nullsLast(Comparator.naturalOrder())));
+        return suggestions;
+    }
+
+    private Map<Integer, Double> bookedDemandBefore(Instant now, Instant until) {
+        Map<Integer, Double> demand = new HashMap<>();
+        Iterator<BookedOrder> iterator = bookedOrders.values().iterator();
+        while (iterator.hasNext()) {
+            BookedOrder bookedOrder = iterator.next();
+            if (bookedOrder.installation.isBefore(now)) {
+                iterator.remove();
+            } else if (bookedOrder.installation.isBefore(until)) {
+                bookedOrder.quantities.forEach((ingredientId, quantity) -> demand.merge(ingredientId, quantity, Double::sum));
+            }
+        }
+        return demand;
+    }
+
+    private void apply(IngredientForecast forecast, StockMovement movement) {
+        double quantity = movement.getValue().getQuantity();
+        if (movement.getType() == MovementTypeEnum.IN) {
+            forecast.onHand += quantity;
+            return;
+        }
+        forecast.onHand -= quantity;
+        if (movement.isCarriedForward()) {
+            // Consumed in an archived month, not on the day it was carried to.
+            return;
+        }
+        long day = epochDay(movement.getCreationDatetime());
+        if (forecast.day == Long.MIN_VALUE) {
+            forecast.day = day;
+        }
+        // A movement arriving after its day was closed counts in the open day.
+        forecast.closeDaysBefore(day, this);
+        forecast.dayConsumption += quantity;
+    }
+
+    private void remember(StockMovement movement, Instant now) {
+        if (movement.getId() != null && !movement.getCreationDatetime().isBefore(now.minus(REFRESH_OVERLAP))) {
+            recentMovements.put(movement.getId(), movement.getCreationDatetime());
+        }
+    }
+
+    private long epochDay(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond() + zoneId.getRules().getOffset(instant).getTotalSeconds(), SECONDS_PER_DAY);
+    }
+
+    private long startOfDay(long epochDay) {
+        long local = epochDay * SECONDS_PER_DAY;
+        return local - zoneId.getRules().getOffset(Instant.ofEpochSecond(local)).getTotalSeconds();
+    }
+
+    private static int dayOfWeek(long epochDay) {
+        // Epoch day 0 was a Thursday; Monday is 0.
+        return (int) Math.floorMod(epochDay + 3, 7L);
+    }
+
+    private record BookedOrder(Instant installation, Map<Integer, Double> quantities) {
+    }
+
+    /**
+     * Smoothed state of one ingredient. day is the open local day, whose consumption so far
+     * is dayConsumption; the days before it are folded into level and season.
+     */
+    private static class IngredientForecast {
+        private long day = Long.MIN_VALUE;
+        private double dayConsumption;
+        private double level;
+        private final double[] season = {1, 1, 1, 1, 1, 1, 1};
+        private int closedDays;
+        private double onHand;
+        // Consumption of the first days, from which the season is first estimated.
+        private double[] warmUp = new double[WARM_UP_DAYS];
+
+        void closeDaysBefore(long targetDay, DemandForecaster forecaster) {
+            if (day == Long.MIN_VALUE) {
+                return;
+            }
+            while (day < targetDay) {
+                closeDay(forecaster);
+                day++;
+                dayConsumption = 0;
+            }
+        }
+
+        private void closeDay(DemandForecaster forecaster) {
+            if (warmUp != null) {
+                warmUp[closedDays++] = dayConsumption;
+                if (closedDays == WARM_UP_DAYS) {
+                    initializeFromWarmUp();
+                } else {
+                    // A plain average until the season can be estimated.
+                    level += (dayConsumption - level) / closedDays;
+                }
+                return;
+            }
+            int dayOfWeek = dayOfWeek(day);
+            double factor = season[dayOfWeek];
+            double newLevel = forecaster.levelSmoothing * (dayConsumption / factor) + (1 - forecaster.levelSmoothing) * level;
+            if (newLevel > 0) {
+                season[dayOfWeek] = Math.max(MIN_SEASON,
+                        forecaster.seasonSmoothing * (dayConsumption / newLevel) + (1 - forecaster.seasonSmoothing) * factor);
+                normalizeSeason();
+            }
+            level = newLevel;
+            closedDays++;
+        }
+
+        /**
+         * Season of each day of week as its share of the warm-up average, and level as the
+         * average of the last warm-up week.
+         */
+        private void initializeFromWarmUp() {
+            long firstDay = day - WARM_UP_DAYS + 1;
+            double total = 0;
+            double[] byDayOfWeek = new double[7];
+            for (int i = 0; i < WARM_UP_DAYS; i++) {
+                total += warmUp[i];
+                byDayOfWeek[dayOfWeek(firstDay + i)] += warmUp[i];
+            }
+            if (total > 0) {
+                for (int i = 0; i < 7; i++) {
+                    season[i] = Math.max(MIN_SEASON, byDayOfWeek[i] * 7 / total);
+                }
+                normalizeSeason();
+            }
+            double lastWeek = 0;
+            for (int i = WARM_UP_DAYS - 7; i < WARM_UP_DAYS; i++) {
+                lastWeek += warmUp[i];
+            }
+            level = lastWeek / 7;
+            warmUp = null;
+        }
+
+        private void normalizeSeason() {
+            double sum = 0;
+            for (double factor : season) {
+                sum += factor;
+            }
+            for (int i = 0; i < season.length; i++) {
+                season[i] = season[i] * 7 / sum;
+            }
+        }
+
+        double expectedOn(long epochDay) {
+            return level * season[dayOfWeek(epochDay)];
+        }
+
+        /**
+         * Expected consumption over [from, from + days), the current day counting for what
+         * is left of its expectation.
+         */
+        double expectedConsumption(Instant from, int days, DemandForecaster forecaster) {
+            if (level <= 0 || days <= 0) {
+                return 0;
+            }
+            long first = forecaster.epochDay(from);
+            double fractionLeft = 1 - (double) (from.getEpochSecond() - forecaster.startOfDay(first)) / SECONDS_PER_DAY;
+            double total = remainingOn(first, fractionLeft);
+            for (long epochDay = first + 1; epochDay < first + days; epochDay++) {
+                total += expectedOn(epochDay);
+            }
+            // The part of the last day before the same time of day.
+            return total + expectedOn(first + days) * (1 - fractionLeft);
+        }
+
+        private double remainingOn(long epochDay, double fractionLeft) {
+            double expected = expectedOn(epochDay) * fractionLeft;
+            return epochDay == day ? Math.max(0, Math.min(expected, expectedOn(epochDay) - dayConsumption)) : expected;
+        }
+
+        Instant stockOutAt(Instant now, DemandForecaster forecaster) {
+            if (onHand <= 0) {
+                return now;
+            }
+            if (level <= 0) {
+                return null;
+            }
+            long today = forecaster.epochDay(now);
+            long dayEnd = forecaster.startOfDay(today + 1);
+            double left = onHand;
+            double need = remainingOn(today, (double) (dayEnd - now.getEpochSecond()) / SECONDS_PER_DAY);
+            if (need >= left) {
+                return now.plusSeconds((long) ((dayEnd - now.getEpochSecond()) * left / need));
+            }
+            left -= need;
+            for (long epochDay = today + 1; epochDay <= today + HORIZON_DAYS; epochDay++) {
+                need = expectedOn(epochDay);
+                if (need >= left) {
+                    return Instant.ofEpochSecond(forecaster.startOfDay(epochDay) + (long) (SECONDS_PER_DAY * left / need));
+                }
+                left -= need;
+            }
+            return null;
+        }
+    }
+}
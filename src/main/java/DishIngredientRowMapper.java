@@ -0,0 +1,32 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a dish_ingredient row joined with its ingredient; the ingredient columns keep their own names.
+ */
+public class DishIngredientRowMapper implements RowMapper<DishIngredient> {
+    private final IngredientRowMapper ingredientRowMapper;
+    private final int idDish;
+    private final int quantityRequired;
+    private final int unit;
+
+    public DishIngredientRowMapper(ResultSet resultSet) throws SQLException {
+        ingredientRowMapper = new IngredientRowMapper(resultSet);
+        idDish = ResultSetColumns.indexOf(resultSet, "id_dish");
+        quantityRequired = ResultSetColumns.indexOf(resultSet, "quantity_required");
+        unit = ResultSetColumns.indexOf(resultSet, "unit");
+    }
+
+    @Override
+    public DishIngredient map(ResultSet resultSet) throws SQLException {
+        DishIngredient dishIngredient = new DishIngredient();
+        dishIngredient.setIngredient(ingredientRowMapper.map(resultSet));
+        dishIngredient.setQuantity(ResultSetColumns.getNullableDouble(resultSet, quantityRequired));
+        dishIngredient.setUnit(EnumDecoder.UNIT.decode(resultSet.getString(unit)));
+        return dishIngredient;
+    }
+
+    public int getDishId(ResultSet resultSet) throws SQLException {
+        return resultSet.getInt(idDish);
+    }
+}
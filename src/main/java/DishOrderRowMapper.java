@@ -0,0 +1,35 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a dish_order row without its dish, which the caller attaches once per distinct id_dish.
+ */
+public class DishOrderRowMapper implements RowMapper<DishOrder> {
+    private final int id;
+    private final int idOrder;
+    private final int idDish;
+    private final int quantity;
+
+    public DishOrderRowMapper(ResultSet resultSet) throws SQLException {
+        id = ResultSetColumns.indexOf(resultSet, "id");
+        idOrder = ResultSetColumns.indexOf(resultSet, "id_order");
+        idDish = ResultSetColumns.indexOf(resultSet, "id_dish");
+        quantity = ResultSetColumns.indexOf(resultSet, "quantity");
+    }
+
+    @Override
+    public DishOrder map(ResultSet resultSet) throws SQLException {
+        DishOrder dishOrder = new DishOrder();
+        dishOrder.setId(resultSet.getInt(id));
+        dishOrder.setQuantity(resultSet.getInt(quantity));
+        return dishOrder;
+    }
+
+    public int getOrderId(ResultSet resultSet) throws SQLException {
+        return resultSet.getInt(idOrder);
+    }
+
+    public int getDishId(ResultSet resultSet) throws SQLException {
+        return resultSet.getInt(idDish);
+    }
+}
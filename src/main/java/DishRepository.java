@@ -0,0 +1,20 @@
+import java.time.Instant;
+import java.util.List;
+
+public interface DishRepository {
+    Dish findDishById(Integer id);
+
+    Dish saveDish(Dish toSave);
+
+    List<Dish> findAllDishes();
+
+    Page<Dish> findDishes(DishFilter filter, Integer afterId, int limit);
+
+    List<Dish> searchDishesByName(String query, int limit);
+
+    /**
+     * Dishes with their ingredients created or updated, recipe included, at or after since,
+     * ordered by id; every dish when since is null.
+     */
+    List<Dish> findDishesUpdatedSince(Instant since);
+}
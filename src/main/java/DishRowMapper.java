@@ -0,0 +1,26 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class DishRowMapper implements RowMapper<Dish> {
+    private final int id;
+    private final int name;
+    private final int dishType;
+    private final int sellingPrice;
+
+    public DishRowMapper(ResultSet resultSet) throws SQLException {
+        id = ResultSetColumns.indexOf(resultSet, "id");
+        name = ResultSetColumns.indexOf(resultSet, "name");
+        dishType = ResultSetColumns.indexOf(resultSet, "dish_type");
+        sellingPrice = ResultSetColumns.indexOf(resultSet, "selling_price");
+    }
+
+    @Override
+    public Dish map(ResultSet resultSet) throws SQLException {
+        Dish dish = new Dish();
+        dish.setId(resultSet.getInt(id));
+        dish.setName(resultSet.getString(name));
+        dish.setDishType(EnumDecoder.DISH_TYPE.decode(resultSet.getString(dishType)));
+        dish.setPrice(ResultSetColumns.getNullableDouble(resultSet, sellingPrice));
+        return dish;
+    }
+}
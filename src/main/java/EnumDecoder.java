@@ -0,0 +1,49 @@
+import java.lang.reflect.Array;
+
+/**
+ * Decodes PostgreSQL enum labels into Java enum constants through a precomputed
+ * open-addressing table, without going through Enum.valueOf for every row.
+ */
+public class EnumDecoder<E extends Enum<E>> {
+    static final EnumDecoder<CategoryEnum> CATEGORY = new EnumDecoder<>(CategoryEnum.class);
+    static final EnumDecoder<DishTypeEnum> DISH_TYPE = new EnumDecoder<>(DishTypeEnum.class);
+    static final EnumDecoder<MovementTypeEnum> MOVEMENT_TYPE = new EnumDecoder<>(MovementTypeEnum.class);
+    static final EnumDecoder<Unit> UNIT = new EnumDecoder<>(Unit.class);
+
+    private final Class<E> enumType;
+    private final String[] labels;
+    private final E[] constants;
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    public EnumDecoder(Class<E> enumType) {
+        this.enumType = enumType;
+        E[] values = enumType.getEnumConstants();
+        int capacity = Integer.highestOneBit(Math.max(values.length, 1) * 4 - 1) << 1;
+        labels = new String[capacity];
+        constants = (E[]) Array.newInstance(enumType, capacity);
+        mask = capacity - 1;
+        for (E value : values) {
+            int slot = value.name().hashCode() & mask;
+            while (labels[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            labels[slot] = value.name();
+            constants[slot] = value;
+        }
+    }
+
+    public E decode(String label) {
+        if (label == null) {
+            return null;
+        }
+        int slot = label.hashCode() & mask;
+        while (labels[slot] != null) {
+            if (labels[slot].equals(label)) {
+                return constants[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        throw new RuntimeException("Unknown " + enumType.getSimpleName() + " value " + label);
+    }
+}
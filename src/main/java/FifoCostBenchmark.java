@@ -0,0 +1,73 @@
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FifoCostBenchmark {
+    private static final int INGREDIENT_COUNT = 2_000;
+    private static final int MOVEMENTS_PER_INGREDIENT = 500;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        YearMonth month = YearMonth.of(2024, 1);
+        ZoneId zoneId = ZoneId.systemDefault();
+        Instant from = month.atDay(1).atStartOfDay(zoneId).toInstant();
+        Instant to = month.plusMonths(1).atDay(1).atStartOfDay(zoneId).toInstant();
+        List<Ingredient> ingredients = generateIngredients(from, ChronoUnit.SECONDS.between(from, to));
+
+        System.out.println("=== FIFO cost of goods: " + INGREDIENT_COUNT + " ingredients x "
+                + MOVEMENTS_PER_INGREDIENT + " movements ===");
+        FifoCostLedger.replay(ingredients, from, to); // warm up
+
+        long best = Long.MAX_VALUE;
+        FifoCostLedger ledger = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            ledger = FifoCostLedger.replay(ingredients, from, to);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        int withShortage = 0;
+        double onHandValue = 0;
+        for (Ingredient ingredient : ingredients) {
+            if (ledger.getShortage(ingredient.getId()) > 0) {
+                withShortage++;
+            }
+            onHandValue += ledger.getOnHandValue(ingredient.getId());
+        }
+        System.out.printf("replay: %.2f ms, cost of goods %.2f, on hand %.2f, %d ingredients short%n",
+                best / 1_000_000.0, ledger.getTotalCost(), onHandValue, withShortage);
+    }
+
+    private static List<Ingredient> generateIngredients(Instant from, long monthSeconds) {
+        Random random = new Random(42);
+        CategoryEnum[] categories = CategoryEnum.values();
+
+        List<Ingredient> ingredients = new ArrayList<>(INGREDIENT_COUNT);
+        for (int id = 1; id <= INGREDIENT_COUNT; id++) {
+            double price = 100.0 + random.nextInt(5000);
+            List<StockMovement> stockMovements = new ArrayList<>(MOVEMENTS_PER_INGREDIENT);
+            for (int i = 0; i < MOVEMENTS_PER_INGREDIENT; i++) {
+                StockValue stockValue = new StockValue();
+                stockValue.setQuantity(Math.round(random.nextDouble() * 1000) / 100.0);
+                stockValue.setUnit(Unit.KG);
+
+                StockMovement stockMovement = new StockMovement();
+                stockMovement.setId(id * MOVEMENTS_PER_INGREDIENT + i);
+                stockMovement.setType(random.nextInt(3) == 0 ? MovementTypeEnum.OUT : MovementTypeEnum.IN);
+                stockMovement.setCreationDatetime(from.plusSeconds((long) (random.nextDouble() * monthSeconds)));
+                stockMovement.setValue(stockValue);
+                if (stockMovement.getType() == MovementTypeEnum.IN) {
+                    stockMovement.setUnitPrice(Math.round(price * (0.8 + 0.4 * random.nextDouble()) * 100) / 100.0);
+                }
+                stockMovements.add(stockMovement);
+            }
+            ingredients.add(new Ingredient(id, "Ingredient " + id, categories[id % categories.length],
+                    price, stockMovements));
+        }
+        return ingredients;
+    }
+}
@@ -0,0 +1,263 @@
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * First in first out cost of goods: every IN movement opens a lot at its unit price and
+ * every OUT movement consumes the oldest open lots of its ingredient. Movements must be
+ * applied in time order per ingredient. Lots live in one primitive ring buffer per
+ * ingredient, so replaying history allocates only when a buffer grows. Quantities are in
+ * the ingredient's single unit (see Ingredient.getStockValueAt).
+ * An OUT larger than the stock on hand is costed at the last known unit price for the
+ * missing part, which is reported as shortage. The OUT carrying an archived month's
+ * shortage forward was costed in that month and is ignored.
+ */
+public class FifoCostLedger {
+    private final Map<Integer, LotQueue> lotsByIngredient = new HashMap<>();
+    private final Map<Integer, Double> costByMovementId = new HashMap<>();
+    private final Map<Integer, Double> costByIngredient = new HashMap<>();
+    private final Map<Integer, Double> shortageByIngredient = new HashMap<>();
+    private double totalCost;
+
+    /**
+     * Ledger of every given ingredient replayed from its stock movements. Only the OUT
+     * movements created in [from, to) count in the costs; earlier ones only consume lots.
+     * Null bounds are open.
+     */
+    public static FifoCostLedger replay(List<Ingredient> ingredients, Instant from, Instant to) {
+        FifoCostLedger ledger = new FifoCostLedger();
+        for (Ingredient ingredient : ingredients) {
+            if (ingredient.getStockMovementList() == null) {
+                continue;
+            }
+            List<StockMovement> movements = new ArrayList<>(ingredient.getStockMovementList());
+            movements.sort(Comparator.comparing(StockMovement::getCreationDatetime)
+                    .thenComparing(StockMovement::getType)
+                    .thenComparing(StockMovement::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+            for (StockMovement movement : movements) {
+                if (to != null && !movement.getCreationDatetime().isBefore(to)) {
+                    break;
+                }
+                boolean counted = from == null || !movement.getCreationDatetime().isBefore(from);
+                ledger.apply(ingredient, movement, counted);
+            }
+        }
+        return ledger;
+    }
+
+    /**
+     * Applies a movement of the ingredient and returns the cost of goods of an OUT, 0 for an IN.
+     * IN movements without a unit price are valued at the ingredient price.
+     */
+    public double apply(Ingredient ingredient, StockMovement movement) {
+        return apply(ingredient, movement, true);
+    }
+
+    private double apply(Ingredient ingredient, StockMovement movement, boolean counted) {
+        double quantity = movement.getValue().getQuantity();
+        if (movement.getType() == MovementTypeEnum.IN) {
+            Double unitPrice = movement.getUnitPrice() != null ? movement.getUnitPrice() : ingredient.getPrice();
+            receive(ingredient.getId(), quantity, unitPrice == null ? 0 : unitPrice);
+            return 0;
+        }
+        if (movement.isCarriedForward()) {
+            return 0;
+        }
+        LotQueue lots = lots(ingredient.getId());
+        double cost = lots.consume(quantity);
+        if (counted) {
+            if (movement.getId() != null) {
+                costByMovementId.put(movement.getId(), cost);
+            }
+            costByIngredient.merge(ingredient.getId(), cost, Double::sum);
+            if (lots.lastShortage > 0) {
+                shortageByIngredient.merge(ingredient.getId(), lots.lastShortage, Double::sum);
+            }
+            totalCost += cost;
+        }
+        return cost;
+    }
+
+    public void receive(int ingredientId, double quantity, double unitPrice) {
+        if (quantity > 0) {
+            lots(ingredientId).add(quantity, unitPrice);
+        }
+    }
+
+    /**
+     * Consumes the quantity from the oldest lots and returns its cost.
+     */
+    public double issue(int ingredientId, double quantity) {
+        return lots(ingredientId).consume(quantity);
+    }
+
+    /**
+     * Cost the quantity would have if issued now, without consuming any lot.
+     */
+    public double peekCost(int ingredientId, double quantity) {
+        LotQueue lots = lotsByIngredient.get(ingredientId);
+        return lots == null ? 0 : lots.peekCost(quantity);
+    }
+
+    /**
+     * FIFO cost of one portion of the dish from the lots open now.
+     */
+    public double getDishCost(Dish dish) {
+        return costOf(requiredQuantities(dish, 1, new HashMap<>()), false);
+    }
+
+    /**
+     * FIFO cost of every dish of the order from the lots open now, or, when consume is true,
+     * the cost of actually issuing them from the lots.
+     */
+    public double getOrderCost(Order order, boolean consume) {
+        Map<Integer, Double> quantities = new HashMap<>();
+        if (order.getDishOrderList() != null) {
+            for (DishOrder dishOrder : order.getDishOrderList()) {
+                requiredQuantities(dishOrder.getDish(), dishOrder.getQuantity(), quantities);
+            }
+        }
+        return costOf(quantities, consume);
+    }
+
+    public Double getCostOfMovement(Integer movementId) {
+        return costByMovementId.get(movementId);
+    }
+
+    public double getCostOfIngredient(Integer ingredientId) {
+        return costByIngredient.getOrDefault(ingredientId, 0.0);
+    }
+
+    public double getShortage(Integer ingredientId) {
+        return shortageByIngredient.getOrDefault(ingredientId, 0.0);
+    }
+
+    public double getTotalCost() {
+        return totalCost;
+    }
+
+    public double getOnHandQuantity(Integer ingredientId) {
+        LotQueue lots = lotsByIngredient.get(ingredientId);
+        return lots == null ? 0 : lots.totalQuantity();
+    }
+
+    public double getOnHandValue(Integer ingredientId) {
+        LotQueue lots = lotsByIngredient.get(ingredientId);
+        return lots == null ? 0 : lots.peekCost(lots.totalQuantity());
+    }
+
+    /**
+     * Lots still open for the ingredient, oldest first, as quantity and unit price pairs.
+     */
+    public List<double[]> getOpenLots(Integer ingredientId) {
+        List<double[]> openLots = new ArrayList<>();
+        LotQueue lots = lotsByIngredient.get(ingredientId);
+        if (lots != null) {
+            for (int i = 0; i < lots.size; i++) {
+                int index = (lots.head + i) & (lots.quantities.length - 1);
+                openLots.add(new double[]{lots.quantities[index], lots.unitPrices[index]});
+            }
+        }
+        return openLots;
+    }
+
+    private double costOf(Map<Integer, Double> quantities, boolean consume) {
+        double cost = 0;
+        for (Map.Entry<Integer, Double> entry : quantities.entrySet()) {
+            cost += consume ? issue(entry.getKey(), entry.getValue()) : peekCost(entry.getKey(), entry.getValue());
+        }
+        return cost;
+    }
+
+    private static Map<Integer, Double> requiredQuantities(Dish dish, int portions, Map<Integer, Double> quantities) {
+        for (DishIngredient dishIngredient : dish.getDishIngredients()) {
+            if (dishIngredient.getQuantity() == null) {
+                throw new RuntimeException("Some ingredients have undefined quantity");
+            }
+            quantities.merge(dishIngredient.getIngredient().getId(), dishIngredient.getQuantity() * portions, Double::sum);
+        }
+        return quantities;
+    }
+
+    private LotQueue lots(int ingredientId) {
+        return lotsByIngredient.computeIfAbsent(ingredientId, key -> new LotQueue());
+    }
+
+    /**
+     * Ring buffer of open lots, oldest at head; capacity is a power of two.
+     */
+    private static class LotQueue {
+        private static final double EPSILON = 1e-9;
+
+        private double[] quantities = new double[4];
+        private double[] unitPrices = new double[4];
+        private int head;
+        private int size;
+        private double lastUnitPrice;
+        private double lastShortage;
+
+        void add(double quantity, double unitPrice) {
+            if (size == quantities.length) {
+                grow();
+            }
+            int tail = (head + size) & (quantities.length - 1);
+            quantities[tail] = quantity;
+            unitPrices[tail] = unitPrice;
+            size++;
+            lastUnitPrice = unitPrice;
+        }
+
+        double consume(double quantity) {
+            double remaining = quantity;
+            double cost = 0;
+            while (remaining > EPSILON && size > 0) {
+                double taken = Math.min(remaining, quantities[head]);
+                cost += taken * unitPrices[head];
+                remaining -= taken;
+                quantities[head] -= taken;
+                if (quantities[head] <= EPSILON) {
+                    head = (head + 1) & (quantities.length - 1);
+                    size--;
+                }
+            }
+            lastShortage = remaining > EPSILON ? remaining : 0;
+            return cost + lastShortage * lastUnitPrice;
+        }
+
+        double peekCost(double quantity) {
+            double remaining = quantity;
+            double cost = 0;
+            for (int i = 0; i < size && remaining > EPSILON; i++) {
+                int index = (head + i) & (quantities.length - 1);
+                double taken = Math.min(remaining, quantities[index]);
+                cost += taken * unitPrices[index];
+                remaining -= taken;
+            }
+            return cost + Math.max(remaining, 0) * lastUnitPrice;
+        }
+
+        double totalQuantity() {
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                total += quantities[(head + i) & (quantities.length - 1)];
+            }
+            return total;
+        }
+
+        private void grow() {
+            double[] grownQuantities = new double[quantities.length * 2];
+            double[] grownUnitPrices = new double[unitPrices.length * 2];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) & (quantities.length - 1);
+                grownQuantities[i] = quantities[index];
+                grownUnitPrices[i] = unitPrices[index];
+            }
+            quantities = grownQuantities;
+            unitPrices = grownUnitPrices;
+            head = 0;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Front of an OrderRepository for submissions retried by flaky clients. A retry of a
+ * recent order is answered from memory without a round trip; a reference the filter may
+ * have seen is first looked up with a plain read, cheaper than the locking save; any other
+ * submission goes to submitOrder, which stays the authority across nodes and restarts.
+ */
+public class IdempotentOrderSubmitter {
+    private final OrderRepository orderRepository;
+    private final RecentReferenceFilter recentReferences;
+
+    public IdempotentOrderSubmitter(OrderRepository orderRepository) {
+        this(orderRepository, new RecentReferenceFilter());
+    }
+
+    public IdempotentOrderSubmitter(OrderRepository orderRepository, RecentReferenceFilter recentReferences) {
+        this.orderRepository = orderRepository;
+        this.recentReferences = recentReferences;
+    }
+
+    public OrderSubmission submit(Order order) {
+        String reference = order.getReference();
+        if (order.getId() != null || reference == null) {
+            return orderRepository.submitOrder(order);
+        }
+        if (recentReferences.mightContain(reference)) {
+            Order recent = recentReferences.getRecent(reference);
+            if (recent != null) {
+                return OrderSubmission.replayed(recent);
+            }
+            Order stored = findStored(reference);
+            if (stored != null) {
+                recentReferences.remember(stored);
+                return OrderSubmission.replayed(stored);
+            }
+        }
+        OrderSubmission submission = orderRepository.submitOrder(order);
+        recentReferences.remember(submission.getOrder());
+        return submission;
+    }
+
+    private Order findStored(String reference) {
+        try {
+            return orderRepository.findOrderByReference(reference);
+        } catch (RuntimeException e) {
+            // Not found, a Bloom filter false positive or a lost original; submitOrder decides.
+            return null;
+        }
+    }
+}
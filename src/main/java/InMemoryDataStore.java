@@ -0,0 +1,732 @@
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Storage engine keeping everything in concurrent in-memory maps, for simulations
+ * and tests that must run without PostgreSQL. Entities are copied on the way in and
+ * out so callers never share mutable state with the store, like with DataRetriever.
+ */
+public class InMemoryDataStore implements DataStore {
+    private final AtomicInteger dishSequence = new AtomicInteger();
+    private final AtomicInteger ingredientSequence = new AtomicInteger();
+    private final AtomicInteger stockMovementSequence = new AtomicInteger();
+    private final AtomicInteger orderSequence = new AtomicInteger();
+    private final AtomicInteger dishOrderSequence = new AtomicInteger();
+    private final AtomicInteger tableSequence = new AtomicInteger();
+
+    private final ConcurrentSkipListMap<Integer, Dish> dishes = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Integer, Ingredient> ingredients = new ConcurrentSkipListMap<>();
+    private final Map<Integer, List<StockMovement>> stockMovementsByIngredient = new ConcurrentHashMap<>();
+    private final Map<Integer, List<IngredientPrice>> priceHistoryByIngredient = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, RestaurantTable> tables = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Integer> tableIdByNumber = new ConcurrentHashMap<>();
+    private final Map<Integer, TableBookings> bookingsByTable = new ConcurrentHashMap<>();
+    private final Map<Integer, Order> ordersById = new ConcurrentHashMap<>();
+    private final Map<String, Integer> orderIdByReference = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Order>> submissionsInFlight = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<OrderKey, Integer> orderIdsByCreation = new ConcurrentSkipListMap<>();
+    private final List<Consumer<Order>> orderListeners = new CopyOnWriteArrayList<>();
+    // Last save of every dish, ingredient and order, for the findXxxUpdatedSince lookups.
+    private final Map<Integer, Instant> dishUpdatedAt = new ConcurrentHashMap<>();
+    private final Map<Integer, Instant> ingredientUpdatedAt = new ConcurrentHashMap<>();
+    private final Map<Integer, Instant> orderUpdatedAt = new ConcurrentHashMap<>();
+    // Name indexes of the searches, by id; built on first use and dropped by the saves.
+    private final AtomicReference<CachedNameIndex> dishNameIndex = new AtomicReference<>();
+    private final AtomicReference<CachedNameIndex> ingredientNameIndex = new AtomicReference<>();
+
+    @Override
+    public Order findOrderByReference(String reference) {
+        Integer orderId = orderIdByReference.get(reference);
+        Order order = orderId == null ? null : ordersById.get(orderId);
+        if (order == null) {
+            throw new NotFoundException("Order not found with reference " + reference);
+        }
+        return copyOrder(order);
+    }
+
+    @Override
+    public Order saveOrder(Order orderToSave) {
+        return submitOrder(orderToSave).getOrder();
+    }
+
+    @Override
+    public OrderSubmission submitOrder(Order orderToSave) {
+        OrderValidation.validateOrder(orderToSave);
+        RestaurantTable table = tables.get(orderToSave.getTable().getId());
+        if (table == null) {
+            throw new NotFoundException("Table not found " + orderToSave.getTable().getId());
+        }
+        if (orderToSave.getId() != null || orderToSave.getReference() == null) {
+            return OrderSubmission.created(saveOrder(orderToSave, table,
+                    orderToSave.getId() != null ? orderToSave.getId() : nextId(orderSequence, ordersById.keySet())));
+        }
+
+        // Concurrent submissions of a reference wait for the first one and replay it.
+        String reference = orderToSave.getReference();
+        CompletableFuture<Order> submission = new CompletableFuture<>();
+        while (true) {
+            CompletableFuture<Order> first = submissionsInFlight.putIfAbsent(reference, submission);
+            if (first == null) {
+                break;
+            }
+            try {
+                return OrderSubmission.replayed(copyOrder(first.join()));
+            } catch (CompletionException e) {
+                // The first submission failed: this one takes its place.
+            }
+        }
+        try {
+            Integer existingId = orderIdByReference.get(reference);
+            Order existing = existingId == null ? null : ordersById.get(existingId);
+            OrderSubmission result = existing != null
+                    ? OrderSubmission.replayed(copyOrder(existing))
+                    : OrderSubmission.created(saveOrder(orderToSave, table, nextId(orderSequence, ordersById.keySet())));
+            submission.complete(result.getOrder());
+            return result;
+        } catch (RuntimeException e) {
+            submission.completeExceptionally(e);
+            throw e;
+        } finally {
+            submissionsInFlight.remove(reference, submission);
+        }
+    }
+
+    private Order saveOrder(Order orderToSave, RestaurantTable table, Integer orderId) {
+        Order previous = ordersById.get(orderId);
+        List<DishOrder> dishOrders = new ArrayList<>();
+        if (orderToSave.getDishOrderList() != null) {
+            for (DishOrder dishOrder : orderToSave.getDishOrderList()) {
+                DishOrder storedDishOrder = new DishOrder();
+                storedDishOrder.setId(dishOrderSequence.incrementAndGet());
+                storedDishOrder.setDish(findDishById(dishOrder.getDish().getId()));
+                storedDishOrder.setQuantity(dishOrder.getQuantity());
+                dishOrders.add(storedDishOrder);
+            }
+        }
+
+        TableBookings bookings = bookingsByTable.computeIfAbsent(table.getId(), key -> new TableBookings());
+        boolean booked;
+        synchronized (bookings) {
+            booked = bookings.isFree(orderToSave.getInstallationDate(), orderToSave.getDepartureDate(), orderId);
+            if (booked) {
+                bookings.book(orderId, orderToSave.getInstallationDate(), orderToSave.getDepartureDate());
+            }
+        }
+        if (!booked) {
+            // Listed outside of the table lock: findAvailableTables locks every table in turn.
+            List<RestaurantTable> availableTables = findAvailableTables(orderToSave.getInstallationDate(), orderToSave.getDepartureDate())
+                    .stream().filter(t -> !t.getId().equals(table.getId())).toList();
+            OrderValidation.checkTableAvailable(orderToSave, table, availableTables);
+        }
+        if (previous != null && !previous.getTable().getId().equals(table.getId())) {
+            TableBookings previousBookings = bookingsByTable.get(previous.getTable().getId());
+            synchronized (previousBookings) {
+                previousBookings.cancel(orderId);
+            }
+        }
+
+        Order stored = copyOrder(orderToSave);
+        stored.setId(orderId);
+        stored.setTable(new RestaurantTable(table.getId(), table.getNumber()));
+        stored.setDishOrderList(dishOrders);
+
+        if (previous != null) {
+            orderIdByReference.remove(previous.getReference(), orderId);
+            orderIdsByCreation.remove(new OrderKey(previous.getCreationDatetime(), orderId));
+        }
+        ordersById.put(orderId, stored);
+        orderUpdatedAt.put(orderId, Instant.now());
+        orderIdByReference.put(stored.getReference(), orderId);
+        orderIdsByCreation.put(new OrderKey(stored.getCreationDatetime(), orderId), orderId);
+        orderListeners.forEach(listener -> listener.accept(copyOrder(stored)));
+        return copyOrder(stored);
+    }
+
+    @Override
+    public void addOrderListener(Consumer<Order> listener) {
+        orderListeners.add(listener);
+    }
+
+    @Override
+    public Page<Order> findOrders(OrderFilter filter, Instant afterCreationDatetime, Integer afterId, int limit) {
+        OrderValidation.validateCursor(afterCreationDatetime, afterId);
+        Map<OrderKey, Integer> candidates = afterId != null
+                ? orderIdsByCreation.tailMap(new OrderKey(afterCreationDatetime, afterId), false)
+                : orderIdsByCreation;
+        List<Order> orders = new ArrayList<>();
+        for (Integer orderId : candidates.values()) {
+            Order order = ordersById.get(orderId);
+            if (order == null || !matches(order, filter)) {
+                continue;
+            }
+            if (orders.size() == limit) {
+                return new Page<>(orders, true);
+            }
+            orders.add(copyOrder(order));
+        }
+        return new Page<>(orders, false);
+    }
+
+    private static boolean matches(Order order, OrderFilter filter) {
+        if (filter == null) {
+            return true;
+        }
+        return (filter.getTableId() == null || filter.getTableId().equals(order.getTable().getId()))
+                && (filter.getCreatedFrom() == null || !order.getCreationDatetime().isBefore(filter.getCreatedFrom()))
+                && (filter.getCreatedTo() == null || order.getCreationDatetime().isBefore(filter.getCreatedTo()));
+    }
+
+    @Override
+    public Dish findDishById(Integer id) {
+        Dish dish = dishes.get(id);
+        if (dish == null) {
+            throw new NotFoundException("Dish not found " + id);
+        }
+        return copyDish(dish);
+    }
+
+    @Override
+    public Dish saveDish(Dish toSave) {
+        Integer dishId = toSave.getId() != null ? toSave.getId() : nextId(dishSequence, dishes.keySet());
+        Dish stored = copyDish(toSave);
+        stored.setId(dishId);
+        dishes.put(dishId, stored);
+        dishUpdatedAt.put(dishId, Instant.now());
+        dropNameIndex(dishNameIndex);
+        return copyDish(stored);
+    }
+
+    @Override
+    public List<Dish> findAllDishes() {
+        return dishes.values().stream().map(this::copyDish).toList();
+    }
+
+    @Override
+    public Page<Dish> findDishes(DishFilter filter, Integer afterId, int limit) {
+        Predicate<Dish> predicate = dish -> filter == null
+                || (filter.getDishType() == null || filter.getDishType() == dish.getDishType())
+                && (filter.getMinPrice() == null || dish.getPrice() != null && dish.getPrice() >= filter.getMinPrice())
+                && (filter.getMaxPrice() == null || dish.getPrice() != null && dish.getPrice() <= filter.getMaxPrice())
+                && startsWith(dish.getName(), filter.getNamePrefix());
+        return page(afterId == null ? dishes : dishes.tailMap(afterId, false), predicate, this::copyDish, limit);
+    }
+
+    @Override
+    public List<Dish> searchDishesByName(String query, int limit) {
+        return nameIndex(dishNameIndex, dishes, Dish::getName).search(query, limit).stream()
+                .map(dishes::get)
+                .filter(dish -> dish != null)
+                .map(this::copyDish)
+                .toList();
+    }
+
+    @Override
+    public List<Dish> findDishesUpdatedSince(Instant since) {
+        return dishes.values().stream()
+                .filter(dish -> isUpdatedSince(dishUpdatedAt, dish.getId(), since))
+                .map(this::copyDish)
+                .toList();
+    }
+
+    @Override
+    public Ingredient findIngredientById(Integer id) {
+        Ingredient ingredient = ingredients.get(id);
+        if (ingredient == null) {
+            throw new NotFoundException("Ingredient not found " + id);
+        }
+        return copyIngredient(ingredient, true);
+    }
+
+    @Override
+    public Ingredient saveIngredient(Ingredient toSave) {
+        Integer ingredientId = toSave.getId() != null ? toSave.getId() : nextId(ingredientSequence, ingredients.keySet());
+        Ingredient stored = copyIngredient(toSave, false);
+        stored.setId(ingredientId);
+        ingredients.put(ingredientId, stored);
+        ingredientUpdatedAt.put(ingredientId, Instant.now());
+        recordPrice(ingredientId, stored.getPrice());
+        dropNameIndex(ingredientNameIndex);
+        if (toSave.getStockMovementList() != null) {
+            saveStockMovements(ingredientId, toSave.getStockMovementList());
+        }
+        return copyIngredient(stored, true);
+    }
+
+    @Override
+    public List<Ingredient> createIngredients(List<Ingredient> newIngredients) {
+        if (newIngredients == null || newIngredients.isEmpty()) {
+            return List.of();
+        }
+        for (Ingredient ingredient : newIngredients) {
+            if (ingredient.getId() != null && ingredients.containsKey(ingredient.getId())) {
+                throw new RuntimeException("Ingredient already exists " + ingredient.getId());
+            }
+        }
+        List<Ingredient> savedIngredients = new ArrayList<>();
+        for (Ingredient ingredient : newIngredients) {
+            Integer ingredientId = ingredient.getId() != null ? ingredient.getId() : nextId(ingredientSequence, ingredients.keySet());
+            Ingredient stored = copyIngredient(ingredient, false);
+            stored.setId(ingredientId);
+            ingredients.put(ingredientId, stored);
+            ingredientUpdatedAt.put(ingredientId, Instant.now());
+            recordPrice(ingredientId, stored.getPrice());
+            ingredient.setId(ingredientId);
+            savedIngredients.add(ingredient);
+        }
+        dropNameIndex(ingredientNameIndex);
+        return savedIngredients;
+    }
+
+    @Override
+    public Double findIngredientPriceAt(Integer ingredientId, Instant at) {
+        List<IngredientPrice> history = priceHistoryByIngredient.get(ingredientId);
+        if (history == null) {
+            return null;
+        }
+        synchronized (history) {
+            Double price = null;
+            for (IngredientPrice ingredientPrice : history) {
+                if (ingredientPrice.getValidFrom().isAfter(at)) {
+                    break;
+                }
+                price = ingredientPrice.getPrice();
+            }
+            return price;
+        }
+    }
+
+    @Override
+    public List<IngredientPrice> findIngredientPriceHistory(List<Integer> ingredientIds, Instant from, Instant to) {
+        List<IngredientPrice> prices = new ArrayList<>();
+        for (Integer ingredientId : ingredientIds != null ? ingredientIds : List.copyOf(ingredients.keySet())) {
+            List<IngredientPrice> history = priceHistoryByIngredient.get(ingredientId);
+            if (history == null) {
+                continue;
+            }
+            synchronized (history) {
+                for (IngredientPrice ingredientPrice : history) {
+                    if (ingredientPrice.getValidFrom().isBefore(to)
+                            && (ingredientPrice.getValidTo() == null || ingredientPrice.getValidTo().isAfter(from))) {
+                        prices.add(new IngredientPrice(ingredientId, ingredientPrice.getPrice(),
+                                ingredientPrice.getValidFrom(), ingredientPrice.getValidTo()));
+                    }
+                }
+            }
+        }
+        prices.sort(Comparator.comparing(IngredientPrice::getIngredientId).thenComparing(IngredientPrice::getValidFrom));
+        return prices;
+    }
+
+    /**
+     * Closes the current price of the ingredient and opens the new one, like the
+     * ingredient_price trigger of the JDBC engine.
+     */
+    private void recordPrice(Integer ingredientId, Double price) {
+        if (price == null) {
+            return;
+        }
+        List<IngredientPrice> history = priceHistoryByIngredient.computeIfAbsent(ingredientId, key -> new ArrayList<>());
+        synchronized (history) {
+            Instant now = Instant.now();
+            IngredientPrice current = history.isEmpty() ? null : history.get(history.size() - 1);
+            if (current != null && current.getPrice().equals(price)) {
+                return;
+            }
+            if (current != null && !current.getValidFrom().isBefore(now)) {
+                current.setPrice(price);
+                return;
+            }
+            if (current != null) {
+                current.setValidTo(now);
+            }
+            history.add(new IngredientPrice(ingredientId, price, now, null));
+        }
+    }
+
+    @Override
+    public List<Ingredient> findAllIngredients() {
+        return ingredients.values().stream().map(ingredient -> copyIngredient(ingredient, true)).toList();
+    }
+
+    @Override
+    public Page<Ingredient> findIngredients(IngredientFilter filter, Integer afterId, int limit) {
+        Predicate<Ingredient> predicate = ingredient -> filter == null
+                || (filter.getCategory() == null || filter.getCategory() == ingredient.getCategory())
+                && (filter.getMinPrice() == null || ingredient.getPrice() != null && ingredient.getPrice() >= filter.getMinPrice())
+                && (filter.getMaxPrice() == null || ingredient.getPrice() != null && ingredient.getPrice() <= filter.getMaxPrice())
+                && startsWith(ingredient.getName(), filter.getNamePrefix());
+        return page(afterId == null ? ingredients : ingredients.tailMap(afterId, false), predicate,
+                ingredient -> copyIngredient(ingredient, true), limit);
+    }
+
+    @Override
+    public List<Ingredient> findIngredientsUpdatedSince(Instant since) {
+        return ingredients.values().stream()
+                .filter(ingredient -> isUpdatedSince(ingredientUpdatedAt, ingredient.getId(), since))
+                .map(ingredient -> copyIngredient(ingredient, false))
+                .toList();
+    }
+
+    @Override
+    public List<Ingredient> searchIngredientsByName(String query, int limit) {
+        return nameIndex(ingredientNameIndex, ingredients, Ingredient::getName).search(query, limit).stream()
+                .map(ingredients::get)
+                .filter(ingredient -> ingredient != null)
+                .map(ingredient -> copyIngredient(ingredient, true))
+                .toList();
+    }
+
+    @Override
+    public List<StockMovement> findStockMovementsByIngredientId(Integer id) {
+        List<StockMovement> stockMovements = stockMovementsByIngredient.get(id);
+        if (stockMovements == null) {
+            return new ArrayList<>();
+        }
+        synchronized (stockMovements) {
+            return stockMovements.stream().map(InMemoryDataStore::copyStockMovement)
+                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        }
+    }
+
+    @Override
+    public List<StockMovement> findStockMovementsByIngredientId(Integer id, Instant from, Instant to) {
+        List<StockMovement> stockMovements = findStockMovementsByIngredientId(id);
+        stockMovements.removeIf(stockMovement -> from != null && stockMovement.getCreationDatetime().isBefore(from)
+                || to != null && !stockMovement.getCreationDatetime().isBefore(to));
+        return stockMovements;
+    }
+
+    @Override
+    public Map<Integer, List<StockMovement>> findStockMovements(Instant from, Instant to) {
+        Map<Integer, List<StockMovement>> movementsByIngredient = new HashMap<>();
+        for (Integer ingredientId : stockMovementsByIngredient.keySet()) {
+            List<StockMovement> stockMovements = findStockMovementsByIngredientId(ingredientId, from, to);
+            if (!stockMovements.isEmpty()) {
+                movementsByIngredient.put(ingredientId, stockMovements);
+            }
+        }
+        return movementsByIngredient;
+    }
+
+    @Override
+    public List<StockLot> findExpiringLots(Instant from, Instant to) {
+        List<StockLot> lots = new ArrayList<>();
+        for (Integer ingredientId : stockMovementsByIngredient.keySet()) {
+            List<StockMovement> stockMovements = findStockMovementsByIngredientId(ingredientId);
+            Map<Integer, Double> consumedByLot = new HashMap<>();
+            for (StockMovement stockMovement : stockMovements) {
+                if (stockMovement.getType() == MovementTypeEnum.OUT && stockMovement.getLotId() != null) {
+                    consumedByLot.merge(stockMovement.getLotId(), stockMovement.getValue().getQuantity(), Double::sum);
+                }
+            }
+            for (StockMovement stockMovement : stockMovements) {
+                Instant expiry = stockMovement.getExpiryDatetime();
+                if (stockMovement.getType() != MovementTypeEnum.IN || expiry == null
+                        || from != null && expiry.isBefore(from) || to != null && !expiry.isBefore(to)) {
+                    continue;
+                }
+                double remaining = stockMovement.getValue().getQuantity()
+                        - consumedByLot.getOrDefault(stockMovement.getId(), 0.0);
+                if (remaining > 0) {
+                    lots.add(new StockLot(stockMovement.getId(), ingredientId, remaining,
+                            stockMovement.getValue().getUnit(), stockMovement.getUnitPrice(), expiry,
+                            stockMovement.getCreationDatetime()));
+                }
+            }
+        }
+        lots.sort(Comparator.comparing(StockLot::getExpiryDatetime).thenComparing(StockLot::getLotId));
+        return lots;
+    }
+
+    @Override
+    public List<StockMovement> saveStockMovements(Integer ingredientId, List<StockMovement> stockMovements) {
+        if (!ingredients.containsKey(ingredientId)) {
+            throw new NotFoundException("Ingredient not found " + ingredientId);
+        }
+        List<StockMovement> stored = stockMovementsByIngredient.computeIfAbsent(ingredientId, key -> new ArrayList<>());
+        synchronized (stored) {
+            Set<Integer> existingIds = new HashSet<>();
+            for (StockMovement stockMovement : stored) {
+                existingIds.add(stockMovement.getId());
+            }
+            for (StockMovement stockMovement : stockMovements) {
+                if (stockMovement.getId() == null) {
+                    stockMovement.setId(stockMovementSequence.incrementAndGet());
+                } else if (existingIds.contains(stockMovement.getId())) {
+                    continue;
+                } else {
+                    stockMovementSequence.accumulateAndGet(stockMovement.getId(), Math::max);
+                }
+                stored.add(copyStockMovement(stockMovement));
+            }
+        }
+        return stockMovements;
+    }
+
+    @Override
+    public RestaurantTable saveTable(RestaurantTable table) {
+        synchronized (tableIdByNumber) {
+            Integer existingId = tableIdByNumber.get(table.getNumber());
+            Integer tableId = existingId != null ? existingId
+                    : table.getId() != null ? table.getId() : nextId(tableSequence, tables.keySet());
+            RestaurantTable existing = tables.get(tableId);
+            Integer capacity = table.getCapacity() != null ? table.getCapacity()
+                    : existing != null ? existing.getCapacity() : RestaurantTable.DEFAULT_CAPACITY;
+            tables.put(tableId, new RestaurantTable(tableId, table.getNumber(), capacity));
+            tableIdByNumber.put(table.getNumber(), tableId);
+            return new RestaurantTable(tableId, table.getNumber(), capacity);
+        }
+    }
+
+    @Override
+    public List<RestaurantTable> findAllTables() {
+        return tables.values().stream()
+                .sorted(Comparator.comparing(RestaurantTable::getNumber))
+                .map(table -> new RestaurantTable(table.getId(), table.getNumber(), table.getCapacity()))
+                .toList();
+    }
+
+    @Override
+    public List<RestaurantTable> findAvailableTables(Instant from, Instant to) {
+        List<RestaurantTable> availableTables = new ArrayList<>();
+        for (RestaurantTable table : tables.values()) {
+            TableBookings bookings = bookingsByTable.get(table.getId());
+            boolean free;
+            if (bookings == null) {
+                free = true;
+            } else {
+                synchronized (bookings) {
+                    free = bookings.isFree(from, to, null);
+                }
+            }
+            if (free) {
+                availableTables.add(new RestaurantTable(table.getId(), table.getNumber(), table.getCapacity()));
+            }
+        }
+        return availableTables;
+    }
+
+    @Override
+    public List<Order> findTableBookings(Instant from, Instant to) {
+        List<Order> orders = new ArrayList<>();
+        for (RestaurantTable table : tables.values()) {
+            TableBookings bookings = bookingsByTable.get(table.getId());
+            if (bookings == null) {
+                continue;
+            }
+            List<Integer> orderIds;
+            synchronized (bookings) {
+                orderIds = bookings.findOrderIds(from, to);
+            }
+            for (Integer orderId : orderIds) {
+                Order order = ordersById.get(orderId);
+                if (order != null) {
+                    Order booking = copyOrder(order);
+                    booking.setDishOrderList(null);
+                    orders.add(booking);
+                }
+            }
+        }
+        return orders;
+    }
+
+    @Override
+    public List<Order> findTableBookingsUpdatedSince(Instant since) {
+        List<Order> orders = new ArrayList<>();
+        for (Order order : ordersById.values()) {
+            if (order.getTable() != null && isUpdatedSince(orderUpdatedAt, order.getId(), since)) {
+                Order booking = copyOrder(order);
+                booking.setDishOrderList(null);
+                orders.add(booking);
+            }
+        }
+        orders.sort(Comparator.comparing(Order::getId));
+        return orders;
+    }
+
+    private static boolean isUpdatedSince(Map<Integer, Instant> updatedAt, Integer id, Instant since) {
+        Instant updated = updatedAt.get(id);
+        return since == null || updated != null && !updated.isBefore(since);
+    }
+
+    private static <T> Page<T> page(Map<Integer, T> candidates, Predicate<T> predicate, Function<T, T> copy, int limit) {
+        List<T> items = new ArrayList<>();
+        for (T candidate : candidates.values()) {
+            if (!predicate.test(candidate)) {
+                continue;
+            }
+            if (items.size() == limit) {
+                return new Page<>(items, true);
+            }
+            items.add(copy.apply(candidate));
+        }
+        return new Page<>(items, false);
+    }
+
+    // Index of the names of the entities, by id, rebuilt after a save dropped it.
+    private static <T> NameSearchIndex<Integer> nameIndex(AtomicReference<CachedNameIndex> cache, Map<Integer, T> entities,
+                                                          Function<T, String> nameExtractor) {
+        CachedNameIndex cached = cache.get();
+        if (cached != null && cached.index() != null) {
+            return cached.index();
+        }
+        Map<Integer, String> names = new HashMap<>();
+        entities.forEach((id, entity) -> names.put(id, nameExtractor.apply(entity)));
+        NameSearchIndex<Integer> index = NameSearchIndex.of(new ArrayList<>(names.keySet()), names::get);
+        // Not kept when a save happened meanwhile, as it may be missing from it.
+        cache.compareAndSet(cached, new CachedNameIndex(index));
+        return index;
+    }
+
+    // A new empty entry rather than null, so that an index being built cannot replace it.
+    private static void dropNameIndex(AtomicReference<CachedNameIndex> cache) {
+        cache.set(new CachedNameIndex(null));
+    }
+
+    private static boolean startsWith(String name, String prefix) {
+        return prefix == null || prefix.isEmpty() || name != null && name.startsWith(prefix);
+    }
+
+    private static int nextId(AtomicInteger sequence, Set<Integer> usedIds) {
+        int id = sequence.incrementAndGet();
+        while (usedIds.contains(id)) {
+            id = sequence.incrementAndGet();
+        }
+        return id;
+    }
+
+    private Dish copyDish(Dish dish) {
+        Dish copy = new Dish();
+        copy.setId(dish.getId());
+        copy.setName(dish.getName());
+        copy.setDishType(dish.getDishType());
+        copy.setPrice(dish.getPrice());
+        List<DishIngredient> dishIngredients = new ArrayList<>();
+        if (dish.getDishIngredients() != null) {
+            for (DishIngredient dishIngredient : dish.getDishIngredients()) {
+                DishIngredient dishIngredientCopy = new DishIngredient();
+                Ingredient stored = ingredients.get(dishIngredient.getIngredient().getId());
+                dishIngredientCopy.setIngredient(copyIngredient(stored != null ? stored : dishIngredient.getIngredient(), false));
+                dishIngredientCopy.setQuantity(dishIngredient.getQuantity());
+                dishIngredientCopy.setUnit(dishIngredient.getUnit());
+                dishIngredients.add(dishIngredientCopy);
+            }
+        }
+        copy.setDishIngredients(dishIngredients);
+        return copy;
+    }
+
+    private Ingredient copyIngredient(Ingredient ingredient, boolean withStockMovements) {
+        return new Ingredient(ingredient.getId(), ingredient.getName(), ingredient.getCategory(), ingredient.getPrice(),
+                withStockMovements ? findStockMovementsByIngredientId(ingredient.getId()) : null);
+    }
+
+    private static StockMovement copyStockMovement(StockMovement stockMovement) {
+        StockValue value = new StockValue();
+        value.setQuantity(stockMovement.getValue().getQuantity());
+        value.setUnit(stockMovement.getValue().getUnit());
+        StockMovement copy = new StockMovement();
+        copy.setId(stockMovement.getId());
+        copy.setType(stockMovement.getType());
+        copy.setCreationDatetime(stockMovement.getCreationDatetime());
+        copy.setValue(value);
+        copy.setUnitPrice(stockMovement.getUnitPrice());
+        copy.setExpiryDatetime(stockMovement.getExpiryDatetime());
+        copy.setLotId(stockMovement.getLotId());
+        return copy;
+    }
+
+    private static Order copyOrder(Order order) {
+        Order copy = new Order();
+        copy.setId(order.getId());
+        copy.setReference(order.getReference());
+        copy.setCreationDatetime(order.getCreationDatetime());
+        copy.setInstallationDate(order.getInstallationDate());
+        copy.setDepartureDate(order.getDepartureDate());
+        if (order.getTable() != null) {
+            copy.setTable(new RestaurantTable(order.getTable().getId(), order.getTable().getNumber()));
+        }
+        copy.setDishOrderList(order.getDishOrderList() == null ? null : new ArrayList<>(order.getDishOrderList()));
+        return copy;
+    }
+
+    private record CachedNameIndex(NameSearchIndex<Integer> index) {
+    }
+
+    private record OrderKey(Instant creationDatetime, int id) implements Comparable<OrderKey> {
+        @Override
+        public int compareTo(OrderKey other) {
+            int byCreation = creationDatetime.compareTo(other.creationDatetime);
+            return byCreation != 0 ? byCreation : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * Non-overlapping bookings of one table, keyed by installation time.
+     * Callers synchronize on the instance.
+     */
+    private static class TableBookings {
+        private final TreeMap<Instant, Booking> bookingsByStart = new TreeMap<>();
+        private final Map<Integer, Instant> startByOrderId = new HashMap<>();
+
+        boolean isFree(Instant from, Instant to, Integer ignoredOrderId) {
+            // Bookings never overlap, so only the last ones starting before `to` can reach past `from`.
+            for (Map.Entry<Instant, Booking> entry : bookingsByStart.headMap(to, false).descendingMap().entrySet()) {
+                Booking booking = entry.getValue();
+                if (booking.orderId().equals(ignoredOrderId)) {
+                    continue;
+                }
+                return !booking.departure().isAfter(from);
+            }
+            return true;
+        }
+
+        List<Integer> findOrderIds(Instant from, Instant to) {
+            // The booking starting at or before `from` is the only earlier one that can reach past it.
+            List<Integer> orderIds = new ArrayList<>();
+            if (!from.isBefore(to)) {
+                return orderIds;
+            }
+            Instant first = bookingsByStart.floorKey(from);
+            for (Map.Entry<Instant, Booking> entry : bookingsByStart.subMap(first == null ? from : first, true, to, false).entrySet()) {
+                if (entry.getValue().departure().isAfter(from)) {
+                    orderIds.add(entry.getValue().orderId());
+                }
+            }
+            return orderIds;
+        }
+
+        void book(Integer orderId, Instant installation, Instant departure) {
+            cancel(orderId);
+            bookingsByStart.put(installation, new Booking(orderId, departure));
+            startByOrderId.put(orderId, installation);
+        }
+
+        void cancel(Integer orderId) {
+            Instant start = startByOrderId.remove(orderId);
+            if (start != null) {
+                bookingsByStart.remove(start);
+            }
+        }
+    }
+
+    private record Booking(Integer orderId, Instant departure) {
+    }
+}
@@ -0,0 +1,63 @@
+import java.time.Instant;
+
+/**
+ * Price of an ingredient over [validFrom, validTo); validTo is null for the current price.
+ */
+public class IngredientPrice {
+    private Integer ingredientId;
+    private Double price;
+    private Instant validFrom;
+    private Instant validTo;
+
+    public IngredientPrice() {
+    }
+
+    public IngredientPrice(Integer ingredientId, Double price, Instant validFrom, Instant validTo) {
+        this.ingredientId = ingredientId;
+        this.price = price;
+        this.validFrom = validFrom;
+        this.validTo = validTo;
+    }
+
+    public Integer getIngredientId() {
+        return ingredientId;
+    }
+
+    public void setIngredientId(Integer ingredientId) {
+        this.ingredientId = ingredientId;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    public Instant getValidFrom() {
+        return validFrom;
+    }
+
+    public void setValidFrom(Instant validFrom) {
+        this.validFrom = validFrom;
+    }
+
+    public Instant getValidTo() {
+        return validTo;
+    }
+
+    public void setValidTo(Instant validTo) {
+        this.validTo = validTo;
+    }
+
+    @Override
+    public String toString() {
+        return "IngredientPrice{" +
+                "ingredientId=" + ingredientId +
+                ", price=" + price +
+                ", validFrom=" + validFrom +
+                ", validTo=" + validTo +
+                '}';
+    }
+}
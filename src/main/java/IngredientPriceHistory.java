@@ -0,0 +1,157 @@
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Price history of many ingredients in sorted primitive arrays, for as-of lookups by binary
+ * search and for one-pass costing over a sorted series of instants. The prices of an
+ * ingredient are the slice offsets[slot] .. offsets[slot + 1] of validFromMicros/prices.
+ * Instants before the first known price of an ingredient use that first price, and
+ * ingredients without history use their current price.
+ */
+public class IngredientPriceHistory {
+    private final Map<Integer, Integer> slotByIngredientId;
+    private final int[] offsets;
+    private final long[] validFromMicros;
+    private final double[] prices;
+
+    private IngredientPriceHistory(Map<Integer, Integer> slotByIngredientId, int[] offsets, long[] validFromMicros, double[] prices) {
+        this.slotByIngredientId = slotByIngredientId;
+        this.offsets = offsets;
+        this.validFromMicros = validFromMicros;
+        this.prices = prices;
+    }
+
+    public static IngredientPriceHistory of(List<IngredientPrice> history) {
+        List<IngredientPrice> sorted = new ArrayList<>(history);
+        sorted.sort(Comparator.comparing(IngredientPrice::getIngredientId).thenComparing(IngredientPrice::getValidFrom));
+
+        Map<Integer, Integer> slotByIngredientId = new HashMap<>();
+        List<Integer> offsets = new ArrayList<>();
+        long[] validFromMicros = new long[sorted.size()];
+        double[] prices = new double[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            IngredientPrice ingredientPrice = sorted.get(i);
+            if (!slotByIngredientId.containsKey(ingredientPrice.getIngredientId())) {
+                slotByIngredientId.put(ingredientPrice.getIngredientId(), offsets.size());
+                offsets.add(i);
+            }
+            validFromMicros[i] = toMicros(ingredientPrice.getValidFrom());
+            prices[i] = ingredientPrice.getPrice();
+        }
+        offsets.add(sorted.size());
+        return new IngredientPriceHistory(slotByIngredientId,
+                offsets.stream().mapToInt(Integer::intValue).toArray(), validFromMicros, prices);
+    }
+
+    /**
+     * History of every ingredient over [from, to), loaded with one range query.
+     */
+    public static IngredientPriceHistory load(IngredientRepository ingredientRepository, Instant from, Instant to) {
+        return of(ingredientRepository.findIngredientPriceHistory(null, from, to));
+    }
+
+    /**
+     * Price of the ingredient at the instant, or null when it has no history.
+     */
+    public Double getPriceAt(Integer ingredientId, Instant at) {
+        Integer slot = slotByIngredientId.get(ingredientId);
+        return slot == null ? null : prices[indexAt(slot, toMicros(at))];
+    }
+
+    public double getDishCostAt(Dish dish, Instant at) {
+        long micros = toMicros(at);
+        double cost = 0;
+        for (DishIngredient dishIngredient : dish.getDishIngredients()) {
+            Integer slot = slotByIngredientId.get(dishIngredient.getIngredient().getId());
+            double price = slot == null ? dishIngredient.getIngredient().getPrice() : prices[indexAt(slot, micros)];
+            cost += price * requiredQuantity(dishIngredient);
+        }
+        return cost;
+    }
+
+    public double getGrossMarginAt(Dish dish, Instant at) {
+        return sellingPrice(dish) - getDishCostAt(dish, at);
+    }
+
+    /**
+     * Cost of the dish at each of the instants, which must be sorted. Each ingredient's
+     * prices are walked once alongside the instants instead of searched per instant.
+     */
+    public double[] getDishCostsAt(Dish dish, List<Instant> sortedInstants) {
+        long[] micros = new long[sortedInstants.size()];
+        for (int i = 0; i < micros.length; i++) {
+            micros[i] = toMicros(sortedInstants.get(i));
+        }
+        double[] costs = new double[micros.length];
+        for (DishIngredient dishIngredient : dish.getDishIngredients()) {
+            double quantity = requiredQuantity(dishIngredient);
+            Integer slot = slotByIngredientId.get(dishIngredient.getIngredient().getId());
+            if (slot == null) {
+                double price = dishIngredient.getIngredient().getPrice();
+                for (int i = 0; i < costs.length; i++) {
+                    costs[i] += price * quantity;
+                }
+                continue;
+            }
+            int index = offsets[slot];
+            int end = offsets[slot + 1];
+            for (int i = 0; i < costs.length; i++) {
+                while (index + 1 < end && validFromMicros[index + 1] <= micros[i]) {
+                    index++;
+                }
+                costs[i] += prices[index] * quantity;
+            }
+        }
+        return costs;
+    }
+
+    public double[] getGrossMarginsAt(Dish dish, List<Instant> sortedInstants) {
+        double sellingPrice = sellingPrice(dish);
+        double[] margins = getDishCostsAt(dish, sortedInstants);
+        for (int i = 0; i < margins.length; i++) {
+            margins[i] = sellingPrice - margins[i];
+        }
+        return margins;
+    }
+
+    /**
+     * Index of the last price starting at or before the instant, or the first one.
+     */
+    private int indexAt(int slot, long micros) {
+        int low = offsets[slot];
+        int high = offsets[slot + 1] - 1;
+        int found = low;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (validFromMicros[middle] <= micros) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    private static double requiredQuantity(DishIngredient dishIngredient) {
+        if (dishIngredient.getQuantity() == null) {
+            throw new RuntimeException("Some ingredients have undefined quantity");
+        }
+        return dishIngredient.getQuantity();
+    }
+
+    private static double sellingPrice(Dish dish) {
+        if (dish.getPrice() == null) {
+            throw new RuntimeException("Price is null");
+        }
+        return dish.getPrice();
+    }
+
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+}
@@ -0,0 +1,25 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class IngredientPriceRowMapper implements RowMapper<IngredientPrice> {
+    private final int idIngredient;
+    private final int price;
+    private final int validFrom;
+    private final int validTo;
+
+    public IngredientPriceRowMapper(ResultSet resultSet) throws SQLException {
+        idIngredient = ResultSetColumns.indexOf(resultSet, "id_ingredient");
+        price = ResultSetColumns.indexOf(resultSet, "price");
+        validFrom = ResultSetColumns.indexOf(resultSet, "valid_from");
+        validTo = ResultSetColumns.indexOf(resultSet, "valid_to");
+    }
+
+    @Override
+    public IngredientPrice map(ResultSet resultSet) throws SQLException {
+        return new IngredientPrice(
+                resultSet.getInt(idIngredient),
+                resultSet.getDouble(price),
+                ResultSetColumns.getInstant(resultSet, validFrom),
+                ResultSetColumns.getInstant(resultSet, validTo));
+    }
+}
@@ -0,0 +1,33 @@
+import java.time.Instant;
+import java.util.List;
+
+public interface IngredientRepository {
+    Ingredient findIngredientById(Integer id);
+
+    Ingredient saveIngredient(Ingredient toSave);
+
+    List<Ingredient> createIngredients(List<Ingredient> newIngredients);
+
+    List<Ingredient> findAllIngredients();
+
+    Page<Ingredient> findIngredients(IngredientFilter filter, Integer afterId, int limit);
+
+    List<Ingredient> searchIngredientsByName(String query, int limit);
+
+    /**
+     * Ingredients created or updated at or after since, without their stock movements,
+     * ordered by id; every ingredient when since is null.
+     */
+    List<Ingredient> findIngredientsUpdatedSince(Instant since);
+
+    /**
+     * Price of the ingredient at the instant, or null when it had none yet.
+     */
+    Double findIngredientPriceAt(Integer ingredientId, Instant at);
+
+    /**
+     * Prices valid during part of [from, to), ordered by ingredient and validFrom; all
+     * ingredients when ingredientIds is null.
+     */
+    List<IngredientPrice> findIngredientPriceHistory(List<Integer> ingredientIds, Instant from, Instant to);
+}
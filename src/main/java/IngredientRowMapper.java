@@ -0,0 +1,26 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class IngredientRowMapper implements RowMapper<Ingredient> {
+    private final int id;
+    private final int name;
+    private final int price;
+    private final int category;
+
+    public IngredientRowMapper(ResultSet resultSet) throws SQLException {
+        id = ResultSetColumns.indexOf(resultSet, "id");
+        name = ResultSetColumns.indexOf(resultSet, "name");
+        price = ResultSetColumns.indexOf(resultSet, "price");
+        category = ResultSetColumns.indexOf(resultSet, "category");
+    }
+
+    @Override
+    public Ingredient map(ResultSet resultSet) throws SQLException {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setId(resultSet.getInt(id));
+        ingredient.setName(resultSet.getString(name));
+        ingredient.setPrice(resultSet.getDouble(price));
+        ingredient.setCategory(EnumDecoder.CATEGORY.decode(resultSet.getString(category)));
+        return ingredient;
+    }
+}
@@ -0,0 +1,57 @@
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Lines of the same dish, possibly of several tables, cooked together. The batch id is null
+ * for a batch of the pending queue, which is only a preview of how lines will be grouped.
+ */
+public class KitchenBatch {
+    private final Long batchId;
+    private final List<KitchenLine> lines;
+    private final Instant startedAt;
+
+    public KitchenBatch(Long batchId, List<KitchenLine> lines, Instant startedAt) {
+        this.batchId = batchId;
+        this.lines = List.copyOf(lines);
+        this.startedAt = startedAt;
+    }
+
+    public Long getBatchId() {
+        return batchId;
+    }
+
+    public List<KitchenLine> getLines() {
+        return lines;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Integer getDishId() {
+        return lines.get(0).getDishId();
+    }
+
+    public String getDishName() {
+        return lines.get(0).getDishName();
+    }
+
+    public DishTypeEnum getCourse() {
+        return lines.get(0).getCourse();
+    }
+
+    public int getQuantity() {
+        return lines.stream().mapToInt(KitchenLine::getQuantity).sum();
+    }
+
+    @Override
+    public String toString() {
+        return "KitchenBatch{" +
+                "batchId=" + batchId +
+                ", dishName='" + getDishName() + '\'' +
+                ", course=" + getCourse() +
+                ", quantity=" + getQuantity() +
+                ", tables=" + lines.stream().map(KitchenLine::getTableNumber).distinct().toList() +
+                '}';
+    }
+}
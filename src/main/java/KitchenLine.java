@@ -0,0 +1,79 @@
+import java.time.Instant;
+
+/**
+ * A dish order line waiting for or being cooked by the kitchen, with what the displays show
+ * of its order.
+ */
+public class KitchenLine {
+    private final Integer dishOrderId;
+    private final Integer orderId;
+    private final String orderReference;
+    private final Integer tableNumber;
+    private final Instant installationDatetime;
+    private final Integer dishId;
+    private final String dishName;
+    private final DishTypeEnum course;
+    private final int quantity;
+
+    public KitchenLine(Integer dishOrderId, Integer orderId, String orderReference, Integer tableNumber,
+                       Instant installationDatetime, Integer dishId, String dishName, DishTypeEnum course,
+                       int quantity) {
+        this.dishOrderId = dishOrderId;
+        this.orderId = orderId;
+        this.orderReference = orderReference;
+        this.tableNumber = tableNumber;
+        this.installationDatetime = installationDatetime;
+        this.dishId = dishId;
+        this.dishName = dishName;
+        this.course = course;
+        this.quantity = quantity;
+    }
+
+    public Integer getDishOrderId() {
+        return dishOrderId;
+    }
+
+    public Integer getOrderId() {
+        return orderId;
+    }
+
+    public String getOrderReference() {
+        return orderReference;
+    }
+
+    public Integer getTableNumber() {
+        return tableNumber;
+    }
+
+    public Instant getInstallationDatetime() {
+        return installationDatetime;
+    }
+
+    public Integer getDishId() {
+        return dishId;
+    }
+
+    public String getDishName() {
+        return dishName;
+    }
+
+    public DishTypeEnum getCourse() {
+        return course;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "KitchenLine{" +
+                "orderReference='" + orderReference + '\'' +
+                ", tableNumber=" + tableNumber +
+                ", installationDatetime=" + installationDatetime +
+                ", dishName='" + dishName + '\'' +
+                ", course=" + course +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
@@ -0,0 +1,369 @@
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dish order lines on their way to the kitchen displays. Pending lines are ordered by the
+ * installation time of their table, then by course (starters, mains, desserts), in a
+ * concurrent skip list: enqueuing never blocks, and displays read it without locking.
+ * Starting the next batch takes the first pending line together with every pending line of
+ * the same dish whose table is installed within batchWindow of it, so that identical dishes
+ * of several tables are cooked at once. A line belongs to whoever removes it from the
+ * queue first, so several displays can start batches concurrently.
+ * Every change is pushed to the subscribed displays. A display that falls behind by more
+ * than the buffer capacity misses events and should reload pendingBatches.
+ */
+public class KitchenQueue implements AutoCloseable {
+    private static final int DEFAULT_BUFFER_CAPACITY = 1024;
+    private static final Duration FORGET_PERIOD = Duration.ofMinutes(1);
+
+    private final Duration batchWindow;
+    private final ConcurrentSkipListMap<LineKey, KitchenLine> pending = new ConcurrentSkipListMap<>();
+    private final Map<Integer, ConcurrentSkipListSet<LineKey>> pendingByDish = new ConcurrentHashMap<>();
+    private final Map<Integer, OrderLines> pendingByOrder = new ConcurrentHashMap<>();
+    private final Map<Long, KitchenBatch> inProgress = new ConcurrentHashMap<>();
+    // Quantities of each dish started per order, so that a re-saved order is not cooked twice.
+    private final Map<Integer, StartedQuantities> startedByOrder = new ConcurrentHashMap<>();
+    private final AtomicLong lineSequence = new AtomicLong();
+    private final AtomicLong batchSequence = new AtomicLong();
+    private final AtomicLong lastForget = new AtomicLong();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SubmissionPublisher<Event> publisher;
+
+    public KitchenQueue(Duration batchWindow) {
+        this(batchWindow, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    public KitchenQueue(Duration batchWindow, int bufferCapacity) {
+        this.batchWindow = batchWindow;
+        this.publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+    }
+
+    /**
+     * Registers the queue for the orders saved from now on, see enqueue. A queue serves one
+     * restaurant: with a tenant-routed repository, register it inside TenantContext.run.
+     */
+    public KitchenQueue listenTo(OrderRepository orderRepository) {
+        orderRepository.addOrderListener(this::enqueue);
+        return this;
+    }
+
+    public void subscribe(Flow.Subscriber<Event> display) {
+        publisher.subscribe(display);
+    }
+
+    /**
+     * Queues the lines of a saved order. The pending lines of an order saved again are
+     * replaced by its new ones, less what has already been started. Saves of one order are
+     * applied one at a time, and one older than the version queued is ignored: every save
+     * gives the dish orders new, increasing ids, so the highest is the version.
+     */
+    public void enqueue(Order order) {
+        List<KitchenLine> withdrawn = new ArrayList<>();
+        List<KitchenLine> queued = new ArrayList<>();
+        if (order.getId() == null) {
+            queue(order, queued);
+        } else {
+            pendingByOrder.compute(order.getId(), (orderId, current) -> {
+                // An order saved without dish orders has no version: it is applied and keeps the one queued.
+                long version = version(order);
+                if (current != null && version != Long.MIN_VALUE && version < current.version) {
+                    return current;
+                }
+                if (current != null) {
+                    withdraw(current, withdrawn);
+                }
+                return new OrderLines(current == null ? version : Math.max(version, current.version),
+                        queue(order, queued));
+            });
+        }
+        publish(new Event(Event.Type.WITHDRAWN, null, withdrawn));
+        publish(new Event(Event.Type.QUEUED, null, queued));
+    }
+
+    /**
+     * Starts the batch of the first pending line, null when nothing is pending.
+     */
+    public KitchenBatch startNext() {
+        Map.Entry<LineKey, KitchenLine> first;
+        while ((first = pending.firstEntry()) != null) {
+            KitchenBatch batch = start(first.getKey());
+            if (batch != null) {
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts the batch of the first pending line of the dish, null when none is pending.
+     */
+    public KitchenBatch startNext(Integer dishId) {
+        ConcurrentSkipListSet<LineKey> keys = pendingByDish.get(dishId);
+        LineKey first;
+        while (keys != null && (first = keys.pollFirst()) != null) {
+            KitchenBatch batch = start(first);
+            if (batch != null) {
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks the batch as served and returns it, null when it is not in progress.
+     */
+    public KitchenBatch serve(long batchId) {
+        KitchenBatch batch = inProgress.remove(batchId);
+        if (batch != null) {
+            publish(new Event(Event.Type.SERVED, batchId, batch.getLines()));
+            forgetStartedQuantities(Instant.now());
+        }
+        return batch;
+    }
+
+    /**
+     * Pending lines grouped as startNext would group them, first batch first.
+     */
+    public List<KitchenBatch> pendingBatches() {
+        Map<Integer, List<KitchenLine>> openByDish = new HashMap<>();
+        List<List<KitchenLine>> batches = new ArrayList<>();
+        for (KitchenLine line : pending.values()) {
+            List<KitchenLine> open = openByDish.get(line.getDishId());
+            if (open == null || line.getInstallationDatetime()
+                    .isAfter(open.get(0).getInstallationDatetime().plus(batchWindow))) {
+                open = new ArrayList<>();
+                openByDish.put(line.getDishId(), open);
+                batches.add(open);
+            }
+            open.add(line);
+        }
+        return batches.stream().map(lines -> new KitchenBatch(null, lines, null)).toList();
+    }
+
+    public List<KitchenBatch> batchesInProgress() {
+        return inProgress.values().stream()
+                .sorted((left, right) -> left.getBatchId().compareTo(right.getBatchId()))
+                .toList();
+    }
+
+    public int getPendingLineCount() {
+        return pending.size();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    private KitchenBatch start(LineKey first) {
+        KitchenLine firstLine = take(first);
+        if (firstLine == null) {
+            return null;
+        }
+        List<KitchenLine> lines = new ArrayList<>();
+        lines.add(firstLine);
+        ConcurrentSkipListSet<LineKey> sameDish = pendingByDish.get(first.dishId());
+        if (sameDish != null) {
+            Instant last = first.installation().plus(batchWindow);
+            for (LineKey key : sameDish) {
+                if (key.installation().isAfter(last)) {
+                    break;
+                }
+                KitchenLine line = take(key);
+                if (line != null) {
+                    lines.add(line);
+                }
+            }
+        }
+        KitchenBatch batch = new KitchenBatch(batchSequence.incrementAndGet(), lines, Instant.now());
+        for (KitchenLine line : lines) {
+            if (line.getOrderId() != null) {
+                startedByOrder.computeIfAbsent(line.getOrderId(),
+                                id -> new StartedQuantities(line.getInstallationDatetime().plus(Duration.ofDays(1))))
+                        .byDish.merge(line.getDishId(), line.getQuantity(), Integer::sum);
+            }
+        }
+        inProgress.put(batch.getBatchId(), batch);
+        publish(new Event(Event.Type.STARTED, batch.getBatchId(), lines));
+        return batch;
+    }
+
+    // The line when this caller removed it from the queue, null when another one did.
+    private KitchenLine take(LineKey key) {
+        KitchenLine line = pending.remove(key);
+        ConcurrentSkipListSet<LineKey> sameDish = pendingByDish.get(key.dishId());
+        if (sameDish != null) {
+            sameDish.remove(key);
+        }
+        if (line != null && line.getOrderId() != null) {
+            OrderLines orderLines = pendingByOrder.get(line.getOrderId());
+            if (orderLines != null) {
+                orderLines.keys.remove(key);
+            }
+        }
+        return line;
+    }
+
+    private void forgetStartedQuantities(Instant now) {
+        long last = lastForget.get();
+        if (now.toEpochMilli() - last >= FORGET_PERIOD.toMillis() && lastForget.compareAndSet(last, now.toEpochMilli())) {
+            startedByOrder.values().removeIf(started -> started.forgetAfter.isBefore(now));
+        }
+    }
+
+    private Set<LineKey> queue(Order order, List<KitchenLine> queued) {
+        Set<LineKey> keys = ConcurrentHashMap.newKeySet();
+        if (order.getDishOrderList() == null || order.getDishOrderList().isEmpty()) {
+            return keys;
+        }
+        Instant installation = order.getInstallationDate() != null
+                ? order.getInstallationDate() : order.getCreationDatetime();
+        Integer tableNumber = order.getTable() == null ? null : order.getTable().getNumber();
+        StartedQuantities started = order.getId() == null ? null : startedByOrder.get(order.getId());
+        Map<Integer, Integer> alreadyStarted = started == null ? new HashMap<>() : new HashMap<>(started.byDish);
+        for (DishOrder dishOrder : order.getDishOrderList()) {
+            Dish dish = dishOrder.getDish();
+            int startedQuantity = alreadyStarted.getOrDefault(dish.getId(), 0);
+            int quantity = dishOrder.getQuantity() - startedQuantity;
+            alreadyStarted.put(dish.getId(), Math.max(0, startedQuantity - dishOrder.getQuantity()));
+            if (quantity <= 0) {
+                continue;
+            }
+            KitchenLine line = new KitchenLine(dishOrder.getId(), order.getId(), order.getReference(), tableNumber,
+                    installation, dish.getId(), dish.getName(), dish.getDishType(), quantity);
+            LineKey key = new LineKey(installation, courseRank(dish.getDishType()), dish.getId(),
+                    lineSequence.incrementAndGet());
+            keys.add(key);
+            pending.put(key, line);
+            pendingByDish.computeIfAbsent(dish.getId(), id -> new ConcurrentSkipListSet<>()).add(key);
+            queued.add(line);
+        }
+        return keys;
+    }
+
+    private void withdraw(OrderLines orderLines, List<KitchenLine> withdrawn) {
+        for (LineKey key : orderLines.keys) {
+            KitchenLine line = take(key);
+            if (line != null) {
+                withdrawn.add(line);
+            }
+        }
+    }
+
+    private static long version(Order order) {
+        long version = Long.MIN_VALUE;
+        if (order.getDishOrderList() != null) {
+            for (DishOrder dishOrder : order.getDishOrderList()) {
+                if (dishOrder.getId() != null) {
+                    version = Math.max(version, dishOrder.getId());
+                }
+            }
+        }
+        return version;
+    }
+
+    private void publish(Event event) {
+        if (event.getLines().isEmpty() || publisher.isClosed()) {
+            return;
+        }
+        publisher.offer(event, (display, dropped) -> {
+            droppedEvents.increment();
+            return false;
+        });
+    }
+
+    private static int courseRank(DishTypeEnum course) {
+        return course == null ? DishTypeEnum.values().length : course.ordinal();
+    }
+
+    @Override
+    public void close() {
+        publisher.close();
+        executor.close();
+    }
+
+    /**
+     * Change of the queue pushed to the displays; the batch id is null for pending lines.
+     */
+    public static class Event {
+        public enum Type {
+            QUEUED, WITHDRAWN, STARTED, SERVED
+        }
+
+        private final Type type;
+        private final Long batchId;
+        private final List<KitchenLine> lines;
+
+        public Event(Type type, Long batchId, List<KitchenLine> lines) {
+            this.type = type;
+            this.batchId = batchId;
+            this.lines = List.copyOf(lines);
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Long getBatchId() {
+            return batchId;
+        }
+
+        public List<KitchenLine> getLines() {
+            return lines;
+        }
+
+        @Override
+        public String toString() {
+            return "Event{" +
+                    "type=" + type +
+                    ", batchId=" + batchId +
+                    ", lines=" + lines.size() +
+                    '}';
+        }
+    }
+
+    private static class StartedQuantities {
+        private final Instant forgetAfter;
+        private final Map<Integer, Integer> byDish = new ConcurrentHashMap<>();
+
+        private StartedQuantities(Instant forgetAfter) {
+            this.forgetAfter = forgetAfter;
+        }
+    }
+
+    // Pending lines of one order and the version of the order they were queued from.
+    private record OrderLines(long version, Set<LineKey> keys) {
+    }
+
+    private record LineKey(Instant installation, int courseRank, int dishId, long sequence)
+            implements Comparable<LineKey> {
+        @Override
+        public int compareTo(LineKey other) {
+            int byInstallation = installation.compareTo(other.installation);
+            if (byInstallation != 0) {
+                return byInstallation;
+            }
+            if (courseRank != other.courseRank) {
+                return Integer.compare(courseRank, other.courseRank);
+            }
+            if (dishId != other.dishId) {
+                return Integer.compare(dishId, other.dishId);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+
+public class KitchenQueueBenchmark {
+    private static final int ORDER_COUNT = 20_000;
+    private static final int DISH_COUNT = 40;
+    private static final int TABLE_COUNT = 60;
+    private static final int DISPLAY_COUNT = 4;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        List<Dish> dishes = new ArrayList<>();
+        for (int id = 1; id <= DISH_COUNT; id++) {
+            Dish dish = new Dish();
+            dish.setId(id);
+            dish.setName("Dish " + id);
+            dish.setDishType(DishTypeEnum.values()[id % DishTypeEnum.values().length]);
+            dishes.add(dish);
+        }
+        Instant opening = Instant.parse("2024-04-01T10:00:00Z");
+        List<Order> orders = new ArrayList<>(ORDER_COUNT);
+        for (int id = 1; id <= ORDER_COUNT; id++) {
+            orders.add(order(id, opening.plusSeconds(random.nextInt(6 * 3600)), random, dishes));
+        }
+
+        try (KitchenQueue warmUp = new KitchenQueue(Duration.ofMinutes(10))) {
+            orders.forEach(warmUp::enqueue);
+            while (warmUp.startNext() != null) {
+                // Drained for the JIT only.
+            }
+        }
+        try (KitchenQueue queue = new KitchenQueue(Duration.ofMinutes(10))) {
+            LongAdder received = new LongAdder();
+            for (int display = 0; display < DISPLAY_COUNT; display++) {
+                queue.subscribe(new CountingDisplay(received));
+            }
+            System.out.println("=== Kitchen queue: " + ORDER_COUNT + " orders, " + DISPLAY_COUNT + " displays ===");
+            long[] latencies = new long[ORDER_COUNT];
+            for (int i = 0; i < ORDER_COUNT; i++) {
+                long start = System.nanoTime();
+                queue.enqueue(orders.get(i));
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("enqueue: p50 %.1f us, p99 %.1f us, max %.1f us, %d lines pending%n",
+                    latencies[ORDER_COUNT / 2] / 1000.0, latencies[ORDER_COUNT * 99 / 100] / 1000.0,
+                    latencies[ORDER_COUNT - 1] / 1000.0, queue.getPendingLineCount());
+
+            long start = System.nanoTime();
+            int batches = 0;
+            int lines = 0;
+            KitchenBatch batch;
+            while ((batch = queue.startNext()) != null) {
+                batches++;
+                lines += batch.getLines().size();
+                queue.serve(batch.getBatchId());
+            }
+            System.out.printf("drain: %.2f ms, %d lines in %d batches, %d events dropped%n",
+                    (System.nanoTime() - start) / 1_000_000.0, lines, batches, queue.getDroppedEvents());
+        }
+    }
+
+    private static Order order(int id, Instant installation, Random random, List<Dish> dishes) {
+        List<DishOrder> dishOrders = new ArrayList<>();
+        for (int line = 0; line < 3; line++) {
+            DishOrder dishOrder = new DishOrder();
+            dishOrder.setId(id * 3 + line);
+            dishOrder.setDish(dishes.get(random.nextInt(dishes.size())));
+            dishOrder.setQuantity(1 + random.nextInt(4));
+            dishOrders.add(dishOrder);
+        }
+        Order order = new Order();
+        order.setId(id);
+        order.setReference("ORD" + id);
+        order.setCreationDatetime(installation);
+        order.setInstallationDate(installation);
+        order.setTable(new RestaurantTable(id % TABLE_COUNT + 1, id % TABLE_COUNT + 1));
+        order.setDishOrderList(dishOrders);
+        return order;
+    }
+
+    private static class CountingDisplay implements Flow.Subscriber<KitchenQueue.Event> {
+        private final LongAdder received;
+
+        private CountingDisplay(LongAdder received) {
+            this.received = received;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(KitchenQueue.Event event) {
+            received.increment();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
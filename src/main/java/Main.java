@@ -7,8 +7,12 @@ import java.util.List;
 
 public class Main {
     public static void main(String[] args) {
-        resetData();
-        DataRetriever dataRetriever = new DataRetriever();
+        DataStore dataRetriever = DataStoreFactory.fromEnvironment();
+        if (dataRetriever instanceof DataRetriever) {
+            new MigrationRunner().migrate();
+            new PartitionManager().ensureFuturePartitions(3);
+            resetData();
+        }
 
         // 1. Initial cleanup (if needed, typically Main relies on existing data or creates it)
         // Here we assume tables 1, 2, 3 exist. If not, one might need to insert them.
@@ -16,7 +20,7 @@ public class Main {
 
         System.out.println("=== TEST SCENARIO: Restaurant Table Availability ===");
 
-        ensureTablesExist();
+        ensureTablesExist(dataRetriever);
 
         // Fetch tables (Assuming Tables 1, 2, 3 exist from migration/setup)
         // We find availables in the past to get reference objects
@@ -45,7 +49,7 @@ public class Main {
             System.err.println("FAILURE: " + e.getMessage());
         }
 
-        // Scenario 2: Overlapping Booking on Table 1 (Should Fail & Suggest Tables)
+        // Scenario 2: Overlapping Booking on Table 1 (Should Fail & Suggest a Table)
         System.out.println("\n[2] Attempting to book Table 1 AGAIN (Overlapping)...");
         Order order2 = new Order();
         order2.setReference("CMD-002");
@@ -114,12 +118,9 @@ public class Main {
         }
     }
 
-    private static void ensureTablesExist() {
-        DBConnection db = new DBConnection();
-        try (Connection conn = db.getConnection()) {
-            conn.createStatement().execute("INSERT INTO restaurant_table (number) VALUES (1), (2), (3) ON CONFLICT (number) DO NOTHING");
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    private static void ensureTablesExist(TableRepository tableRepository) {
+        for (int number = 1; number <= 3; number++) {
+            tableRepository.saveTable(new RestaurantTable(null, number));
         }
     }
 }
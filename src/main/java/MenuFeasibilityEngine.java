@@ -0,0 +1,159 @@
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps, in memory, how many portions of each dish the current stock allows.
+ * Recipes are flattened into primitive arrays; a stock movement only recomputes
+ * the dishes using the moved ingredient and publishes a new immutable snapshot,
+ * so reads never lock.
+ */
+public class MenuFeasibilityEngine {
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+    private static final double EPSILON = 1e-9;
+
+    private final Map<Integer, Integer> ingredientIndexById = new HashMap<>();
+    private final Map<Integer, Integer> dishIndexById = new LinkedHashMap<>();
+    private final int[] dishIds;
+    private final int[] recipeOffsets;
+    private final int[] recipeIngredients;
+    private final double[] recipeQuantities;
+    private final int[][] dishesByIngredient;
+    private final double[] stock;
+    private volatile int[] maxPortions;
+
+    public MenuFeasibilityEngine(List<Dish> dishes, List<Ingredient> ingredients, Instant at) {
+        stock = new double[ingredients.size()];
+        for (int i = 0; i < ingredients.size(); i++) {
+            Ingredient ingredient = ingredients.get(i);
+            ingredientIndexById.put(ingredient.getId(), i);
+            // An ingredient that never moved has no unit, and getStockValueAt fails on it.
+            stock[i] = ingredient.getStockMovementList() == null || ingredient.getStockMovementList().isEmpty()
+                    ? 0 : ingredient.getStockValueAt(at).getQuantity();
+        }
+
+        dishIds = new int[dishes.size()];
+        recipeOffsets = new int[dishes.size() + 1];
+        List<Integer> ingredientIndexes = new ArrayList<>();
+        List<Double> quantities = new ArrayList<>();
+        List<List<Integer>> dishLists = new ArrayList<>();
+        for (int i = 0; i < ingredients.size(); i++) {
+            dishLists.add(new ArrayList<>());
+        }
+        for (int d = 0; d < dishes.size(); d++) {
+            Dish dish = dishes.get(d);
+            dishIds[d] = dish.getId();
+            dishIndexById.put(dish.getId(), d);
+            recipeOffsets[d] = ingredientIndexes.size();
+            if (dish.getDishIngredients() != null) {
+                for (DishIngredient dishIngredient : dish.getDishIngredients()) {
+                    Integer ingredientIndex = ingredientIndexById.get(dishIngredient.getIngredient().getId());
+                    Double quantity = dishIngredient.getQuantity();
+                    if (quantity == null || quantity <= 0) {
+                        continue;
+                    }
+                    if (ingredientIndex == null) {
+                        throw new RuntimeException("Ingredient " + dishIngredient.getIngredient().getId()
+                                + " of dish " + dish.getId() + " has no stock information");
+                    }
+                    ingredientIndexes.add(ingredientIndex);
+                    quantities.add(quantity);
+                    dishLists.get(ingredientIndex).add(d);
+                }
+            }
+        }
+        recipeOffsets[dishes.size()] = ingredientIndexes.size();
+        recipeIngredients = ingredientIndexes.stream().mapToInt(Integer::intValue).toArray();
+        recipeQuantities = quantities.stream().mapToDouble(Double::doubleValue).toArray();
+        dishesByIngredient = new int[ingredients.size()][];
+        for (int i = 0; i < ingredients.size(); i++) {
+            dishesByIngredient[i] = dishLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int[] portions = new int[dishIds.length];
+        for (int d = 0; d < dishIds.length; d++) {
+            portions[d] = computeMaxPortions(d);
+        }
+        maxPortions = portions;
+    }
+
+    public int getMaxPortions(Integer dishId) {
+        Integer dishIndex = dishIndexById.get(dishId);
+        if (dishIndex == null) {
+            throw new NotFoundException("Dish not found " + dishId);
+        }
+        return maxPortions[dishIndex];
+    }
+
+    public Map<Integer, Integer> getMaxPortionsByDish() {
+        int[] snapshot = maxPortions;
+        Map<Integer, Integer> portionsByDish = new LinkedHashMap<>();
+        for (int d = 0; d < dishIds.length; d++) {
+            portionsByDish.put(dishIds[d], snapshot[d]);
+        }
+        return portionsByDish;
+    }
+
+    /**
+     * Number of times the whole basket of dish orders can be served with current stock.
+     */
+    public synchronized int getMaxBaskets(List<DishOrder> basket) {
+        Map<Integer, Double> requiredByIngredient = new HashMap<>();
+        for (DishOrder dishOrder : basket) {
+            Integer dishIndex = dishIndexById.get(dishOrder.getDish().getId());
+            if (dishIndex == null) {
+                throw new NotFoundException("Dish not found " + dishOrder.getDish().getId());
+            }
+            for (int r = recipeOffsets[dishIndex]; r < recipeOffsets[dishIndex + 1]; r++) {
+                requiredByIngredient.merge(recipeIngredients[r], recipeQuantities[r] * dishOrder.getQuantity(), Double::sum);
+            }
+        }
+        int baskets = UNLIMITED;
+        for (Map.Entry<Integer, Double> required : requiredByIngredient.entrySet()) {
+            baskets = Math.min(baskets, portionsOf(stock[required.getKey()], required.getValue()));
+        }
+        return baskets;
+    }
+
+    public boolean canServe(List<DishOrder> basket) {
+        return getMaxBaskets(basket) >= 1;
+    }
+
+    public synchronized void onStockMovement(Integer ingredientId, StockMovement stockMovement) {
+        Integer ingredientIndex = ingredientIndexById.get(ingredientId);
+        if (ingredientIndex == null) {
+            return;
+        }
+        double quantity = stockMovement.getValue().getQuantity();
+        stock[ingredientIndex] += stockMovement.getType() == MovementTypeEnum.IN ? quantity : -quantity;
+
+        int[] affectedDishes = dishesByIngredient[ingredientIndex];
+        if (affectedDishes.length == 0) {
+            return;
+        }
+        int[] portions = maxPortions.clone();
+        for (int dishIndex : affectedDishes) {
+            portions[dishIndex] = computeMaxPortions(dishIndex);
+        }
+        maxPortions = portions;
+    }
+
+    private int computeMaxPortions(int dishIndex) {
+        int portions = UNLIMITED;
+        for (int r = recipeOffsets[dishIndex]; r < recipeOffsets[dishIndex + 1]; r++) {
+            portions = Math.min(portions, portionsOf(stock[recipeIngredients[r]], recipeQuantities[r]));
+        }
+        return portions;
+    }
+
+    private static int portionsOf(double available, double required) {
+        if (available <= 0) {
+            return 0;
+        }
+        double portions = Math.floor(available / required + EPSILON);
+        return portions >= UNLIMITED ? UNLIMITED : (int) portions;
+    }
+}
@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies the versioned scripts of sql/migration in order, each one in its own
+ * transaction, and records them with their checksum in schema_migration.
+ * An advisory lock keeps several nodes starting together from migrating twice.
+ */
+public class MigrationRunner {
+    private static final String MIGRATION_DIRECTORY = "sql/migration/";
+    private static final long MIGRATION_LOCK_KEY = 20260129L;
+    static final List<String> MIGRATIONS = List.of(
+            "V1__schema.sql",
+            "V2__restaurant_table.sql",
+            "V3__catalog_search_indexes.sql",
+            "V4__reconcile_columns.sql",
+            "V5__foreign_key_and_time_indexes.sql",
+            "V6__sync_serial_sequences.sql",
+            "V7__restaurant_table_capacity.sql",
+            "V8__change_notifications.sql",
+            "V9__partition_stock_movement.sql",
+            "V10__ingredient_price_history.sql",
+            "V11__stock_movement_unit_price.sql",
+            "V12__stock_movement_lots.sql",
+            "V13__catalog_updated_at.sql",
+            "V14__stock_movement_carried_forward.sql"
+    );
+    // Checksums of earlier revisions of a script, whose changes need not be applied again:
+    // V3 now skips the search indexes without pg_trgm/unaccent and renames duplicate references.
+    private static final Map<Integer, List<String>> SUPERSEDED_CHECKSUMS = Map.of(
+            3, List.of("d7e340e80348793f38acf9e13d3c39f628bd0373e2487ee65d300ac6f544f321"));
+
+    private final DBConnection dbConnection;
+
+    public MigrationRunner() {
+        this(new DBConnection());
+    }
+
+    /**
+     * Runner migrating the schema the connections open on, the first of their search_path.
+     */
+    public MigrationRunner(DBConnection dbConnection) {
+        this.dbConnection = dbConnection;
+    }
+
+    public void migrate() {
+        try (Connection connection = dbConnection.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("""
+                        create table if not exists schema_migration
+                        (
+                            version     int primary key,
+                            description varchar(255) not null,
+                            checksum    varchar(64)  not null,
+                            applied_at  timestamp without time zone not null default now()
+                        )""");
+                statement.execute("select pg_advisory_lock(" + MIGRATION_LOCK_KEY + ")");
+            }
+            try {
+                Map<Integer, String> appliedChecksums = findAppliedChecksums(connection);
+                for (String fileName : MIGRATIONS) {
+                    applyMigration(connection, fileName, appliedChecksums);
+                }
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("select pg_advisory_unlock(" + MIGRATION_LOCK_KEY + ")");
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void applyMigration(Connection connection, String fileName, Map<Integer, String> appliedChecksums)
+            throws SQLException {
+        int version = parseVersion(fileName);
+        String script = readScript(fileName);
+        String checksum = checksum(script);
+
+        String appliedChecksum = appliedChecksums.get(version);
+        if (appliedChecksum != null) {
+            if (SUPERSEDED_CHECKSUMS.getOrDefault(version, List.of()).contains(appliedChecksum)) {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "update schema_migration set checksum = ? where version = ?")) {
+                    ps.setString(1, checksum);
+                    ps.setInt(2, version);
+                    ps.executeUpdate();
+                }
+                System.out.println("[INFO] Migration " + fileName + " checksum updated to its new revision.");
+            } else if (!appliedChecksum.equals(checksum)) {
+                throw new RuntimeException("Migration " + fileName + " was modified after being applied");
+            }
+            return;
+        }
+
+        connection.setAutoCommit(false);
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(script);
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "insert into schema_migration (version, description, checksum) values (?, ?, ?)")) {
+                ps.setInt(1, version);
+                ps.setString(2, parseDescription(fileName));
+                ps.setString(3, checksum);
+                ps.executeUpdate();
+            }
+            connection.commit();
+            System.out.println("[INFO] Migration " + fileName + " applied.");
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new RuntimeException("Migration " + fileName + " failed", e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private Map<Integer, String> findAppliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, String> appliedChecksums = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select version, checksum from schema_migration")) {
+            while (resultSet.next()) {
+                appliedChecksums.put(resultSet.getInt("version"), resultSet.getString("checksum"));
+            }
+        }
+        return appliedChecksums;
+    }
+
+    private static int parseVersion(String fileName) {
+        return Integer.parseInt(fileName.substring(1, fileName.indexOf("__")));
+    }
+
+    private static String parseDescription(String fileName) {
+        return fileName.substring(fileName.indexOf("__") + 2, fileName.lastIndexOf('.')).replace('_', ' ');
+    }
+
+    private static String readScript(String fileName) {
+        try (InputStream inputStream = MigrationRunner.class.getClassLoader()
+                .getResourceAsStream(MIGRATION_DIRECTORY + fileName)) {
+            if (inputStream == null) {
+                throw new RuntimeException("Migration not found " + fileName);
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String checksum(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
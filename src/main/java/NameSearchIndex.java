@@ -0,0 +1,110 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory trigram index over names, used when pg_trgm/unaccent are not installed.
+ * Names are unaccented and lower-cased, split into pg_trgm-style word trigrams and
+ * ranked by the share of the query's trigrams they contain.
+ */
+public class NameSearchIndex<T> {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final double MIN_SCORE = 0.3;
+
+    private final List<T> items;
+    private final int[] trigramCounts;
+    private final Map<String, int[]> postings;
+
+    private NameSearchIndex(List<T> items, int[] trigramCounts, Map<String, int[]> postings) {
+        this.items = items;
+        this.trigramCounts = trigramCounts;
+        this.postings = postings;
+    }
+
+    public static <T> NameSearchIndex<T> of(List<T> items, Function<T, String> nameExtractor) {
+        int[] trigramCounts = new int[items.size()];
+        Map<String, List<Integer>> postingLists = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Set<String> trigrams = trigrams(nameExtractor.apply(items.get(i)));
+            trigramCounts[i] = trigrams.size();
+            for (String trigram : trigrams) {
+                postingLists.computeIfAbsent(trigram, key -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<String, int[]> postings = new HashMap<>(postingLists.size() * 2);
+        postingLists.forEach((trigram, itemIndexes) ->
+                postings.put(trigram, itemIndexes.stream().mapToInt(Integer::intValue).toArray()));
+        return new NameSearchIndex<>(List.copyOf(items), trigramCounts, postings);
+    }
+
+    public List<T> search(String query, int limit) {
+        Set<String> queryTrigrams = trigrams(query);
+        if (queryTrigrams.isEmpty()) {
+            return List.of();
+        }
+        int[] matches = new int[items.size()];
+        int[] candidates = new int[items.size()];
+        int candidateCount = 0;
+        for (String trigram : queryTrigrams) {
+            int[] itemIndexes = postings.get(trigram);
+            if (itemIndexes == null) {
+                continue;
+            }
+            for (int itemIndex : itemIndexes) {
+                if (matches[itemIndex]++ == 0) {
+                    candidates[candidateCount++] = itemIndex;
+                }
+            }
+        }
+
+        long[] ranked = new long[candidateCount];
+        int rankedCount = 0;
+        for (int c = 0; c < candidateCount; c++) {
+            int itemIndex = candidates[c];
+            double score = (double) matches[itemIndex] / queryTrigrams.size();
+            if (score >= MIN_SCORE) {
+                // Ties on score are broken by shorter names, then insertion order.
+                long scoreKey = 1_000_000L - Math.round(score * 1_000_000L);
+                ranked[rankedCount++] = (scoreKey << 40) | ((long) Math.min(trigramCounts[itemIndex], 0xFFFF) << 24) | itemIndex;
+            }
+        }
+        Arrays.sort(ranked, 0, rankedCount);
+
+        List<T> results = new ArrayList<>(Math.min(limit, rankedCount));
+        for (int r = 0; r < rankedCount && results.size() < limit; r++) {
+            results.add(items.get((int) (ranked[r] & 0xFFFFFF)));
+        }
+        return results;
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String withoutAccents = COMBINING_MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        return NON_WORD.matcher(withoutAccents.toLowerCase()).replaceAll(" ").trim();
+    }
+
+    static Set<String> trigrams(String name) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        String normalized = normalize(name);
+        if (normalized.isEmpty()) {
+            return trigrams;
+        }
+        for (String word : normalized.split(" ")) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+}
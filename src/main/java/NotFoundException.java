@@ -0,0 +1,10 @@
+/**
+ * The entity a lookup names does not exist.
+ */
+public class NotFoundException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,27 @@
+import java.time.Instant;
+import java.util.function.Consumer;
+
+public interface OrderRepository {
+    Order findOrderByReference(String reference);
+
+    /**
+     * Saves the order; an order without id whose reference is already taken is not saved
+     * again, the stored one is returned instead (see submitOrder).
+     */
+    Order saveOrder(Order orderToSave);
+
+    /**
+     * Saves a new order unless its reference is already taken, making retried submissions
+     * idempotent. Orders with an id are updated as by saveOrder.
+     */
+    OrderSubmission submitOrder(Order orderToSave);
+
+    Page<Order> findOrders(OrderFilter filter, Instant afterCreationDatetime, Integer afterId, int limit);
+
+    /**
+     * Registers a listener called with every order saved from now on, once it is committed.
+     * A tenant-routed repository only calls it for the orders of the restaurant bound to the
+     * TenantContext when it registered, so that each restaurant keeps its own listeners.
+     */
+    void addOrderListener(Consumer<Order> listener);
+}
@@ -0,0 +1,38 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class OrderRowMapper implements RowMapper<Order> {
+    private final int id;
+    private final int reference;
+    private final int creationDatetime;
+    private final int installationDatetime;
+    private final int departureDatetime;
+    private final int tableId;
+    private final int tableNumber;
+
+    public OrderRowMapper(ResultSet resultSet) throws SQLException {
+        id = ResultSetColumns.indexOf(resultSet, "id");
+        reference = ResultSetColumns.indexOf(resultSet, "reference");
+        creationDatetime = ResultSetColumns.indexOf(resultSet, "creation_datetime");
+        installationDatetime = ResultSetColumns.indexOf(resultSet, "installation_datetime");
+        departureDatetime = ResultSetColumns.indexOf(resultSet, "departure_datetime");
+        tableId = ResultSetColumns.indexOf(resultSet, "table_id");
+        tableNumber = ResultSetColumns.indexOf(resultSet, "table_number");
+    }
+
+    @Override
+    public Order map(ResultSet resultSet) throws SQLException {
+        Order order = new Order();
+        order.setId(resultSet.getInt(id));
+        order.setReference(resultSet.getString(reference));
+        order.setCreationDatetime(ResultSetColumns.getInstant(resultSet, creationDatetime));
+        order.setInstallationDate(ResultSetColumns.getInstant(resultSet, installationDatetime));
+        order.setDepartureDate(ResultSetColumns.getInstant(resultSet, departureDatetime));
+
+        Integer idTable = ResultSetColumns.getNullableInt(resultSet, tableId);
+        if (idTable != null) {
+            order.setTable(new RestaurantTable(idTable, resultSet.getInt(tableNumber)));
+        }
+        return order;
+    }
+}
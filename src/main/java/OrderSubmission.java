@@ -0,0 +1,38 @@
+/**
+ * Outcome of submitting an order: the stored order, and whether the submission replayed an
+ * earlier one with the same reference, in which case that earlier order is returned as
+ * stored and the submitted one is discarded, even when its content differs.
+ */
+public class OrderSubmission {
+    private final Order order;
+    private final boolean replayed;
+
+    private OrderSubmission(Order order, boolean replayed) {
+        this.order = order;
+        this.replayed = replayed;
+    }
+
+    public static OrderSubmission created(Order order) {
+        return new OrderSubmission(order, false);
+    }
+
+    public static OrderSubmission replayed(Order order) {
+        return new OrderSubmission(order, true);
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public boolean isReplayed() {
+        return replayed;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderSubmission{" +
+                "order=" + order +
+                ", replayed=" + replayed +
+                '}';
+    }
+}
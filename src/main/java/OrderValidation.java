@@ -0,0 +1,50 @@
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Rules shared by every OrderRepository engine before an order is saved.
+ */
+public class OrderValidation {
+
+    static void validateOrder(Order orderToSave) {
+        if (orderToSave.getTable() == null) {
+            throw new RuntimeException("Table is mandatory for an order");
+        }
+        if (orderToSave.getInstallationDate() == null || orderToSave.getDepartureDate() == null) {
+            throw new RuntimeException("Installation and departure dates are mandatory");
+        }
+        if (!orderToSave.getDepartureDate().isAfter(orderToSave.getInstallationDate())) {
+            throw new RuntimeException("Departure date must be after the installation date");
+        }
+    }
+
+    /**
+     * Rejects a findOrders cursor given in part: creation time and id go together.
+     */
+    static void validateCursor(Instant afterCreationDatetime, Integer afterId) {
+        if ((afterCreationDatetime == null) != (afterId == null)) {
+            throw new RuntimeException("afterCreationDatetime and afterId must be given together");
+        }
+    }
+
+    /**
+     * Rejects the order when its table is taken, suggesting the free table that best fits
+     * the seats of the requested one.
+     */
+    static void checkTableAvailable(Order orderToSave, RestaurantTable requestedTable, List<RestaurantTable> availableTables) {
+        if (!isTableAvailable(orderToSave, availableTables)) {
+            int seats = requestedTable.getCapacity() != null ? requestedTable.getCapacity() : RestaurantTable.DEFAULT_CAPACITY;
+            RestaurantTable alternative = TableAssignmentOptimizer.bestFit(availableTables, seats);
+            String availableMsg = alternative == null
+                    ? "aucun table n'est disponible"
+                    : "la table numéro " + alternative.getNumber() + " (" + alternative.getCapacity()
+                    + " places) est actuellement libre";
+
+            throw new RuntimeException("La table numéro " + requestedTable.getNumber() + " n'est pas disponible, " + availableMsg);
+        }
+    }
+
+    static boolean isTableAvailable(Order orderToSave, List<RestaurantTable> availableTables) {
+        return availableTables.stream().anyMatch(t -> t.getId().equals(orderToSave.getTable().getId()));
+    }
+}
@@ -0,0 +1,31 @@
+import java.util.List;
+
+public class Page<T> {
+    private final List<T> items;
+    private final boolean hasMore;
+
+    public Page(List<T> items, boolean hasMore) {
+        this.items = items;
+        this.hasMore = hasMore;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public T getLastItem() {
+        return items.isEmpty() ? null : items.get(items.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items +
+                ", hasMore=" + hasMore +
+                '}';
+    }
+}
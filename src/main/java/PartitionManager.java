@@ -0,0 +1,335 @@
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Maintains the monthly partitions of stock_movement and archives history to gzip-compressed
+ * CSV files. Archiving a month replaces its movements by carry-forward movements at the
+ * start of the next month: one IN per lot still open, with its unit price and expiry, once
+ * the month's shortage has been taken from the oldest of them, or else one OUT for the
+ * shortage no lot covers, marked carried_forward since its cost was already counted. Later
+ * OUT movements naming an archived lot are pointed at its carry-forward.
+ * "order" is not partitioned, dish_order references its id alone; old orders are archived
+ * and deleted together with their dish orders instead.
+ */
+public class PartitionManager {
+    private static final Pattern STOCK_MOVEMENT_PARTITION = Pattern.compile("stock_movement_y(\\d{4})m(\\d{2})");
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final DBConnection dbConnection;
+
+    public PartitionManager() {
+        this(new DBConnection());
+    }
+
+    public PartitionManager(DBConnection dbConnection) {
+        this.dbConnection = dbConnection;
+    }
+
+    /**
+     * Creates the partitions of the current month and of the next monthsAhead months.
+     */
+    public void ensureFuturePartitions(int monthsAhead) {
+        YearMonth current = YearMonth.now();
+        try (Connection connection = dbConnection.getConnection();
+             PreparedStatement ps = connection.prepareStatement("select ensure_stock_movement_partition(?)")) {
+            for (int month = 0; month <= monthsAhead; month++) {
+                ps.setObject(1, current.plusMonths(month).atDay(1));
+                ps.execute();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Archives into the directory every monthly partition older than the cutoff month,
+     * oldest first, and returns the files written.
+     */
+    public List<Path> archiveStockMovementsBefore(YearMonth cutoff, Path directory) {
+        List<Path> archives = new ArrayList<>();
+        try (Connection connection = dbConnection.getConnection()) {
+            for (var partition : findStockMovementPartitions(connection).headMap(cutoff).entrySet()) {
+                archives.add(archiveStockMovementPartition(connection, partition.getKey(), partition.getValue(), directory));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return archives;
+    }
+
+    /**
+     * Archives and deletes the orders installed before the cutoff, with their dish orders.
+     * Returns the two files written, or none when there was nothing to archive.
+     */
+    public List<Path> archiveOrdersBefore(LocalDateTime cutoff, Path directory) {
+        String suffix = "_before_" + cutoff.format(FILE_DATE) + ".csv.gz";
+        String orderFilter = "installation_datetime < '" + Timestamp.valueOf(cutoff) + "'";
+        try (Connection connection = dbConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            // One snapshot for the exports and the deletes: rows committed meanwhile are left alone.
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                Path orders = directory.resolve("order" + suffix);
+                long orderCount = export(copyManager, "select * from \"order\" where " + orderFilter + " order by id", orders);
+                if (orderCount == 0) {
+                    connection.rollback();
+                    Files.deleteIfExists(orders);
+                    return List.of();
+                }
+                Path dishOrders = directory.resolve("dish_order" + suffix);
+                export(copyManager, "select * from dish_order where id_order in (select id from \"order\" where "
+                        + orderFilter + ") order by id", dishOrders);
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("delete from dish_order where id_order in (select id from \"order\" where "
+                            + orderFilter + ")");
+                    statement.executeUpdate("delete from \"order\" where " + orderFilter);
+                }
+                connection.commit();
+                System.out.println("[INFO] Archived " + orderCount + " orders to " + orders);
+                return List.of(orders, dishOrders);
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw new RuntimeException("Archiving orders before " + cutoff + " failed", e);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Path archiveStockMovementPartition(Connection connection, YearMonth month, String partition, Path directory)
+            throws SQLException {
+        Path archive = directory.resolve(partition + ".csv.gz");
+        connection.setAutoCommit(false);
+        try {
+            // The carry-forward rows go to the next month's partition, never to the default one.
+            try (PreparedStatement ps = connection.prepareStatement("select ensure_stock_movement_partition(?)")) {
+                ps.setObject(1, month.plusMonths(1).atDay(1));
+                ps.execute();
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("lock table " + partition + " in share mode");
+            }
+            long rowCount = export(connection.unwrap(PGConnection.class).getCopyAPI(),
+                    "select * from " + partition + " order by id", archive);
+
+            insertCarryForward(connection, partition, month.plusMonths(1).atDay(1).atStartOfDay());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("alter table stock_movement detach partition " + partition);
+                statement.execute("drop table " + partition);
+            }
+            connection.commit();
+            System.out.println("[INFO] Archived " + rowCount + " stock movements of " + month + " to " + archive);
+            return archive;
+        } catch (SQLException | IOException | RuntimeException e) {
+            connection.rollback();
+            throw new RuntimeException("Archiving partition " + partition + " failed", e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private void insertCarryForward(Connection connection, String partition, LocalDateTime nextMonth) throws SQLException {
+        Map<Integer, MonthLots> lotsByIngredient = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("""
+                     select sm.id, sm.id_ingredient, sm.quantity, sm.unit, sm.type, sm.creation_datetime, sm.unit_price,
+                       sm.expiry_datetime, sm.id_lot, sm.carried_forward, i.price as ingredient_price
+                     from %s sm
+                     join ingredient i on i.id = sm.id_ingredient
+                     order by sm.id_ingredient, sm.creation_datetime, sm.type, sm.id""".formatted(partition))) {
+            StockMovementRowMapper stockMovementRowMapper = new StockMovementRowMapper(resultSet);
+            int ingredientPrice = ResultSetColumns.indexOf(resultSet, "ingredient_price");
+            while (resultSet.next()) {
+                StockMovement movement = stockMovementRowMapper.map(resultSet);
+                MonthLots lots = lotsByIngredient.computeIfAbsent(stockMovementRowMapper.getIngredientId(resultSet),
+                        id -> new MonthLots());
+                lots.unit = movement.getValue().getUnit();
+                if (movement.getType() == MovementTypeEnum.IN) {
+                    Double unitPrice = movement.getUnitPrice() != null
+                            ? movement.getUnitPrice() : ResultSetColumns.getNullableDouble(resultSet, ingredientPrice);
+                    lots.receive(movement, unitPrice == null ? 0 : unitPrice);
+                } else {
+                    lots.issue(movement.getLotId(), movement.getValue().getQuantity());
+                }
+            }
+        }
+        lotsByIngredient.values().forEach(MonthLots::settleShortage);
+
+        try (PreparedStatement insertLot = connection.prepareStatement("""
+                     insert into stock_movement (id_ingredient, quantity, unit, type, creation_datetime, unit_price,
+                       expiry_datetime)
+                     values (?, ?, ?::unit, 'IN', ?, ?, ?)
+                     returning id""");
+             PreparedStatement insertShortage = connection.prepareStatement("""
+                     insert into stock_movement (id_ingredient, quantity, unit, type, creation_datetime,
+                       carried_forward)
+                     values (?, ?, ?::unit, 'OUT', ?, true)""");
+             PreparedStatement remapLot = connection.prepareStatement("""
+                     update stock_movement
+                     set id_lot = ?
+                     where id_lot = ?
+                       and creation_datetime >= ?""")) {
+            for (Map.Entry<Integer, MonthLots> entry : lotsByIngredient.entrySet()) {
+                MonthLots lots = entry.getValue();
+                for (CarriedLot lot : lots.openLots.values()) {
+                    insertLot.setInt(1, entry.getKey());
+                    insertLot.setDouble(2, lot.quantity);
+                    insertLot.setString(3, lots.unit.name());
+                    insertLot.setObject(4, nextMonth);
+                    insertLot.setDouble(5, lot.unitPrice);
+                    insertLot.setTimestamp(6, lot.expiryDatetime == null ? null : Timestamp.from(lot.expiryDatetime));
+                    int carriedId;
+                    try (ResultSet resultSet = insertLot.executeQuery()) {
+                        resultSet.next();
+                        carriedId = resultSet.getInt(1);
+                    }
+                    // Later OUT movements naming the archived lot now consume its carry-forward.
+                    remapLot.setInt(1, carriedId);
+                    remapLot.setInt(2, lot.id);
+                    remapLot.setObject(3, nextMonth);
+                    remapLot.addBatch();
+                }
+                if (lots.shortage > 0) {
+                    insertShortage.setInt(1, entry.getKey());
+                    insertShortage.setDouble(2, lots.shortage);
+                    insertShortage.setString(3, lots.unit.name());
+                    insertShortage.setObject(4, nextMonth);
+                    insertShortage.addBatch();
+                }
+            }
+            insertShortage.executeBatch();
+            remapLot.executeBatch();
+        }
+    }
+
+    private TreeMap<YearMonth, String> findStockMovementPartitions(Connection connection) throws SQLException {
+        TreeMap<YearMonth, String> partitions = new TreeMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("""
+                     select c.relname
+                     from pg_inherits i
+                     join pg_class c on c.oid = i.inhrelid
+                     where i.inhparent = 'stock_movement'::regclass""")) {
+            while (resultSet.next()) {
+                Matcher matcher = STOCK_MOVEMENT_PARTITION.matcher(resultSet.getString(1));
+                if (matcher.matches()) {
+                    partitions.put(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))),
+                            matcher.group());
+                }
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Writes the query result as gzip-compressed CSV with a header, through a temporary
+     * file so that a failed export never leaves a truncated archive behind.
+     */
+    private static long export(CopyManager copyManager, String query, Path archive) throws SQLException, IOException {
+        Files.createDirectories(archive.toAbsolutePath().getParent());
+        Path temporary = archive.resolveSibling(archive.getFileName() + ".tmp");
+        long rowCount;
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(temporary), 1 << 16)) {
+            rowCount = copyManager.copyOut("copy (" + query + ") to stdout with (format csv, header)", outputStream);
+        }
+        Files.move(temporary, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rowCount;
+    }
+
+    /**
+     * Lots of one ingredient over an archived month, oldest first. An OUT naming an open lot
+     * consumes that lot, the rest of it and any other OUT the oldest lots, like FifoCostLedger;
+     * what no lot covers is a shortage.
+     */
+    private static class MonthLots {
+        private static final double EPSILON = 1e-9;
+
+        private final Map<Integer, CarriedLot> openLots = new LinkedHashMap<>();
+        private Unit unit;
+        private double shortage;
+
+        void receive(StockMovement movement, double unitPrice) {
+            if (movement.getValue().getQuantity() > 0) {
+                openLots.put(movement.getId(), new CarriedLot(movement.getId(), movement.getValue().getQuantity(),
+                        unitPrice, movement.getExpiryDatetime()));
+            }
+        }
+
+        void issue(Integer lotId, double quantity) {
+            double remaining = quantity;
+            CarriedLot named = lotId == null ? null : openLots.get(lotId);
+            if (named != null) {
+                remaining -= take(named, remaining);
+            }
+            Iterator<CarriedLot> oldest = openLots.values().iterator();
+            while (remaining > EPSILON && oldest.hasNext()) {
+                remaining -= take(oldest.next(), remaining);
+            }
+            openLots.values().removeIf(lot -> lot.quantity <= EPSILON);
+            if (remaining > EPSILON) {
+                shortage += remaining;
+            }
+        }
+
+        /**
+         * Takes the shortage from the lots received after it, oldest first: the stock carried
+         * forward is what remains of them, or the shortage none of them covers.
+         */
+        void settleShortage() {
+            Iterator<CarriedLot> oldest = openLots.values().iterator();
+            while (shortage > EPSILON && oldest.hasNext()) {
+                shortage -= take(oldest.next(), shortage);
+            }
+            openLots.values().removeIf(lot -> lot.quantity <= EPSILON);
+            if (shortage <= EPSILON) {
+                shortage = 0;
+            }
+        }
+
+        private static double take(CarriedLot lot, double quantity) {
+            double taken = Math.min(quantity, lot.quantity);
+            lot.quantity -= taken;
+            return taken;
+        }
+    }
+
+    private static class CarriedLot {
+        private final int id;
+        private double quantity;
+        private final double unitPrice;
+        private final Instant expiryDatetime;
+
+        private CarriedLot(int id, double quantity, double unitPrice, Instant expiryDatetime) {
+            this.id = id;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+            this.expiryDatetime = expiryDatetime;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Open lots of every ingredient, each in a priority queue ordered by expiry (lots that do
+ * not expire last, then oldest first), so that the lot consumed by an OUT is always the
+ * head: first expired first out. Issuing stock names the consumed lot on every OUT
+ * movement and never takes from an expired lot, which is left to PerishableWasteJob.
+ * An OUT without a lot, such as history recorded before lots existed, consumes the lots not
+ * yet expired at its creation in the same order; what it cannot cover is reported as
+ * shortage. Quantities are in the ingredient's single unit (see Ingredient.getStockValueAt).
+ */
+public class PerishableLotTracker {
+    private static final Set<CategoryEnum> PERISHABLE = EnumSet.of(CategoryEnum.VEGETABLE, CategoryEnum.DAIRY,
+            CategoryEnum.MARINE);
+    private static final double EPSILON = 1e-9;
+    private static final Comparator<StockLot> EXPIRY_ORDER = Comparator
+            .comparing(StockLot::getExpiryDatetime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(StockLot::getCreationDatetime)
+            .thenComparing(StockLot::getLotId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final Map<Integer, PriorityQueue<StockLot>> lotsByIngredient = new HashMap<>();
+    private final Map<Integer, StockLot> lotsById = new HashMap<>();
+    private final Map<Integer, Double> shortageByIngredient = new HashMap<>();
+
+    public static boolean isPerishable(CategoryEnum category) {
+        return PERISHABLE.contains(category);
+    }
+
+    /**
+     * IN movement of a delivery received at the given instant; it expires after the shelf
+     * life when the ingredient is perishable.
+     */
+    public static StockMovement receive(Ingredient ingredient, double quantity, Unit unit, Double unitPrice,
+                                        Instant at, Duration shelfLife) {
+        StockValue value = new StockValue();
+        value.setQuantity(quantity);
+        value.setUnit(unit);
+        StockMovement movement = new StockMovement();
+        movement.setType(MovementTypeEnum.IN);
+        movement.setValue(value);
+        movement.setUnitPrice(unitPrice);
+        movement.setCreationDatetime(at);
+        movement.setExpiryDatetime(isPerishable(ingredient.getCategory()) ? at.plus(shelfLife) : null);
+        return movement;
+    }
+
+    /**
+     * Replays the stock movements of every given ingredient, in time order.
+     */
+    public synchronized PerishableLotTracker load(List<Ingredient> ingredients) {
+        for (Ingredient ingredient : ingredients) {
+            if (ingredient.getStockMovementList() == null) {
+                continue;
+            }
+            List<StockMovement> movements = new ArrayList<>(ingredient.getStockMovementList());
+            movements.sort(Comparator.comparing(StockMovement::getCreationDatetime)
+                    .thenComparing(StockMovement::getType)
+                    .thenComparing(StockMovement::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+            for (StockMovement movement : movements) {
+                apply(ingredient.getId(), movement);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Applies a movement already saved: an IN opens a lot, an OUT consumes its lot or, without
+     * one, the lots in expiry order.
+     */
+    public synchronized void apply(Integer ingredientId, StockMovement movement) {
+        double quantity = movement.getValue().getQuantity();
+        if (movement.getType() == MovementTypeEnum.IN) {
+            StockLot lot = new StockLot(movement.getId(), ingredientId, quantity, movement.getValue().getUnit(),
+                    movement.getUnitPrice(), movement.getExpiryDatetime(), movement.getCreationDatetime());
+            lotsByIngredient.computeIfAbsent(ingredientId, key -> new PriorityQueue<>(EXPIRY_ORDER)).add(lot);
+            if (lot.getLotId() != null) {
+                lotsById.put(lot.getLotId(), lot);
+            }
+            return;
+        }
+        StockLot lot = movement.getLotId() == null ? null : lotsById.get(movement.getLotId());
+        if (lot != null) {
+            consume(lot, quantity);
+            return;
+        }
+        double missing = quantity;
+        PriorityQueue<StockLot> lots = lotsByIngredient.get(ingredientId);
+        if (lots != null) {
+            List<StockLot> expired = new ArrayList<>();
+            while (missing > EPSILON && !lots.isEmpty()) {
+                StockLot head = lots.peek();
+                if (head.getRemainingQuantity() <= EPSILON) {
+                    lots.poll();
+                } else if (isExpired(head, movement.getCreationDatetime())) {
+                    expired.add(lots.poll());
+                } else {
+                    double taken = Math.min(missing, head.getRemainingQuantity());
+                    consume(head, taken);
+                    missing -= taken;
+                }
+            }
+            lots.addAll(expired);
+        }
+        if (missing > EPSILON) {
+            shortageByIngredient.merge(ingredientId, missing, Double::sum);
+        }
+    }
+
+    /**
+     * OUT movements taking the quantity from the lots not expired at the given instant, one
+     * per lot consumed, soonest expiry first; a quantity beyond them is one more OUT without
+     * a lot. Nothing is applied: save the movements, then apply them.
+     */
+    public synchronized List<StockMovement> plan(Integer ingredientId, double quantity, Unit unit, Instant at) {
+        List<StockMovement> movements = new ArrayList<>();
+        double missing = quantity;
+        PriorityQueue<StockLot> lots = lotsByIngredient.get(ingredientId);
+        if (lots != null) {
+            List<StockLot> polled = new ArrayList<>();
+            while (missing > EPSILON && !lots.isEmpty()) {
+                StockLot head = lots.poll();
+                if (head.getRemainingQuantity() <= EPSILON) {
+                    continue;
+                }
+                polled.add(head);
+                if (!isExpired(head, at)) {
+                    double taken = Math.min(missing, head.getRemainingQuantity());
+                    movements.add(out(taken, head.getUnit(), at, head.getLotId()));
+                    missing -= taken;
+                }
+            }
+            lots.addAll(polled);
+        }
+        if (missing > EPSILON) {
+            movements.add(out(missing, unit, at, null));
+        }
+        return movements;
+    }
+
+    /**
+     * Plans, saves and applies the issue of a quantity of the ingredient; see plan.
+     */
+    public synchronized List<StockMovement> issue(StockRepository stockRepository, Integer ingredientId,
+                                                  double quantity, Unit unit, Instant at) {
+        List<StockMovement> movements = plan(ingredientId, quantity, unit, at);
+        stockRepository.saveStockMovements(ingredientId, movements);
+        for (StockMovement movement : movements) {
+            apply(ingredientId, movement);
+        }
+        return movements;
+    }
+
+    /**
+     * Lots with stock left not yet expired at now but expiring before now + window, soonest first.
+     */
+    public synchronized List<StockLot> expiringWithin(Duration window, Instant now) {
+        Instant end = now.plus(window);
+        List<StockLot> expiring = new ArrayList<>();
+        for (PriorityQueue<StockLot> lots : lotsByIngredient.values()) {
+            for (StockLot lot : headsExpiringBefore(lots, end)) {
+                if (lot.getExpiryDatetime().isAfter(now)) {
+                    expiring.add(lot);
+                }
+            }
+        }
+        expiring.sort(EXPIRY_ORDER);
+        return expiring;
+    }
+
+    /**
+     * Lots with stock left already expired at the given instant, by ingredient id.
+     */
+    public synchronized Map<Integer, List<StockLot>> expired(Instant now) {
+        Map<Integer, List<StockLot>> expiredByIngredient = new LinkedHashMap<>();
+        for (Map.Entry<Integer, PriorityQueue<StockLot>> entry : lotsByIngredient.entrySet()) {
+            List<StockLot> expired = headsExpiringBefore(entry.getValue(), now.plusNanos(1));
+            if (!expired.isEmpty()) {
+                expiredByIngredient.put(entry.getKey(), expired);
+            }
+        }
+        return expiredByIngredient;
+    }
+
+    public synchronized double getOnHand(Integer ingredientId) {
+        PriorityQueue<StockLot> lots = lotsByIngredient.get(ingredientId);
+        return lots == null ? 0 : lots.stream().mapToDouble(StockLot::getRemainingQuantity).sum();
+    }
+
+    /**
+     * Quantity taken out of the ingredient beyond its lots.
+     */
+    public synchronized double getShortage(Integer ingredientId) {
+        return shortageByIngredient.getOrDefault(ingredientId, 0.0);
+    }
+
+    static StockMovement out(double quantity, Unit unit, Instant at, Integer lotId) {
+        StockValue value = new StockValue();
+        value.setQuantity(quantity);
+        value.setUnit(unit);
+        StockMovement movement = new StockMovement();
+        movement.setType(MovementTypeEnum.OUT);
+        movement.setValue(value);
+        movement.setCreationDatetime(at);
+        movement.setLotId(lotId);
+        return movement;
+    }
+
+    // Non-empty lots expiring before end, read by polling the heads and putting them back.
+    private static List<StockLot> headsExpiringBefore(PriorityQueue<StockLot> lots, Instant end) {
+        List<StockLot> heads = new ArrayList<>();
+        List<StockLot> polled = new ArrayList<>();
+        while (!lots.isEmpty() && lots.peek().getExpiryDatetime() != null
+                && lots.peek().getExpiryDatetime().isBefore(end)) {
+            StockLot lot = lots.poll();
+            if (lot.getRemainingQuantity() > EPSILON) {
+                polled.add(lot);
+                heads.add(lot);
+            }
+        }
+        lots.addAll(polled);
+        return heads;
+    }
+
+    private void consume(StockLot lot, double quantity) {
+        lot.setRemainingQuantity(lot.getRemainingQuantity() - quantity);
+        if (lot.getRemainingQuantity() <= EPSILON && lot.getLotId() != null) {
+            // Left in its queue until it reaches the head.
+            lotsById.remove(lot.getLotId());
+        }
+    }
+
+    private static boolean isExpired(StockLot lot, Instant at) {
+        return lot.getExpiryDatetime() != null && !lot.getExpiryDatetime().isAfter(at);
+    }
+}
@@ -0,0 +1,68 @@
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the expired lots of a PerishableLotTracker off as waste on a schedule: every run
+ * saves one OUT movement per expired lot, naming the lot, at most batchSize movements per
+ * saveStockMovements call of an ingredient. A failed batch is retried on the next run.
+ */
+public class PerishableWasteJob implements AutoCloseable {
+    private final PerishableLotTracker tracker;
+    private final StockRepository stockRepository;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "perishable-waste-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PerishableWasteJob(PerishableLotTracker tracker, StockRepository stockRepository, int batchSize) {
+        this.tracker = tracker;
+        this.stockRepository = stockRepository;
+        this.batchSize = batchSize;
+    }
+
+    public PerishableWasteJob start(Duration period) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                writeOffExpired(Instant.now());
+            } catch (RuntimeException e) {
+                System.err.println("[WARN] Perishable waste job failed: " + e.getMessage());
+            }
+        }, 0, period.toMillis(), TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Writes off every lot expired at the given instant and returns the OUT movements saved.
+     */
+    public List<StockMovement> writeOffExpired(Instant now) {
+        List<StockMovement> saved = new ArrayList<>();
+        for (Map.Entry<Integer, List<StockLot>> entry : tracker.expired(now).entrySet()) {
+            List<StockLot> lots = entry.getValue();
+            for (int start = 0; start < lots.size(); start += batchSize) {
+                List<StockMovement> batch = new ArrayList<>();
+                for (StockLot lot : lots.subList(start, Math.min(lots.size(), start + batchSize))) {
+                    batch.add(PerishableLotTracker.out(lot.getRemainingQuantity(), lot.getUnit(), now, lot.getLotId()));
+                }
+                stockRepository.saveStockMovements(entry.getKey(), batch);
+                for (StockMovement movement : batch) {
+                    tracker.apply(entry.getKey(), movement);
+                }
+                saved.addAll(batch);
+            }
+        }
+        return saved;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,87 @@
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Lets another thread cancel the DataRetriever work running in a scope. DataRetriever
+ * reports every connection it works on to the scope of its thread; cancel() then asks the
+ * server to cancel the statement running on it, and makes later statements of the scope
+ * fail before they start.
+ */
+public class QueryCancellation {
+    private static final ThreadLocal<QueryCancellation> CURRENT = new ThreadLocal<>();
+
+    private Connection connection;
+    private boolean cancelled;
+    private boolean finished;
+
+    public <T> T run(Supplier<T> work) {
+        QueryCancellation outer = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            synchronized (this) {
+                finished = true;
+                connection = null;
+            }
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Cancels the statement running in the scope, if any, and every later one.
+     */
+    public synchronized void cancel() {
+        if (cancelled || finished) {
+            return;
+        }
+        cancelled = true;
+        if (connection != null) {
+            try {
+                connection.unwrap(PGConnection.class).cancelQuery();
+            } catch (SQLException e) {
+                System.err.println("[WARN] Could not cancel query: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Records the connection the current thread works on and returns the one it replaces,
+     * to be given back to untrack.
+     */
+    static Connection track(Connection connection) {
+        QueryCancellation current = CURRENT.get();
+        if (current == null) {
+            return null;
+        }
+        synchronized (current) {
+            if (current.cancelled) {
+                throw new CancellationException("Query cancelled");
+            }
+            Connection previous = current.connection;
+            current.connection = connection;
+            return previous;
+        }
+    }
+
+    static void untrack(Connection previous) {
+        QueryCancellation current = CURRENT.get();
+        if (current != null) {
+            synchronized (current) {
+                current.connection = previous;
+            }
+        }
+    }
+}
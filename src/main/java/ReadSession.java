@@ -0,0 +1,51 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * What a caller has written, so that its later reads see it even when they are served by
+ * a replica: the WAL position of its last committed write. Each thread has its own session
+ * unless one is bound with run, e.g. to share it across the calls of one client.
+ */
+public class ReadSession {
+    private static final ThreadLocal<ReadSession> THREAD_SESSION = ThreadLocal.withInitial(ReadSession::new);
+    private static final ThreadLocal<ReadSession> BOUND = new ThreadLocal<>();
+
+    private final AtomicLong lastWriteLsn = new AtomicLong();
+
+    public static <T> T run(ReadSession session, Supplier<T> work) {
+        ReadSession outer = BOUND.get();
+        BOUND.set(session);
+        try {
+            return work.get();
+        } finally {
+            if (outer == null) {
+                BOUND.remove();
+            } else {
+                BOUND.set(outer);
+            }
+        }
+    }
+
+    public static void run(ReadSession session, Runnable work) {
+        run(session, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public static ReadSession current() {
+        ReadSession bound = BOUND.get();
+        return bound != null ? bound : THREAD_SESSION.get();
+    }
+
+    /**
+     * WAL position, in bytes, a replica must have replayed to serve this session; 0 before any write.
+     */
+    public long getLastWriteLsn() {
+        return lastWriteLsn.get();
+    }
+
+    void wrote(long lsn) {
+        lastWriteLsn.accumulateAndGet(lsn, Math::max);
+    }
+}
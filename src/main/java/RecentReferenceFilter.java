@@ -0,0 +1,155 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers recently submitted order references: the last orders themselves in an LRU map,
+ * and many more references in a Bloom filter. A reference the filter has not seen is
+ * certainly new to this node; one it has seen may be a retry. The filter has two
+ * generations that rotate once the current one holds bloomCapacity references, so that its
+ * false positive rate stays bounded; it remembers at least the last bloomCapacity references.
+ * References are remembered per restaurant of the TenantContext, and orders are copied on
+ * the way in and out.
+ */
+public class RecentReferenceFilter {
+    private static final int HASH_COUNT = 7;
+
+    private final int recentCapacity;
+    private final int bloomCapacity;
+    private final Map<String, Order> recentOrders;
+    private long[] currentBits;
+    private long[] previousBits;
+    private int currentCount;
+
+    public RecentReferenceFilter() {
+        this(10_000, 1_000_000);
+    }
+
+    public RecentReferenceFilter(int recentCapacity, int bloomCapacity) {
+        this.recentCapacity = recentCapacity;
+        this.bloomCapacity = bloomCapacity;
+        this.recentOrders = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Order> eldest) {
+                return size() > RecentReferenceFilter.this.recentCapacity;
+            }
+        };
+        // About 10 bits per reference gives a 1% false positive rate with 7 hashes.
+        int words = Math.max(1, (int) Math.min(Integer.MAX_VALUE, (bloomCapacity * 10L + 63) / 64));
+        this.currentBits = new long[words];
+        this.previousBits = new long[words];
+    }
+
+    public synchronized boolean mightContain(String reference) {
+        String key = keyOf(reference);
+        return contains(currentBits, key) || contains(previousBits, key);
+    }
+
+    /**
+     * The order submitted with the reference, if it is among the recent ones.
+     */
+    public synchronized Order getRecent(String reference) {
+        Order order = recentOrders.get(keyOf(reference));
+        return order == null ? null : copyOrder(order);
+    }
+
+    public synchronized void remember(Order order) {
+        if (order.getReference() == null) {
+            return;
+        }
+        String key = keyOf(order.getReference());
+        recentOrders.put(key, copyOrder(order));
+        if (contains(currentBits, key)) {
+            return;
+        }
+        if (currentCount == bloomCapacity) {
+            long[] cleared = previousBits;
+            Arrays.fill(cleared, 0);
+            previousBits = currentBits;
+            currentBits = cleared;
+            currentCount = 0;
+        }
+        long bitCount = currentBits.length * 64L;
+        long hash1 = hash(key);
+        long hash2 = (hash1 >>> 32) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            currentBits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        currentCount++;
+    }
+
+    // Restaurant identifiers have no '/', so that no two (restaurant, reference) pairs share a key.
+    private static String keyOf(String reference) {
+        String tenant = TenantContext.current();
+        return (tenant == null ? "" : tenant) + '/' + reference;
+    }
+
+    private static Order copyOrder(Order order) {
+        Order copy = new Order();
+        copy.setId(order.getId());
+        copy.setReference(order.getReference());
+        copy.setCreationDatetime(order.getCreationDatetime());
+        copy.setInstallationDate(order.getInstallationDate());
+        copy.setDepartureDate(order.getDepartureDate());
+        if (order.getTable() != null) {
+            copy.setTable(new RestaurantTable(order.getTable().getId(), order.getTable().getNumber(),
+                    order.getTable().getCapacity()));
+        }
+        if (order.getDishOrderList() != null) {
+            List<DishOrder> dishOrders = new ArrayList<>();
+            for (DishOrder dishOrder : order.getDishOrderList()) {
+                DishOrder dishOrderCopy = new DishOrder();
+                dishOrderCopy.setId(dishOrder.getId());
+                dishOrderCopy.setDish(copyDish(dishOrder.getDish()));
+                dishOrderCopy.setQuantity(dishOrder.getQuantity());
+                dishOrders.add(dishOrderCopy);
+            }
+            copy.setDishOrderList(dishOrders);
+        }
+        return copy;
+    }
+
+    private static Dish copyDish(Dish dish) {
+        if (dish == null) {
+            return null;
+        }
+        Dish copy = new Dish();
+        copy.setId(dish.getId());
+        copy.setName(dish.getName());
+        copy.setDishType(dish.getDishType());
+        copy.setPrice(dish.getPrice());
+        copy.setDishIngredients(dish.getDishIngredients() == null ? null : new ArrayList<>(dish.getDishIngredients()));
+        return copy;
+    }
+
+    private static boolean contains(long[] bits, String reference) {
+        long bitCount = bits.length * 64L;
+        long hash1 = hash(reference);
+        long hash2 = (hash1 >>> 32) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a of the characters, finished with a murmur mix so both halves are usable.
+     */
+    private static long hash(String reference) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < reference.length(); i++) {
+            hash ^= reference.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,65 @@
+import java.time.Instant;
+
+/**
+ * Quantity of an ingredient to order now, in its stock unit, with the figures behind it.
+ */
+public class ReorderSuggestion {
+    private final Integer ingredientId;
+    private final double onHand;
+    private final double dailyConsumption;
+    private final double reorderPoint;
+    private final double quantity;
+    private final Instant stockOutAt;
+
+    public ReorderSuggestion(Integer ingredientId, double onHand, double dailyConsumption, double reorderPoint,
+                             double quantity, Instant stockOutAt) {
+        this.ingredientId = ingredientId;
+        this.onHand = onHand;
+        this.dailyConsumption = dailyConsumption;
+        this.reorderPoint = reorderPoint;
+        this.quantity = quantity;
+        this.stockOutAt = stockOutAt;
+    }
+
+    public Integer getIngredientId() {
+        return ingredientId;
+    }
+
+    public double getOnHand() {
+        return onHand;
+    }
+
+    /**
+     * Smoothed consumption of an average day, before day-of-week seasonality.
+     */
+    public double getDailyConsumption() {
+        return dailyConsumption;
+    }
+
+    public double getReorderPoint() {
+        return reorderPoint;
+    }
+
+    public double getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Projected instant the stock runs out at, or null beyond the forecast horizon.
+     */
+    public Instant getStockOutAt() {
+        return stockOutAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ReorderSuggestion{" +
+                "ingredientId=" + ingredientId +
+                ", onHand=" + onHand +
+                ", dailyConsumption=" + dailyConsumption +
+                ", reorderPoint=" + reorderPoint +
+                ", quantity=" + quantity +
+                ", stockOutAt=" + stockOutAt +
+                '}';
+    }
+}
@@ -0,0 +1,200 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DBConnection to a primary and its streaming replicas. Writes, and everything inside a
+ * UnitOfWork, go to the primary; read-only calls go to the replicas in turn, skipping those
+ * that are down or lag more than maxLag behind the primary, as measured by a probe every
+ * probeInterval. A replica serves the session of the caller only once it has replayed the
+ * session's last write, see ReadSession; otherwise the read goes to the primary.
+ * A replica that is not in recovery, like the primary itself, is taken as never lagging,
+ * which lets a single local database stand in for the replicas.
+ */
+public class ReplicatedDBConnection extends DBConnection implements AutoCloseable {
+    private static final String CURRENT_LSN_SQL = "select (pg_current_wal_lsn() - '0/0')::bigint";
+
+    private final DBConnection primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final ScheduledExecutorService probe = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-lag-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReplicatedDBConnection(DBConnection primary, List<DBConnection> replicas, Duration maxLag) {
+        super(primary.getUrl(), primary.getUser(), primary.getPassword());
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.maxLagMillis = maxLag.toMillis();
+    }
+
+    /**
+     * Probes the replicas once, then every probeInterval; until then every read goes to the primary.
+     */
+    public ReplicatedDBConnection start(Duration probeInterval) {
+        probeReplicas();
+        probe.scheduleWithFixedDelay(this::probeReplicas, probeInterval.toMillis(), probeInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getReadConnection() {
+        if (!replicas.isEmpty()) {
+            long requiredLsn = ReadSession.current().getLastWriteLsn();
+            int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (!replica.up || replica.lagMillis > maxLagMillis) {
+                    continue;
+                }
+                Connection connection = replica.connect(requiredLsn);
+                if (connection != null) {
+                    replicaReads.increment();
+                    return connection;
+                }
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Records the primary's WAL position in the caller's session, so that its next reads wait for it.
+     */
+    @Override
+    public void writeCommitted() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(CURRENT_LSN_SQL)) {
+            resultSet.next();
+            ReadSession.current().wrote(resultSet.getLong(1));
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[WARN] Failed to read the primary WAL position after a write: " + e.getMessage());
+        }
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    private void probeReplicas() {
+        long primaryLsn;
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(CURRENT_LSN_SQL)) {
+            resultSet.next();
+            primaryLsn = resultSet.getLong(1);
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[WARN] Replica lag probe cannot reach the primary: " + e.getMessage());
+            return;
+        }
+        for (Replica replica : replicas) {
+            replica.probe(primaryLsn);
+        }
+    }
+
+    @Override
+    public void close() {
+        probe.shutdownNow();
+    }
+
+    private static class Replica {
+        // Null outside of recovery, when the replica is not a streaming standby.
+        private static final String REPLAY_SQL = """
+                select (pg_last_wal_replay_lsn() - '0/0')::bigint,
+                       (extract(epoch from clock_timestamp() - pg_last_xact_replay_timestamp()) * 1000)::bigint""";
+
+        private final DBConnection dbConnection;
+        private volatile boolean up;
+        private volatile long replayedLsn;
+        private volatile long lagMillis;
+
+        private Replica(DBConnection dbConnection) {
+            this.dbConnection = dbConnection;
+        }
+
+        private void probe(long primaryLsn) {
+            try (Connection connection = dbConnection.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(REPLAY_SQL)) {
+                resultSet.next();
+                long replayed = resultSet.getLong(1);
+                if (resultSet.wasNull()) {
+                    replayedLsn = Long.MAX_VALUE;
+                    lagMillis = 0;
+                } else {
+                    replayedLsn = replayed;
+                    // An idle primary writes nothing new: the last replay time then says nothing.
+                    lagMillis = replayed >= primaryLsn ? 0 : resultSet.getLong(2);
+                }
+                up = true;
+            } catch (SQLException | RuntimeException e) {
+                if (up) {
+                    System.err.println("[WARN] Replica " + dbConnection.getUrl() + " is down: " + e.getMessage());
+                }
+                up = false;
+            }
+        }
+
+        /**
+         * Connection to the replica when it has replayed requiredLsn, null otherwise.
+         */
+        private Connection connect(long requiredLsn) {
+            Connection connection;
+            try {
+                connection = dbConnection.getConnection();
+            } catch (RuntimeException e) {
+                up = false;
+                return null;
+            }
+            if (requiredLsn <= replayedLsn) {
+                return connection;
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "select coalesce((pg_last_wal_replay_lsn() - '0/0')::bigint >= ?, true)")) {
+                statement.setLong(1, requiredLsn);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    if (resultSet.getBoolean(1)) {
+                        return connection;
+                    }
+                }
+            } catch (SQLException e) {
+                up = false;
+            }
+            try {
+                dbConnection.closeConnection(connection);
+            } catch (RuntimeException e) {
+                // Not usable anyway.
+            }
+            return null;
+        }
+    }
+}
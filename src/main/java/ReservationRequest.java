@@ -0,0 +1,63 @@
+import java.time.Instant;
+
+/**
+ * A party asking for a table over a time window, before any table is chosen.
+ */
+public class ReservationRequest {
+    private String reference;
+    private int partySize;
+    private Instant installationDate;
+    private Instant departureDate;
+
+    public ReservationRequest() {
+    }
+
+    public ReservationRequest(String reference, int partySize, Instant installationDate, Instant departureDate) {
+        this.reference = reference;
+        this.partySize = partySize;
+        this.installationDate = installationDate;
+        this.departureDate = departureDate;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public void setReference(String reference) {
+        this.reference = reference;
+    }
+
+    public int getPartySize() {
+        return partySize;
+    }
+
+    public void setPartySize(int partySize) {
+        this.partySize = partySize;
+    }
+
+    public Instant getInstallationDate() {
+        return installationDate;
+    }
+
+    public void setInstallationDate(Instant installationDate) {
+        this.installationDate = installationDate;
+    }
+
+    public Instant getDepartureDate() {
+        return departureDate;
+    }
+
+    public void setDepartureDate(Instant departureDate) {
+        this.departureDate = departureDate;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationRequest{" +
+                "reference='" + reference + '\'' +
+                ", partySize=" + partySize +
+                ", installationDate=" + installationDate +
+                ", departureDate=" + departureDate +
+                '}';
+    }
+}
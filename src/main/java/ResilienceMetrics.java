@@ -0,0 +1,79 @@
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a ResilientDataStore: calls, attempts, retries, failures by kind, and calls
+ * refused by the circuit breaker or a bulkhead.
+ */
+public class ResilienceMetrics {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final Map<SqlErrorClassifier.Kind, LongAdder> failuresByKind = new EnumMap<>(SqlErrorClassifier.Kind.class);
+    private final LongAdder circuitOpenings = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final Map<String, LongAdder> bulkheadRejections = new ConcurrentHashMap<>();
+
+    public ResilienceMetrics() {
+        for (SqlErrorClassifier.Kind kind : SqlErrorClassifier.Kind.values()) {
+            failuresByKind.put(kind, new LongAdder());
+        }
+    }
+
+    void call() {
+        calls.increment();
+    }
+
+    void succeeded() {
+        succeeded.increment();
+    }
+
+    void attempt() {
+        attempts.increment();
+    }
+
+    void retry() {
+        retries.increment();
+    }
+
+    void failed(SqlErrorClassifier.Kind kind) {
+        failuresByKind.get(kind).increment();
+    }
+
+    void circuitOpened() {
+        circuitOpenings.increment();
+    }
+
+    void shortCircuited() {
+        shortCircuited.increment();
+    }
+
+    void bulkheadRejected(String bulkhead) {
+        bulkheadRejections.computeIfAbsent(bulkhead, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Current value of every counter, by name; failures are counted per attempt.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("calls", calls.sum());
+        values.put("succeeded", succeeded.sum());
+        values.put("attempts", attempts.sum());
+        values.put("retries", retries.sum());
+        failuresByKind.forEach((kind, count) -> values.put("failures." + kind.name().toLowerCase(), count.sum()));
+        values.put("circuitOpenings", circuitOpenings.sum());
+        values.put("shortCircuited", shortCircuited.sum());
+        bulkheadRejections.forEach((bulkhead, count) -> values.put("bulkheadRejected." + bulkhead, count.sum()));
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "ResilienceMetrics" + snapshot();
+    }
+}
@@ -0,0 +1,267 @@
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * DataStore decorator that keeps database trouble from turning into retry storms. Reads and
+ * writes run in separate bulkheads behind one circuit breaker. A call failing with a
+ * transient or serialization error is retried with jittered backoff: reads and idempotent
+ * writes always, other writes only when the statement never reached the server or the
+ * whole transaction was rolled back. Inside a UnitOfWork nothing is retried, since the
+ * failure aborted the caller's transaction. Only transient errors count as failures for
+ * the circuit breaker: the other kinds are answers of a healthy database.
+ */
+public class ResilientDataStore implements DataStore {
+    private final DataStore delegate;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead readBulkhead;
+    private final Bulkhead writeBulkhead;
+    private final ResilienceMetrics metrics;
+
+    public ResilientDataStore(DataStore delegate) {
+        this(delegate, new ResilienceMetrics());
+    }
+
+    private ResilientDataStore(DataStore delegate, ResilienceMetrics metrics) {
+        this(delegate, RetryPolicy.defaults(), CircuitBreaker.defaults(metrics),
+                new Bulkhead("read", 16, Duration.ofMillis(500), metrics),
+                new Bulkhead("write", 8, Duration.ofMillis(500), metrics), metrics);
+    }
+
+    public ResilientDataStore(DataStore delegate, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker,
+                              Bulkhead readBulkhead, Bulkhead writeBulkhead, ResilienceMetrics metrics) {
+        this.delegate = delegate;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+        this.readBulkhead = readBulkhead;
+        this.writeBulkhead = writeBulkhead;
+        this.metrics = metrics;
+    }
+
+    public ResilienceMetrics getMetrics() {
+        return metrics;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public Order findOrderByReference(String reference) {
+        return read(() -> delegate.findOrderByReference(reference));
+    }
+
+    // Idempotent on the id or the reference; a new order without either is not retried.
+    @Override
+    public Order saveOrder(Order orderToSave) {
+        return write(orderToSave.getId() != null || orderToSave.getReference() != null, () -> delegate.saveOrder(orderToSave));
+    }
+
+    @Override
+    public OrderSubmission submitOrder(Order orderToSave) {
+        return write(orderToSave.getId() != null || orderToSave.getReference() != null, () -> delegate.submitOrder(orderToSave));
+    }
+
+    @Override
+    public Page<Order> findOrders(OrderFilter filter, Instant afterCreationDatetime, Integer afterId, int limit) {
+        return read(() -> delegate.findOrders(filter, afterCreationDatetime, afterId, limit));
+    }
+
+    @Override
+    public void addOrderListener(Consumer<Order> listener) {
+        delegate.addOrderListener(listener);
+    }
+
+    @Override
+    public Dish findDishById(Integer id) {
+        return read(() -> delegate.findDishById(id));
+    }
+
+    @Override
+    public Dish saveDish(Dish toSave) {
+        return write(toSave.getId() != null, () -> delegate.saveDish(toSave));
+    }
+
+    @Override
+    public List<Dish> findAllDishes() {
+        return read(delegate::findAllDishes);
+    }
+
+    @Override
+    public Page<Dish> findDishes(DishFilter filter, Integer afterId, int limit) {
+        return read(() -> delegate.findDishes(filter, afterId, limit));
+    }
+
+    @Override
+    public List<Dish> searchDishesByName(String query, int limit) {
+        return read(() -> delegate.searchDishesByName(query, limit));
+    }
+
+    @Override
+    public List<Dish> findDishesUpdatedSince(Instant since) {
+        return read(() -> delegate.findDishesUpdatedSince(since));
+    }
+
+    @Override
+    public Ingredient findIngredientById(Integer id) {
+        return read(() -> delegate.findIngredientById(id));
+    }
+
+    @Override
+    public Ingredient saveIngredient(Ingredient toSave) {
+        return write(toSave.getId() != null, () -> delegate.saveIngredient(toSave));
+    }
+
+    @Override
+    public List<Ingredient> createIngredients(List<Ingredient> newIngredients) {
+        return write(false, () -> delegate.createIngredients(newIngredients));
+    }
+
+    @Override
+    public List<Ingredient> findAllIngredients() {
+        return read(delegate::findAllIngredients);
+    }
+
+    @Override
+    public Page<Ingredient> findIngredients(IngredientFilter filter, Integer afterId, int limit) {
+        return read(() -> delegate.findIngredients(filter, afterId, limit));
+    }
+
+    @Override
+    public List<Ingredient> searchIngredientsByName(String query, int limit) {
+        return read(() -> delegate.searchIngredientsByName(query, limit));
+    }
+
+    @Override
+    public List<Ingredient> findIngredientsUpdatedSince(Instant since) {
+        return read(() -> delegate.findIngredientsUpdatedSince(since));
+    }
+
+    @Override
+    public Double findIngredientPriceAt(Integer ingredientId, Instant at) {
+        return read(() -> delegate.findIngredientPriceAt(ingredientId, at));
+    }
+
+    @Override
+    public List<IngredientPrice> findIngredientPriceHistory(List<Integer> ingredientIds, Instant from, Instant to) {
+        return read(() -> delegate.findIngredientPriceHistory(ingredientIds, from, to));
+    }
+
+    @Override
+    public List<StockMovement> findStockMovementsByIngredientId(Integer id) {
+        return read(() -> delegate.findStockMovementsByIngredientId(id));
+    }
+
+    @Override
+    public List<StockMovement> findStockMovementsByIngredientId(Integer id, Instant from, Instant to) {
+        return read(() -> delegate.findStockMovementsByIngredientId(id, from, to));
+    }
+
+    @Override
+    public Map<Integer, List<StockMovement>> findStockMovements(Instant from, Instant to) {
+        return read(() -> delegate.findStockMovements(from, to));
+    }
+
+    @Override
+    public List<StockLot> findExpiringLots(Instant from, Instant to) {
+        return read(() -> delegate.findExpiringLots(from, to));
+    }
+
+    // Ids are given to new movements before they are inserted, and existing ids are skipped.
+    @Override
+    public List<StockMovement> saveStockMovements(Integer ingredientId, List<StockMovement> stockMovements) {
+        return write(true, () -> delegate.saveStockMovements(ingredientId, stockMovements));
+    }
+
+    // Upserted on the table number.
+    @Override
+    public RestaurantTable saveTable(RestaurantTable table) {
+        return write(true, () -> delegate.saveTable(table));
+    }
+
+    @Override
+    public List<RestaurantTable> findAllTables() {
+        return read(delegate::findAllTables);
+    }
+
+    @Override
+    public List<RestaurantTable> findAvailableTables(Instant from, Instant to) {
+        return read(() -> delegate.findAvailableTables(from, to));
+    }
+
+    @Override
+    public List<Order> findTableBookings(Instant from, Instant to) {
+        return read(() -> delegate.findTableBookings(from, to));
+    }
+
+    @Override
+    public List<Order> findTableBookingsUpdatedSince(Instant since) {
+        return read(() -> delegate.findTableBookingsUpdatedSince(since));
+    }
+
+    private <T> T read(Supplier<T> call) {
+        return execute(readBulkhead, true, call);
+    }
+
+    private <T> T write(boolean idempotent, Supplier<T> call) {
+        return execute(writeBulkhead, idempotent, call);
+    }
+
+    private <T> T execute(Bulkhead bulkhead, boolean idempotent, Supplier<T> call) {
+        metrics.call();
+        boolean inUnitOfWork = UnitOfWork.isOpen();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = bulkhead.execute(() -> guarded(call));
+                metrics.succeeded();
+                return result;
+            } catch (RuntimeException e) {
+                if (inUnitOfWork || attempt == retryPolicy.getMaxAttempts() || !isRetryable(e, idempotent)) {
+                    throw e;
+                }
+            }
+            metrics.retry();
+            try {
+                Thread.sleep(retryPolicy.delayBeforeRetry(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private <T> T guarded(Supplier<T> call) {
+        long ticket = circuitBreaker.tryAcquire();
+        if (ticket < 0) {
+            metrics.shortCircuited();
+            throw new DatabaseUnavailableException("The database circuit breaker is open");
+        }
+        metrics.attempt();
+        try {
+            T result = call.get();
+            circuitBreaker.onResult(ticket, false);
+            return result;
+        } catch (RuntimeException e) {
+            SqlErrorClassifier.Kind kind = SqlErrorClassifier.classify(e);
+            metrics.failed(kind);
+            circuitBreaker.onResult(ticket, kind == SqlErrorClassifier.Kind.TRANSIENT);
+            throw e;
+        }
+    }
+
+    private static boolean isRetryable(RuntimeException failure, boolean idempotent) {
+        if (failure instanceof DatabaseUnavailableException) {
+            // Refused to shed load: retrying here would defeat it.
+            return false;
+        }
+        return switch (SqlErrorClassifier.classify(failure)) {
+            case SERIALIZATION -> true;
+            case TRANSIENT -> idempotent || SqlErrorClassifier.isConnectFailure(failure);
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,366 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Read-only HTTP API over a DataStore, on the JDK HttpServer with one virtual thread per
+ * exchange. Data is loaded before the response starts, so failures still get a proper
+ * status, then streamed as JSON straight into the response, gzip-compressed when the client
+ * accepts it. Responses are chunked, which keeps HTTP/1.1 connections alive.
+ *
+ * GET /orders?limit&afterCreationDatetime&afterId&tableId, /orders/{reference}
+ * GET /dishes?limit&afterId&dishType&namePrefix, /dishes/{id}
+ * GET /ingredients?limit&afterId&category&namePrefix, /ingredients/{id},
+ *     /ingredients/{id}/stock?at&from&to
+ * GET /tables, /tables/available?from&to
+ */
+public class RestaurantHttpServer implements AutoCloseable {
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final DataStore dataStore;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public RestaurantHttpServer(DataStore dataStore, InetSocketAddress address) {
+        this.dataStore = dataStore;
+        try {
+            this.server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot listen on " + address, e);
+        }
+        server.setExecutor(executor);
+        server.createContext("/orders", handler(this::orders));
+        server.createContext("/dishes", handler(this::dishes));
+        server.createContext("/ingredients", handler(this::ingredients));
+        server.createContext("/tables", handler(this::tables));
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        DataStore dataStore = DataStoreFactory.fromEnvironment();
+        if (dataStore instanceof DataRetriever) {
+            new MigrationRunner().migrate();
+            dataStore = new ResilientDataStore(dataStore);
+        }
+        RestaurantHttpServer httpServer = new RestaurantHttpServer(dataStore, new InetSocketAddress(port)).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(httpServer::close));
+        System.out.println("[INFO] Listening on http://localhost:" + httpServer.getPort());
+    }
+
+    public RestaurantHttpServer start() {
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    private Body orders(Request request) {
+        if (request.segments.length == 2) {
+            Order order = dataStore.findOrderByReference(request.segments[1]);
+            return json -> RestaurantJson.writeOrder(json, order);
+        }
+        request.expectSegments(1);
+        OrderFilter filter = new OrderFilter();
+        filter.setTableId(request.intParam("tableId"));
+        Instant afterCreationDatetime = request.instantParam("afterCreationDatetime");
+        Integer afterId = request.intParam("afterId");
+        if ((afterCreationDatetime == null) != (afterId == null)) {
+            throw new BadRequestException("afterCreationDatetime and afterId must be given together");
+        }
+        Page<Order> page = dataStore.findOrders(filter, afterCreationDatetime, afterId, request.limit());
+        return json -> {
+            json.beginObject().name("items");
+            RestaurantJson.writeArray(json, page.getItems(), RestaurantJson::writeOrder);
+            json.name("hasMore").value(page.hasMore());
+            if (page.hasMore()) {
+                Order last = page.getLastItem();
+                json.name("next").beginObject()
+                        .name("afterCreationDatetime").value(last.getCreationDatetime())
+                        .name("afterId").value(last.getId())
+                        .endObject();
+            }
+            json.endObject();
+        };
+    }
+
+    private Body dishes(Request request) {
+        if (request.segments.length == 2) {
+            Dish dish = dataStore.findDishById(request.intSegment(1));
+            return json -> RestaurantJson.writeDish(json, dish);
+        }
+        request.expectSegments(1);
+        DishFilter filter = new DishFilter();
+        String dishType = request.param("dishType");
+        filter.setDishType(dishType == null ? null : request.enumParam(DishTypeEnum.class, "dishType", dishType));
+        filter.setNamePrefix(request.param("namePrefix"));
+        Page<Dish> page = dataStore.findDishes(filter, request.intParam("afterId"), request.limit());
+        return json -> writePage(json, page, RestaurantJson::writeDish, Dish::getId);
+    }
+
+    private Body ingredients(Request request) {
+        if (request.segments.length == 3 && request.segments[2].equals("stock")) {
+            Integer id = request.intSegment(1);
+            Instant at = request.instantParam("at") != null ? request.instantParam("at") : Instant.now();
+            Instant from = request.instantParam("from");
+            Instant to = request.instantParam("to");
+            Ingredient ingredient = dataStore.findIngredientById(id);
+            StockValue stockValue;
+            if (ingredient.getStockMovementList() == null || ingredient.getStockMovementList().isEmpty()) {
+                // getStockValueAt cannot tell the unit of an ingredient that never moved.
+                stockValue = new StockValue();
+                stockValue.setQuantity(0.0);
+            } else {
+                stockValue = ingredient.getStockValueAt(at);
+            }
+            List<StockMovement> movements = from == null && to == null
+                    ? List.of()
+                    : dataStore.findStockMovementsByIngredientId(id, from, to);
+            return json -> {
+                json.beginObject()
+                        .name("ingredientId").value(id)
+                        .name("at").value(at)
+                        .name("quantity").value(stockValue == null ? null : stockValue.getQuantity())
+                        .name("unit").value(stockValue == null ? null : stockValue.getUnit())
+                        .name("movements");
+                RestaurantJson.writeArray(json, movements, RestaurantJson::writeStockMovement);
+                json.endObject();
+            };
+        }
+        if (request.segments.length == 2) {
+            Ingredient ingredient = dataStore.findIngredientById(request.intSegment(1));
+            return json -> RestaurantJson.writeIngredient(json, ingredient);
+        }
+        request.expectSegments(1);
+        IngredientFilter filter = new IngredientFilter();
+        String category = request.param("category");
+        filter.setCategory(category == null ? null : request.enumParam(CategoryEnum.class, "category", category));
+        filter.setNamePrefix(request.param("namePrefix"));
+        Page<Ingredient> page = dataStore.findIngredients(filter, request.intParam("afterId"), request.limit());
+        return json -> writePage(json, page, RestaurantJson::writeIngredient, Ingredient::getId);
+    }
+
+    private Body tables(Request request) {
+        if (request.segments.length == 2 && request.segments[1].equals("available")) {
+            Instant from = request.requiredInstantParam("from");
+            Instant to = request.requiredInstantParam("to");
+            if (!from.isBefore(to)) {
+                throw new BadRequestException("from must be before to");
+            }
+            List<RestaurantTable> tables = dataStore.findAvailableTables(from, to);
+            return json -> RestaurantJson.writeArray(json, tables, RestaurantJson::writeTable);
+        }
+        request.expectSegments(1);
+        List<RestaurantTable> tables = dataStore.findAllTables();
+        return json -> RestaurantJson.writeArray(json, tables, RestaurantJson::writeTable);
+    }
+
+    private static <T> void writePage(JsonWriter json, Page<T> page, RestaurantJson.EntityWriter<T> writer,
+                                      Function<T, Integer> idOf) throws IOException {
+        json.beginObject().name("items");
+        RestaurantJson.writeArray(json, page.getItems(), writer);
+        json.name("hasMore").value(page.hasMore());
+        if (page.hasMore()) {
+            json.name("next").beginObject().name("afterId").value(idOf.apply(page.getLastItem())).endObject();
+        }
+        json.endObject();
+    }
+
+    private HttpHandler handler(Route route) {
+        return exchange -> {
+            try (exchange) {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    respond(exchange, 405, error("Only GET is supported"));
+                    return;
+                }
+                Body body;
+                try {
+                    body = route.handle(new Request(exchange));
+                } catch (BadRequestException e) {
+                    respond(exchange, 400, error(e.getMessage()));
+                    return;
+                } catch (NotFoundException e) {
+                    respond(exchange, 404, error(e.getMessage()));
+                    return;
+                } catch (DatabaseUnavailableException e) {
+                    exchange.getResponseHeaders().set("Retry-After", "5");
+                    respond(exchange, 503, error(e.getMessage()));
+                    return;
+                } catch (RuntimeException e) {
+                    System.err.println("[WARN] " + exchange.getRequestURI() + " failed: " + e);
+                    respond(exchange, 500, error("Internal error"));
+                    return;
+                }
+                respond(exchange, 200, body);
+            } catch (IOException e) {
+                // The client went away mid-response.
+            }
+        };
+    }
+
+    private static void respond(HttpExchange exchange, int status, Body body) throws IOException {
+        boolean gzip = acceptsGzip(exchange);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        headers.set("Vary", "Accept-Encoding");
+        if (gzip) {
+            headers.set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, 0);
+        OutputStream out = exchange.getResponseBody();
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        try (JsonWriter json = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE))) {
+            body.write(json);
+        }
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        for (String value : exchange.getRequestHeaders().getOrDefault("Accept-Encoding", List.of())) {
+            for (String encoding : value.split(",")) {
+                String[] parts = encoding.trim().split(";");
+                if (parts[0].trim().equalsIgnoreCase("gzip")
+                        && !(parts.length > 1 && parts[1].replace(" ", "").equals("q=0"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Body error(String message) {
+        return json -> json.beginObject().name("error").value(message).endObject();
+    }
+
+    private interface Route {
+        Body handle(Request request);
+    }
+
+    private interface Body {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    private static class BadRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Path segments below the root and decoded query parameters of an exchange.
+     */
+    private static class Request {
+        private final String[] segments;
+        private final Map<String, String> params = new HashMap<>();
+
+        Request(HttpExchange exchange) {
+            String path = exchange.getRequestURI().getPath();
+            this.segments = path.replaceAll("^/+|/+$", "").split("/+");
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String pair : query.split("&")) {
+                    int equals = pair.indexOf('=');
+                    if (equals > 0) {
+                        params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                                URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+
+        void expectSegments(int count) {
+            if (segments.length != count) {
+                throw new NotFoundException("Resource not found /" + String.join("/", segments));
+            }
+        }
+
+        String param(String name) {
+            String value = params.get(name);
+            return value == null || value.isBlank() ? null : value;
+        }
+
+        Integer intSegment(int index) {
+            try {
+                return Integer.parseInt(segments[index]);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Expected a number instead of " + segments[index]);
+            }
+        }
+
+        Integer intParam(String name) {
+            String value = param(name);
+            try {
+                return value == null ? null : Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException(name + " must be a number");
+            }
+        }
+
+        Instant instantParam(String name) {
+            String value = param(name);
+            try {
+                return value == null ? null : Instant.parse(value);
+            } catch (DateTimeParseException e) {
+                throw new BadRequestException(name + " must be an ISO-8601 instant");
+            }
+        }
+
+        Instant requiredInstantParam(String name) {
+            Instant value = instantParam(name);
+            if (value == null) {
+                throw new BadRequestException(name + " is mandatory");
+            }
+            return value;
+        }
+
+        <E extends Enum<E>> E enumParam(Class<E> type, String name, String value) {
+            try {
+                return Enum.valueOf(type, value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(name + " must be one of " + List.of(type.getEnumConstants()));
+            }
+        }
+
+        int limit() {
+            Integer limit = intParam("limit");
+            if (limit == null) {
+                return DEFAULT_LIMIT;
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new BadRequestException("limit must be between 1 and " + MAX_LIMIT);
+            }
+            return limit;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * JSON shapes of the entities served over HTTP, written field by field. Nested dishes of an
+ * order are summarised, and costs and stock are computed once per entity written, never
+ * through toString.
+ */
+public class RestaurantJson {
+
+    static void writeOrder(JsonWriter json, Order order) throws IOException {
+        json.beginObject()
+                .name("id").value(order.getId())
+                .name("reference").value(order.getReference())
+                .name("creationDatetime").value(order.getCreationDatetime())
+                .name("installationDatetime").value(order.getInstallationDate())
+                .name("departureDatetime").value(order.getDepartureDate());
+        json.name("table");
+        if (order.getTable() == null) {
+            json.nullValue();
+        } else {
+            writeTable(json, order.getTable());
+        }
+        json.name("dishOrders").beginArray();
+        if (order.getDishOrderList() != null) {
+            for (DishOrder dishOrder : order.getDishOrderList()) {
+                json.beginObject()
+                        .name("id").value(dishOrder.getId())
+                        .name("quantity").value(dishOrder.getQuantity())
+                        .name("dish");
+                writeDishSummary(json, dishOrder.getDish());
+                json.endObject();
+            }
+        }
+        json.endArray().endObject();
+    }
+
+    static void writeDish(JsonWriter json, Dish dish) throws IOException {
+        json.beginObject()
+                .name("id").value(dish.getId())
+                .name("name").value(dish.getName())
+                .name("dishType").value(dish.getDishType())
+                .name("price").value(dish.getPrice());
+        double cost = 0;
+        boolean costKnown = true;
+        json.name("ingredients").beginArray();
+        if (dish.getDishIngredients() != null) {
+            for (DishIngredient dishIngredient : dish.getDishIngredients()) {
+                json.beginObject()
+                        .name("quantity").value(dishIngredient.getQuantity())
+                        .name("unit").value(dishIngredient.getUnit())
+                        .name("ingredient");
+                writeIngredient(json, dishIngredient.getIngredient());
+                json.endObject();
+                if (dishIngredient.getQuantity() == null || dishIngredient.getIngredient().getPrice() == null) {
+                    costKnown = false;
+                } else {
+                    cost += dishIngredient.getQuantity() * dishIngredient.getIngredient().getPrice();
+                }
+            }
+        }
+        json.endArray()
+                .name("cost").value(costKnown ? cost : null)
+                .name("grossMargin").value(costKnown && dish.getPrice() != null ? dish.getPrice() - cost : null)
+                .endObject();
+    }
+
+    static void writeDishSummary(JsonWriter json, Dish dish) throws IOException {
+        json.beginObject()
+                .name("id").value(dish.getId())
+                .name("name").value(dish.getName())
+                .name("dishType").value(dish.getDishType())
+                .name("price").value(dish.getPrice())
+                .endObject();
+    }
+
+    static void writeIngredient(JsonWriter json, Ingredient ingredient) throws IOException {
+        json.beginObject()
+                .name("id").value(ingredient.getId())
+                .name("name").value(ingredient.getName())
+                .name("category").value(ingredient.getCategory())
+                .name("price").value(ingredient.getPrice())
+                .endObject();
+    }
+
+    static void writeStockMovement(JsonWriter json, StockMovement stockMovement) throws IOException {
+        json.beginObject()
+                .name("id").value(stockMovement.getId())
+                .name("type").value(stockMovement.getType())
+                .name("quantity").value(stockMovement.getValue().getQuantity())
+                .name("unit").value(stockMovement.getValue().getUnit())
+                .name("unitPrice").value(stockMovement.getUnitPrice())
+                .name("creationDatetime").value(stockMovement.getCreationDatetime())
+                .name("expiryDatetime").value(stockMovement.getExpiryDatetime())
+                .name("lotId").value(stockMovement.getLotId())
+                .endObject();
+    }
+
+    static void writeTable(JsonWriter json, RestaurantTable table) throws IOException {
+        json.beginObject()
+                .name("id").value(table.getId())
+                .name("number").value(table.getNumber())
+                .name("capacity").value(table.getCapacity())
+                .endObject();
+    }
+
+    static <T> void writeArray(JsonWriter json, List<T> items, EntityWriter<T> writer) throws IOException {
+        json.beginArray();
+        for (T item : items) {
+            writer.write(json, item);
+        }
+        json.endArray();
+    }
+
+    interface EntityWriter<T> {
+        void write(JsonWriter json, T entity) throws IOException;
+    }
+}
@@ -0,0 +1,372 @@
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Reproducible load generator for a full restaurant service, on the engine chosen by
+ * DATA_ENGINE. Sets up its own tables, ingredients and dishes, then lets concurrent waiters
+ * on virtual threads place orders, issue and receive stock and read the dashboards.
+ * Each waiter draws its operations from its own Random seeded from the simulation seed,
+ * so two runs with the same settings send the same workload; only the interleaving differs.
+ * Latencies include the wait for one of the maxConnections slots, since every JDBC call
+ * opens its own connection.
+ * Settings are given as key=value arguments, see Settings for names and defaults.
+ */
+public class RestaurantSimulation {
+    private static final int TABLE_NUMBER_BASE = 10_000;
+    private static final int SERVICE_SLOTS = 48;
+    private static final long SLOT_SECONDS = 15 * 60;
+
+    enum Operation {
+        PLACE_ORDER(30), KITCHEN_OUT(25), DELIVERY_IN(5), AVAILABLE_TABLES(25), STOCK_READ(15);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private final DataStore dataStore;
+    private final Settings settings;
+    private final Semaphore connections;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final Instant serviceStart;
+    private List<RestaurantTable> tables;
+    private List<Ingredient> ingredients;
+    private List<Dish> dishes;
+
+    public RestaurantSimulation(DataStore dataStore, Settings settings) {
+        this.dataStore = dataStore;
+        this.settings = settings;
+        this.connections = new Semaphore(settings.maxConnections);
+        // A service day far enough ahead not to meet real bookings.
+        this.serviceStart = Instant.now().truncatedTo(ChronoUnit.DAYS).plus(settings.daysAhead, ChronoUnit.DAYS)
+                .plus(11, ChronoUnit.HOURS);
+    }
+
+    public static void main(String[] args) {
+        Settings settings = Settings.parse(args);
+        DataStore dataStore = DataStoreFactory.fromEnvironment();
+        if (dataStore instanceof DataRetriever) {
+            new MigrationRunner().migrate();
+        }
+        RestaurantSimulation simulation = new RestaurantSimulation(dataStore, settings);
+        System.out.println("=== Restaurant simulation: " + settings + " ===");
+        simulation.setUp();
+        simulation.run().print();
+    }
+
+    public void setUp() {
+        Random random = new Random(settings.seed);
+        tables = new ArrayList<>(settings.tables);
+        for (int i = 0; i < settings.tables; i++) {
+            tables.add(dataStore.saveTable(new RestaurantTable(null, TABLE_NUMBER_BASE + i, 2 + 2 * random.nextInt(4))));
+        }
+
+        List<Ingredient> newIngredients = new ArrayList<>(settings.ingredients);
+        CategoryEnum[] categories = CategoryEnum.values();
+        for (int i = 0; i < settings.ingredients; i++) {
+            newIngredients.add(new Ingredient(null, "Simulation " + runId + " ingredient " + i,
+                    categories[random.nextInt(categories.length)], 100.0 + random.nextInt(5000), new ArrayList<>()));
+        }
+        ingredients = dataStore.createIngredients(newIngredients);
+        Instant stockedAt = Instant.now();
+        for (Ingredient ingredient : ingredients) {
+            dataStore.saveStockMovements(ingredient.getId(),
+                    List.of(movement(MovementTypeEnum.IN, 50 + random.nextInt(50), ingredient.getPrice(), stockedAt)));
+        }
+
+        dishes = new ArrayList<>(settings.dishes);
+        DishTypeEnum[] dishTypes = DishTypeEnum.values();
+        for (int i = 0; i < settings.dishes; i++) {
+            Dish dish = new Dish();
+            dish.setName("Simulation " + runId + " dish " + i);
+            dish.setDishType(dishTypes[random.nextInt(dishTypes.length)]);
+            dish.setPrice(2_000.0 + random.nextInt(20_000));
+            List<DishIngredient> dishIngredients = new ArrayList<>();
+            int ingredientCount = Math.min(ingredients.size(), 2 + random.nextInt(4));
+            int first = random.nextInt(ingredients.size());
+            for (int j = 0; j < ingredientCount; j++) {
+                DishIngredient dishIngredient = new DishIngredient();
+                dishIngredient.setIngredient(ingredients.get((first + j) % ingredients.size()));
+                dishIngredient.setQuantity(Math.round(random.nextDouble() * 50) / 100.0 + 0.05);
+                dishIngredient.setUnit(Unit.KG);
+                dishIngredients.add(dishIngredient);
+            }
+            dish.setDishIngredients(dishIngredients);
+            dishes.add(dataStore.saveDish(dish));
+        }
+    }
+
+    public Report run() {
+        List<Map<Operation, OperationStats>> perWaiter = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Map<Operation, OperationStats>>> futures = new ArrayList<>();
+            for (int waiter = 0; waiter < settings.waiters; waiter++) {
+                int waiterIndex = waiter;
+                futures.add(executor.submit(() -> serve(waiterIndex)));
+            }
+            for (Future<Map<Operation, OperationStats>> future : futures) {
+                perWaiter.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Simulation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Simulation failed", e.getCause());
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        Map<Operation, OperationStats> merged = new EnumMap<>(Operation.class);
+        for (Map<Operation, OperationStats> stats : perWaiter) {
+            stats.forEach((operation, operationStats) ->
+                    merged.computeIfAbsent(operation, key -> new OperationStats()).addAll(operationStats));
+        }
+        return new Report(merged, elapsedNanos);
+    }
+
+    private Map<Operation, OperationStats> serve(int waiter) {
+        Random random = new Random(settings.seed * 1_000_003L + waiter);
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (int i = 0; i < settings.operationsPerWaiter; i++) {
+            Operation operation = pick(random);
+            Runnable call = prepare(operation, random, waiter, i);
+            OperationStats operationStats = stats.computeIfAbsent(operation, key -> new OperationStats());
+            long start = System.nanoTime();
+            try {
+                connections.acquire();
+                try {
+                    call.run();
+                } finally {
+                    connections.release();
+                }
+                operationStats.record(System.nanoTime() - start, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                operationStats.record(System.nanoTime() - start, e);
+            }
+        }
+        return stats;
+    }
+
+    private static Operation pick(Random random) {
+        int total = 0;
+        for (Operation operation : Operation.values()) {
+            total += operation.weight;
+        }
+        int drawn = random.nextInt(total);
+        for (Operation operation : Operation.values()) {
+            drawn -= operation.weight;
+            if (drawn < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Draws every random input of the operation up front, so the random sequence of a
+     * waiter does not depend on how the calls turn out.
+     */
+    private Runnable prepare(Operation operation, Random random, int waiter, int sequence) {
+        return switch (operation) {
+            case PLACE_ORDER -> {
+                Order order = new Order();
+                order.setReference("SIM-" + runId + "-" + waiter + "-" + sequence);
+                order.setCreationDatetime(Instant.now());
+                order.setTable(tables.get(random.nextInt(tables.size())));
+                Instant installation = serviceStart.plusSeconds(SLOT_SECONDS * random.nextInt(SERVICE_SLOTS));
+                order.setInstallationDate(installation);
+                order.setDepartureDate(installation.plusSeconds(SLOT_SECONDS * (2 + random.nextInt(6))));
+                List<DishOrder> dishOrders = new ArrayList<>();
+                int dishCount = 1 + random.nextInt(4);
+                for (int i = 0; i < dishCount; i++) {
+                    DishOrder dishOrder = new DishOrder();
+                    dishOrder.setDish(dishes.get(random.nextInt(dishes.size())));
+                    dishOrder.setQuantity(1 + random.nextInt(3));
+                    dishOrders.add(dishOrder);
+                }
+                order.setDishOrderList(dishOrders);
+                yield () -> dataStore.saveOrder(order);
+            }
+            case KITCHEN_OUT -> {
+                Ingredient ingredient = ingredients.get(random.nextInt(ingredients.size()));
+                double quantity = Math.round(random.nextDouble() * 200) / 100.0 + 0.01;
+                yield () -> dataStore.saveStockMovements(ingredient.getId(),
+                        List.of(movement(MovementTypeEnum.OUT, quantity, null, Instant.now())));
+            }
+            case DELIVERY_IN -> {
+                Ingredient ingredient = ingredients.get(random.nextInt(ingredients.size()));
+                double quantity = 10 + random.nextInt(40);
+                double unitPrice = Math.round(ingredient.getPrice() * (0.9 + 0.2 * random.nextDouble()) * 100) / 100.0;
+                yield () -> dataStore.saveStockMovements(ingredient.getId(),
+                        List.of(movement(MovementTypeEnum.IN, quantity, unitPrice, Instant.now())));
+            }
+            case AVAILABLE_TABLES -> {
+                Instant from = serviceStart.plusSeconds(SLOT_SECONDS * random.nextInt(SERVICE_SLOTS));
+                Instant to = from.plusSeconds(SLOT_SECONDS * (2 + random.nextInt(6)));
+                yield () -> dataStore.findAvailableTables(from, to);
+            }
+            case STOCK_READ -> {
+                Integer ingredientId = ingredients.get(random.nextInt(ingredients.size())).getId();
+                yield () -> dataStore.findIngredientById(ingredientId).getStockValueAt(Instant.now());
+            }
+        };
+    }
+
+    private static StockMovement movement(MovementTypeEnum type, double quantity, Double unitPrice, Instant at) {
+        StockValue stockValue = new StockValue();
+        stockValue.setQuantity(quantity);
+        stockValue.setUnit(Unit.KG);
+        StockMovement stockMovement = new StockMovement();
+        stockMovement.setType(type);
+        stockMovement.setValue(stockValue);
+        stockMovement.setUnitPrice(unitPrice);
+        stockMovement.setCreationDatetime(at);
+        return stockMovement;
+    }
+
+    /**
+     * Simulation settings, all optional: tables, dishes, ingredients, waiters, operations
+     * (per waiter), seed, maxConnections and daysAhead.
+     */
+    public static class Settings {
+        private int tables = 40;
+        private int dishes = 60;
+        private int ingredients = 200;
+        private int waiters = 50;
+        private int operationsPerWaiter = 200;
+        private long seed = 42;
+        private int maxConnections = 20;
+        private int daysAhead = 400;
+
+        public static Settings parse(String[] args) {
+            Settings settings = new Settings();
+            for (String arg : args) {
+                String[] keyValue = arg.split("=", 2);
+                if (keyValue.length != 2) {
+                    throw new IllegalArgumentException("Expected key=value, got " + arg);
+                }
+                String value = keyValue[1].trim();
+                switch (keyValue[0].trim()) {
+                    case "tables" -> settings.tables = Integer.parseInt(value);
+                    case "dishes" -> settings.dishes = Integer.parseInt(value);
+                    case "ingredients" -> settings.ingredients = Integer.parseInt(value);
+                    case "waiters" -> settings.waiters = Integer.parseInt(value);
+                    case "operations" -> settings.operationsPerWaiter = Integer.parseInt(value);
+                    case "seed" -> settings.seed = Long.parseLong(value);
+                    case "maxConnections" -> settings.maxConnections = Integer.parseInt(value);
+                    case "daysAhead" -> settings.daysAhead = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("Unknown setting " + keyValue[0]);
+                }
+            }
+            if (settings.tables < 1 || settings.dishes < 1 || settings.ingredients < 1 || settings.waiters < 1
+                    || settings.maxConnections < 1) {
+                throw new IllegalArgumentException("tables, dishes, ingredients, waiters and maxConnections must be positive");
+            }
+            return settings;
+        }
+
+        @Override
+        public String toString() {
+            return tables + " tables, " + dishes + " dishes, " + ingredients + " ingredients, " + waiters
+                    + " waiters x " + operationsPerWaiter + " operations, seed " + seed
+                    + ", " + maxConnections + " connections";
+        }
+    }
+
+    /**
+     * Latencies and errors of one operation; each waiter fills its own, merged at the end.
+     */
+    static class OperationStats {
+        private long[] latencies = new long[64];
+        private int count;
+        private int errors;
+        private String firstError;
+
+        void record(long latencyNanos, RuntimeException error) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if (error != null) {
+                errors++;
+                if (firstError == null) {
+                    firstError = error.getMessage();
+                }
+            }
+        }
+
+        void addAll(OperationStats other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            errors += other.errors;
+            if (firstError == null) {
+                firstError = other.firstError;
+            }
+        }
+
+        /**
+         * Nearest-rank percentile, in nanoseconds; sorts the latencies in place.
+         */
+        long percentile(double percent) {
+            if (count == 0) {
+                return 0;
+            }
+            Arrays.sort(latencies, 0, count);
+            int rank = (int) Math.ceil(percent / 100 * count);
+            return latencies[Math.max(0, rank - 1)];
+        }
+    }
+
+    public static class Report {
+        private final Map<Operation, OperationStats> statsByOperation;
+        private final long elapsedNanos;
+
+        Report(Map<Operation, OperationStats> statsByOperation, long elapsedNanos) {
+            this.statsByOperation = statsByOperation;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public void print() {
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            int total = 0;
+            int errors = 0;
+            System.out.printf("%-17s %8s %10s %9s %9s %9s %8s%n",
+                    "operation", "count", "ops/s", "p50 ms", "p99 ms", "max ms", "errors");
+            for (Map.Entry<Operation, OperationStats> entry : statsByOperation.entrySet()) {
+                OperationStats stats = entry.getValue();
+                total += stats.count;
+                errors += stats.errors;
+                System.out.printf("%-17s %8d %10.1f %9.2f %9.2f %9.2f %7.1f%%%n",
+                        entry.getKey(), stats.count, stats.count / seconds,
+                        stats.percentile(50) / 1e6, stats.percentile(99) / 1e6, stats.percentile(100) / 1e6,
+                        100.0 * stats.errors / stats.count);
+            }
+            System.out.printf("total: %d operations in %.2f s, %.1f ops/s, %.1f%% errors%n",
+                    total, seconds, total / seconds, total == 0 ? 0 : 100.0 * errors / total);
+            for (Map.Entry<Operation, OperationStats> entry : statsByOperation.entrySet()) {
+                if (entry.getValue().firstError != null) {
+                    System.out.println("first " + entry.getKey() + " error: " + entry.getValue().firstError);
+                }
+            }
+        }
+    }
+}
@@ -2,8 +2,11 @@
 import java.util.Objects;
 
 public class RestaurantTable {
+    public static final int DEFAULT_CAPACITY = 4;
+
     private Integer id;
     private Integer number;
+    private Integer capacity;
 
     public RestaurantTable() {
     }
@@ -13,6 +16,12 @@ public class RestaurantTable {
         this.number = number;
     }
 
+    public RestaurantTable(Integer id, Integer number, Integer capacity) {
+        this.id = id;
+        this.number = number;
+        this.capacity = capacity;
+    }
+
     public Integer getId() {
         return id;
     }
@@ -29,11 +38,20 @@ public class RestaurantTable {
         this.number = number;
     }
 
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         RestaurantTable that = (RestaurantTable) o;
+        // Capacity is not part of a table's identity: orders load their table without it.
         return Objects.equals(id, that.id) && Objects.equals(number, that.number);
     }
 
@@ -47,6 +65,7 @@ public class RestaurantTable {
         return "RestaurantTable{" +
                 "id=" + id +
                 ", number=" + number +
+                ", capacity=" + capacity +
                 '}';
     }
 }
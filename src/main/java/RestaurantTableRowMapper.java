@@ -0,0 +1,19 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class RestaurantTableRowMapper implements RowMapper<RestaurantTable> {
+    private final int id;
+    private final int number;
+    private final int capacity;
+
+    public RestaurantTableRowMapper(ResultSet resultSet) throws SQLException {
+        id = ResultSetColumns.indexOf(resultSet, "id");
+        number = ResultSetColumns.indexOf(resultSet, "number");
+        capacity = ResultSetColumns.indexOf(resultSet, "capacity");
+    }
+
+    @Override
+    public RestaurantTable map(ResultSet resultSet) throws SQLException {
+        return new RestaurantTable(resultSet.getInt(id), resultSet.getInt(number), resultSet.getInt(capacity));
+    }
+}
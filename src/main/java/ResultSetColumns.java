@@ -0,0 +1,40 @@
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+/**
+ * Column helpers shared by the row mappers.
+ */
+public class ResultSetColumns {
+    // timestamp without time zone columns are read in the JVM zone, like ResultSet.getTimestamp.
+    private static final ZoneRules ZONE_RULES = ZoneId.systemDefault().getRules();
+
+    static int indexOf(ResultSet resultSet, String label) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (metaData.getColumnLabel(i).equalsIgnoreCase(label)) {
+                return i;
+            }
+        }
+        throw new SQLException("Column " + label + " not found in result set");
+    }
+
+    static Double getNullableDouble(ResultSet resultSet, int columnIndex) throws SQLException {
+        double value = resultSet.getDouble(columnIndex);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    static Integer getNullableInt(ResultSet resultSet, int columnIndex) throws SQLException {
+        int value = resultSet.getInt(columnIndex);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    static Instant getInstant(ResultSet resultSet, int columnIndex) throws SQLException {
+        LocalDateTime localDateTime = resultSet.getObject(columnIndex, LocalDateTime.class);
+        return localDateTime == null ? null : localDateTime.toInstant(ZONE_RULES.getOffset(localDateTime));
+    }
+}
@@ -0,0 +1,38 @@
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: the n-th retry waits a uniformly random time
+ * between 0 and min(maxDelay, baseDelay * 2^(n-1)), so that clients failing together do
+ * not retry together.
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+
+    public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayNanos = baseDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+    }
+
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(4, Duration.ofMillis(20), Duration.ofSeconds(1));
+    }
+
+    /**
+     * Attempts in total, the first one included.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Duration delayBeforeRetry(int retry) {
+        long ceiling = baseDelayNanos << Math.min(retry - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelayNanos) {
+            ceiling = maxDelayNanos;
+        }
+        return Duration.ofNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+}
@@ -0,0 +1,23 @@
+import java.sql.Connection;
+
+/**
+ * DBConnection of a tenant-aware DataRetriever: every connection is taken from the pool of
+ * the shard of the restaurant bound to the current thread, on that restaurant's schema.
+ * Calls made outside of TenantContext.run fail.
+ */
+public class RoutingDBConnection extends DBConnection {
+    private final ShardDirectory directory;
+
+    public RoutingDBConnection(ShardDirectory directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return directory.connectionFor(TenantContext.require());
+    }
+
+    public ShardDirectory getDirectory() {
+        return directory;
+    }
+}
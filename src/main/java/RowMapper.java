@@ -0,0 +1,10 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a ResultSet. Implementations resolve their column
+ * indexes once, when built for a given result set, instead of by name per row.
+ */
+public interface RowMapper<T> {
+    T map(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,92 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Streams generated stock_movement-shaped rows from the database and maps them both
+ * by column name with valueOf/getTimestamp and with StockMovementRowMapper.
+ */
+public class RowMapperBenchmark {
+    private static final int ROW_COUNT = 1_000_000;
+    private static final int FETCH_SIZE = 10_000;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int ROUNDS = 5;
+    private static final String SQL = """
+            select g as id, g % 500 + 1 as id_ingredient, (g % 97)::numeric as quantity,
+              (array['KG','L','PCS'])[g % 3 + 1]::unit as unit,
+              (array['IN','OUT'])[g % 2 + 1]::movement_type as type,
+              timestamp '2024-01-01' + g * interval '1 second' as creation_datetime,
+              (g % 13)::numeric as unit_price,
+              timestamp '2024-01-08' + g * interval '1 second' as expiry_datetime,
+              null::int as id_lot,
+              false as carried_forward
+            from generate_series(1, ?) g
+            """;
+
+    public static void main(String[] args) {
+        DBConnection dbConnection = new DBConnection();
+        Connection connection = dbConnection.getConnection();
+        try {
+            // The driver only streams with a fetch size inside a transaction.
+            connection.setAutoCommit(false);
+            System.out.println("=== Row mapping: " + ROW_COUNT + " stock movements ===");
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                run(connection, false);
+                run(connection, true);
+            }
+            long bestByName = Long.MAX_VALUE;
+            long bestByIndex = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                bestByName = Math.min(bestByName, run(connection, false));
+                bestByIndex = Math.min(bestByIndex, run(connection, true));
+            }
+            System.out.printf("by name:  %8.1f ms, %6.0f ns/row%n", bestByName / 1e6, (double) bestByName / ROW_COUNT);
+            System.out.printf("by index: %8.1f ms, %6.0f ns/row%n", bestByIndex / 1e6, (double) bestByIndex / ROW_COUNT);
+            connection.rollback();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            dbConnection.closeConnection(connection);
+        }
+    }
+
+    private static long run(Connection connection, boolean indexed) throws SQLException {
+        double checksum = 0;
+        long start = System.nanoTime();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL)) {
+            preparedStatement.setFetchSize(FETCH_SIZE);
+            preparedStatement.setInt(1, ROW_COUNT);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (indexed) {
+                    StockMovementRowMapper rowMapper = new StockMovementRowMapper(resultSet);
+                    while (resultSet.next()) {
+                        checksum += rowMapper.map(resultSet).getValue().getQuantity() + rowMapper.getIngredientId(resultSet);
+                    }
+                } else {
+                    while (resultSet.next()) {
+                        checksum += mapByName(resultSet).getValue().getQuantity() + resultSet.getInt("id_ingredient");
+                    }
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum == 0) {
+            System.out.println("empty result");
+        }
+        return elapsed;
+    }
+
+    private static StockMovement mapByName(ResultSet resultSet) throws SQLException {
+        StockMovement stockMovement = new StockMovement();
+        stockMovement.setId(resultSet.getInt("id"));
+        stockMovement.setType(MovementTypeEnum.valueOf(resultSet.getString("type")));
+        stockMovement.setCreationDatetime(resultSet.getTimestamp("creation_datetime").toInstant());
+
+        StockValue stockValue = new StockValue();
+        stockValue.setQuantity(resultSet.getDouble("quantity"));
+        stockValue.setUnit(Unit.valueOf(resultSet.getString("unit")));
+        stockMovement.setValue(stockValue);
+        return stockMovement;
+    }
+}
@@ -0,0 +1,104 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Where each restaurant's data lives: a shard is one database reached through its own
+ * connection pool, and every restaurant of a shard has its own schema there, named after
+ * the restaurant. Several restaurants can share a shard, and a shard can be the same
+ * database as another one.
+ */
+public class ShardDirectory implements AutoCloseable {
+    private static final Pattern TENANT_PATTERN = Pattern.compile("[a-z0-9_]{1,50}");
+
+    private final Map<String, ConnectionPool> shards = new ConcurrentHashMap<>();
+    private final Map<String, String> shardByTenant = new ConcurrentHashMap<>();
+
+    public ShardDirectory addShard(String shardId, ConnectionPool pool) {
+        if (shards.putIfAbsent(shardId, pool) != null) {
+            throw new IllegalArgumentException("Shard " + shardId + " already exists");
+        }
+        return this;
+    }
+
+    /**
+     * Routes the restaurant to the shard; its schema is expected to be migrated there, see migrate.
+     */
+    public ShardDirectory assign(String tenant, String shardId) {
+        schemaOf(tenant);
+        poolOf(shardId);
+        shardByTenant.put(tenant, shardId);
+        return this;
+    }
+
+    public String shardOf(String tenant) {
+        String shardId = shardByTenant.get(tenant);
+        if (shardId == null) {
+            throw new IllegalArgumentException("Restaurant " + tenant + " not found");
+        }
+        return shardId;
+    }
+
+    public List<String> getTenants() {
+        return shardByTenant.keySet().stream().sorted().toList();
+    }
+
+    public List<String> getShards() {
+        return shards.keySet().stream().sorted().toList();
+    }
+
+    public static String schemaOf(String tenant) {
+        if (tenant == null || !TENANT_PATTERN.matcher(tenant).matches()) {
+            throw new IllegalArgumentException("Invalid restaurant identifier " + tenant);
+        }
+        return "restaurant_" + tenant;
+    }
+
+    /**
+     * Connection to the restaurant's schema on its shard.
+     */
+    public Connection connectionFor(String tenant) {
+        return connectionTo(shardOf(tenant), schemaOf(tenant));
+    }
+
+    Connection connectionTo(String shardId, String schema) {
+        return poolOf(shardId).getConnection(schema);
+    }
+
+    /**
+     * Creates the restaurant's schema on the shard if needed and applies the migrations to it.
+     */
+    public void migrate(String tenant, String shardId) {
+        String schema = schemaOf(tenant);
+        ConnectionPool pool = poolOf(shardId);
+        try (Connection connection = pool.getConnection(null);
+             Statement statement = connection.createStatement()) {
+            statement.execute("create schema if not exists \"" + schema + "\"");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        new MigrationRunner(new DBConnection(pool.getUrl(), pool.getUser(), pool.getPassword()) {
+            @Override
+            public Connection getConnection() {
+                return pool.getConnection(schema);
+            }
+        }).migrate();
+    }
+
+    private ConnectionPool poolOf(String shardId) {
+        ConnectionPool pool = shards.get(shardId);
+        if (pool == null) {
+            throw new IllegalArgumentException("Shard " + shardId + " not found");
+        }
+        return pool;
+    }
+
+    @Override
+    public void close() {
+        shards.values().forEach(ConnectionPool::close);
+    }
+}
@@ -0,0 +1,209 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Moves a restaurant to another shard while the application runs. The target schema is
+ * migrated first; then the restaurant is paused, its tables copied in one transaction of
+ * the target and the directory switched to it, so that the calls made meanwhile wait and
+ * then run against the target. The pause only holds this JVM: writes to the source schema
+ * are also blocked in the database, by triggers failing with lock_not_available, so that
+ * other nodes still routing there cannot write what the copy would miss. The source schema
+ * is left in place, read-only, to be dropped once the move is checked; moving the restaurant
+ * back to it lifts the block first.
+ */
+public class ShardMover {
+    private static final int BATCH_SIZE = 500;
+    // Parents before children, for the foreign keys.
+    private static final List<String> TABLES = List.of(
+            "ingredient", "ingredient_price", "dish", "dish_ingredient", "restaurant_table",
+            "\"order\"", "dish_order", "stock_movement");
+    private static final List<String> SERIAL_TABLES = List.of(
+            "dish", "ingredient", "dish_ingredient", "stock_movement", "\"order\"", "dish_order", "restaurant_table");
+
+    private static final String WRITE_BLOCK_TRIGGER = "shard_move_write_block";
+
+    private final ShardDirectory directory;
+
+    public ShardMover(ShardDirectory directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Copies the restaurant to the target shard and routes it there; returns the rows copied.
+     */
+    public long move(String tenant, String targetShard) {
+        String sourceShard = directory.shardOf(tenant);
+        if (sourceShard.equals(targetShard)) {
+            return 0;
+        }
+        directory.migrate(tenant, targetShard);
+        String schema = ShardDirectory.schemaOf(tenant);
+        return TenantContext.exclusive(tenant, () -> {
+            // A schema the restaurant was moved away from before is still read-only.
+            setWritesBlocked(targetShard, schema, false);
+            setWritesBlocked(sourceShard, schema, true);
+            long copied;
+            try {
+                copied = copy(sourceShard, targetShard, schema);
+            } catch (RuntimeException e) {
+                try {
+                    setWritesBlocked(sourceShard, schema, false);
+                } catch (RuntimeException unblockFailure) {
+                    e.addSuppressed(unblockFailure);
+                }
+                throw e;
+            }
+            directory.assign(tenant, targetShard);
+            return copied;
+        });
+    }
+
+    private long copy(String sourceShard, String targetShard, String schema) {
+        try (Connection source = directory.connectionTo(sourceShard, schema);
+             Connection target = directory.connectionTo(targetShard, schema)) {
+            source.setAutoCommit(false);
+            source.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            source.setReadOnly(true);
+            target.setAutoCommit(false);
+            try {
+                long copied = copyTables(source, target);
+                target.commit();
+                source.commit();
+                return copied;
+            } catch (SQLException | RuntimeException e) {
+                target.rollback();
+                source.rollback();
+                throw e;
+            } finally {
+                source.setReadOnly(false);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds or removes the triggers rejecting every write to the tables of the schema. Adding
+     * them waits for the transactions writing to those tables, on any node, to finish.
+     */
+    private void setWritesBlocked(String shardId, String schema, boolean blocked) {
+        try (Connection connection = directory.connectionTo(shardId, schema);
+             Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            try {
+                if (blocked) {
+                    statement.execute("""
+                            create or replace function reject_write_while_moving() returns trigger
+                                language plpgsql as
+                            $$
+                            begin
+                                raise exception 'Restaurant is moving to another shard, % is read-only', tg_table_name
+                                    using errcode = 'lock_not_available';
+                            end
+                            $$""");
+                }
+                for (String table : TABLES) {
+                    statement.execute("drop trigger if exists " + WRITE_BLOCK_TRIGGER + " on " + table);
+                    if (blocked) {
+                        statement.execute("create trigger " + WRITE_BLOCK_TRIGGER
+                                + " before insert or update or delete or truncate on " + table
+                                + " for each statement execute function reject_write_while_moving()");
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException((blocked ? "Blocking" : "Unblocking") + " writes to " + schema + " failed", e);
+        }
+    }
+
+    private static long copyTables(Connection source, Connection target) throws SQLException {
+        try (Statement statement = target.createStatement()) {
+            statement.execute("truncate " + String.join(", ", TABLES) + " cascade");
+        }
+        long copied = 0;
+        for (String table : TABLES) {
+            if (table.equals("ingredient_price")) {
+                // Filled by the trigger while copying ingredient: the source history replaces it.
+                try (Statement statement = target.createStatement()) {
+                    statement.execute("delete from ingredient_price");
+                }
+            } else if (table.equals("stock_movement")) {
+                createStockMovementPartitions(source, target);
+            }
+            copied += copyTable(source, target, table);
+        }
+        try (Statement statement = target.createStatement()) {
+            for (String table : SERIAL_TABLES) {
+                statement.execute("select setval(pg_get_serial_sequence('" + table + "', 'id'), "
+                        + "coalesce(max(id), 0) + 1, false) from " + table);
+            }
+        }
+        return copied;
+    }
+
+    private static long copyTable(Connection source, Connection target, String table) throws SQLException {
+        long copied = 0;
+        try (Statement select = source.createStatement()) {
+            select.setFetchSize(BATCH_SIZE);
+            try (ResultSet resultSet = select.executeQuery("select * from " + table)) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                List<String> columns = new ArrayList<>();
+                int[] types = new int[columnCount + 1];
+                for (int column = 1; column <= columnCount; column++) {
+                    columns.add("\"" + metaData.getColumnName(column) + "\"");
+                    types[column] = isEnum(metaData, column) ? Types.OTHER : metaData.getColumnType(column);
+                }
+                String insert = "insert into " + table + " (" + String.join(", ", columns) + ") values ("
+                        + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+                try (PreparedStatement statement = target.prepareStatement(insert)) {
+                    while (resultSet.next()) {
+                        for (int column = 1; column <= columnCount; column++) {
+                            statement.setObject(column, resultSet.getObject(column), types[column]);
+                        }
+                        statement.addBatch();
+                        if (++copied % BATCH_SIZE == 0) {
+                            statement.executeBatch();
+                        }
+                    }
+                    statement.executeBatch();
+                }
+            }
+        }
+        return copied;
+    }
+
+    // Enum values come back as strings; the target must be told to cast them.
+    private static boolean isEnum(ResultSetMetaData metaData, int column) throws SQLException {
+        String typeName = metaData.getColumnTypeName(column);
+        return metaData.getColumnType(column) == Types.VARCHAR
+                && !typeName.equals("varchar") && !typeName.equals("text");
+    }
+
+    // Rows of a month without its partition would otherwise pile up in the default one.
+    private static void createStockMovementPartitions(Connection source, Connection target) throws SQLException {
+        try (Statement select = source.createStatement();
+             ResultSet resultSet = select.executeQuery("""
+                     select distinct date_trunc('month', creation_datetime)::date
+                     from stock_movement
+                     where creation_datetime is not null""");
+             PreparedStatement ensure = target.prepareStatement("select ensure_stock_movement_partition(?)")) {
+            while (resultSet.next()) {
+                ensure.setDate(1, resultSet.getDate(1));
+                ensure.execute();
+            }
+        }
+    }
+}
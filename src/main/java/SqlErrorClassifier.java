@@ -0,0 +1,71 @@
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+
+/**
+ * Sorts database failures by what a caller can do about them, from the SQLSTATE of the
+ * first SQLException in the cause chain (DataRetriever wraps them in RuntimeException).
+ */
+public class SqlErrorClassifier {
+
+    public enum Kind {
+        /** The database is unreachable or overloaded: retry later, it may come back. */
+        TRANSIENT,
+        /** The transaction was rolled back by a serialization failure or a deadlock: retry it. */
+        SERIALIZATION,
+        /** An integrity constraint rejected the data: retrying gives the same answer. */
+        CONSTRAINT,
+        /** Any other database error. */
+        FATAL,
+        /** Not a database error, such as an order rejected by validation. */
+        APPLICATION
+    }
+
+    public static Kind classify(Throwable failure) {
+        SQLException sqlException = findSqlException(failure);
+        if (sqlException == null) {
+            return Kind.APPLICATION;
+        }
+        String state = sqlException.getSQLState();
+        if (state == null) {
+            return sqlException instanceof SQLTransientException || sqlException instanceof SQLRecoverableException
+                    ? Kind.TRANSIENT : Kind.FATAL;
+        }
+        return switch (state) {
+            case "40001", "40P01" -> Kind.SERIALIZATION;
+            // too_many_connections, lock_not_available, admin_shutdown, crash_shutdown, cannot_connect_now
+            case "53300", "55P03", "57P01", "57P02", "57P03" -> Kind.TRANSIENT;
+            default -> state.startsWith("08") ? Kind.TRANSIENT
+                    : state.startsWith("23") ? Kind.CONSTRAINT
+                    : Kind.FATAL;
+        };
+    }
+
+    /**
+     * Whether the failure happened while connecting, so the statement never reached the
+     * server and even a non-idempotent call can be retried.
+     */
+    public static boolean isConnectFailure(Throwable failure) {
+        SQLException sqlException = findSqlException(failure);
+        if (sqlException == null || sqlException.getSQLState() == null) {
+            return false;
+        }
+        return switch (sqlException.getSQLState()) {
+            // sqlclient_unable_to_establish_sqlconnection, sqlserver_rejected_establishment_of_sqlconnection
+            case "08001", "08004", "53300", "57P03" -> true;
+            default -> false;
+        };
+    }
+
+    static SQLException findSqlException(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                return sqlException;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,76 @@
+import java.time.Instant;
+
+/**
+ * What is left of an IN stock movement, its lot, in the unit it was received in.
+ */
+public class StockLot {
+    private final Integer lotId;
+    private final Integer ingredientId;
+    private double remainingQuantity;
+    private final Unit unit;
+    private final Double unitPrice;
+    private final Instant expiryDatetime;
+    private final Instant creationDatetime;
+
+    public StockLot(Integer lotId, Integer ingredientId, double remainingQuantity, Unit unit, Double unitPrice,
+                    Instant expiryDatetime, Instant creationDatetime) {
+        this.lotId = lotId;
+        this.ingredientId = ingredientId;
+        this.remainingQuantity = remainingQuantity;
+        this.unit = unit;
+        this.unitPrice = unitPrice;
+        this.expiryDatetime = expiryDatetime;
+        this.creationDatetime = creationDatetime;
+    }
+
+    /**
+     * Id of the IN movement that received the lot.
+     */
+    public Integer getLotId() {
+        return lotId;
+    }
+
+    public Integer getIngredientId() {
+        return ingredientId;
+    }
+
+    public double getRemainingQuantity() {
+        return remainingQuantity;
+    }
+
+    public void setRemainingQuantity(double remainingQuantity) {
+        this.remainingQuantity = remainingQuantity;
+    }
+
+    public Unit getUnit() {
+        return unit;
+    }
+
+    public Double getUnitPrice() {
+        return unitPrice;
+    }
+
+    /**
+     * Instant the lot expires at, null when it does not.
+     */
+    public Instant getExpiryDatetime() {
+        return expiryDatetime;
+    }
+
+    public Instant getCreationDatetime() {
+        return creationDatetime;
+    }
+
+    @Override
+    public String toString() {
+        return "StockLot{" +
+                "lotId=" + lotId +
+                ", ingredientId=" + ingredientId +
+                ", remainingQuantity=" + remainingQuantity +
+                ", unit=" + unit +
+                ", unitPrice=" + unitPrice +
+                ", expiryDatetime=" + expiryDatetime +
+                ", creationDatetime=" + creationDatetime +
+                '}';
+    }
+}
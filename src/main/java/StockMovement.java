@@ -6,6 +6,10 @@ public class StockMovement {
     private MovementTypeEnum type;
     private Instant creationDatetime;
     private StockValue value;
+    private Double unitPrice;
+    private Instant expiryDatetime;
+    private Integer lotId;
+    private boolean carriedForward;
 
     public StockMovement() {
     }
@@ -42,15 +46,59 @@ public class StockMovement {
         this.value = value;
     }
 
+    /**
+     * Purchase price per unit of an IN lot, null for OUT movements.
+     */
+    public Double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(Double unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    /**
+     * Instant an IN lot expires at, null when it does not.
+     */
+    public Instant getExpiryDatetime() {
+        return expiryDatetime;
+    }
+
+    public void setExpiryDatetime(Instant expiryDatetime) {
+        this.expiryDatetime = expiryDatetime;
+    }
+
+    /**
+     * Id of the IN movement whose lot an OUT movement consumed, null when unknown.
+     */
+    public Integer getLotId() {
+        return lotId;
+    }
+
+    public void setLotId(Integer lotId) {
+        this.lotId = lotId;
+    }
+
+    /**
+     * True for the OUT movement carrying the shortage of an archived month into the next one.
+     */
+    public boolean isCarriedForward() {
+        return carriedForward;
+    }
+
+    public void setCarriedForward(boolean carriedForward) {
+        this.carriedForward = carriedForward;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof StockMovement that)) return false;
-        return Objects.equals(id, that.id)  && type == that.type && Objects.equals(creationDatetime, that.creationDatetime) && Objects.equals(value, that.value);
+        return Objects.equals(id, that.id)  && type == that.type && Objects.equals(creationDatetime, that.creationDatetime) && Objects.equals(value, that.value) && Objects.equals(unitPrice, that.unitPrice) && Objects.equals(expiryDatetime, that.expiryDatetime) && Objects.equals(lotId, that.lotId) && carriedForward == that.carriedForward;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, type, creationDatetime, value);
+        return Objects.hash(id, type, creationDatetime, value, unitPrice, expiryDatetime, lotId, carriedForward);
     }
 
     @Override
@@ -60,6 +108,10 @@ public class StockMovement {
                 ", type=" + type +
                 ", creationDatetime=" + creationDatetime +
                 ", value=" + value +
+                ", unitPrice=" + unitPrice +
+                ", expiryDatetime=" + expiryDatetime +
+                ", lotId=" + lotId +
+                ", carriedForward=" + carriedForward +
                 '}';
     }
 }
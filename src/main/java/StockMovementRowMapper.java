@@ -0,0 +1,50 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class StockMovementRowMapper implements RowMapper<StockMovement> {
+    private final int id;
+    private final int idIngredient;
+    private final int quantity;
+    private final int unit;
+    private final int type;
+    private final int creationDatetime;
+    private final int unitPrice;
+    private final int expiryDatetime;
+    private final int idLot;
+    private final int carriedForward;
+
+    public StockMovementRowMapper(ResultSet resultSet) throws SQLException {
+        id = ResultSetColumns.indexOf(resultSet, "id");
+        idIngredient = ResultSetColumns.indexOf(resultSet, "id_ingredient");
+        quantity = ResultSetColumns.indexOf(resultSet, "quantity");
+        unit = ResultSetColumns.indexOf(resultSet, "unit");
+        type = ResultSetColumns.indexOf(resultSet, "type");
+        creationDatetime = ResultSetColumns.indexOf(resultSet, "creation_datetime");
+        unitPrice = ResultSetColumns.indexOf(resultSet, "unit_price");
+        expiryDatetime = ResultSetColumns.indexOf(resultSet, "expiry_datetime");
+        idLot = ResultSetColumns.indexOf(resultSet, "id_lot");
+        carriedForward = ResultSetColumns.indexOf(resultSet, "carried_forward");
+    }
+
+    @Override
+    public StockMovement map(ResultSet resultSet) throws SQLException {
+        StockMovement stockMovement = new StockMovement();
+        stockMovement.setId(resultSet.getInt(id));
+        stockMovement.setType(EnumDecoder.MOVEMENT_TYPE.decode(resultSet.getString(type)));
+        stockMovement.setCreationDatetime(ResultSetColumns.getInstant(resultSet, creationDatetime));
+        stockMovement.setUnitPrice(ResultSetColumns.getNullableDouble(resultSet, unitPrice));
+        stockMovement.setExpiryDatetime(ResultSetColumns.getInstant(resultSet, expiryDatetime));
+        stockMovement.setLotId(ResultSetColumns.getNullableInt(resultSet, idLot));
+        stockMovement.setCarriedForward(resultSet.getBoolean(carriedForward));
+
+        StockValue stockValue = new StockValue();
+        stockValue.setQuantity(resultSet.getDouble(quantity));
+        stockValue.setUnit(EnumDecoder.UNIT.decode(resultSet.getString(unit)));
+        stockMovement.setValue(stockValue);
+        return stockMovement;
+    }
+
+    public int getIngredientId(ResultSet resultSet) throws SQLException {
+        return resultSet.getInt(idIngredient);
+    }
+}
@@ -0,0 +1,26 @@
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+public interface StockRepository {
+    List<StockMovement> findStockMovementsByIngredientId(Integer id);
+
+    /**
+     * Movements created in [from, to); a null bound leaves that side open.
+     */
+    List<StockMovement> findStockMovementsByIngredientId(Integer id, Instant from, Instant to);
+
+    /**
+     * Movements of every ingredient created in [from, to), by ingredient id; a null bound
+     * leaves that side open.
+     */
+    Map<Integer, List<StockMovement>> findStockMovements(Instant from, Instant to);
+
+    /**
+     * Lots of every ingredient expiring in [from, to) with stock left, soonest first; a null
+     * bound leaves that side open. Only OUT movements naming their lot consume it.
+     */
+    List<StockLot> findExpiringLots(Instant from, Instant to);
+
+    List<StockMovement> saveStockMovements(Integer ingredientId, List<StockMovement> stockMovements);
+}
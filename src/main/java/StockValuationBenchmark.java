@@ -0,0 +1,86 @@
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class StockValuationBenchmark {
+    private static final int INGREDIENT_COUNT = 2_000;
+    private static final int MOVEMENTS_PER_INGREDIENT = 500;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        YearMonth month = YearMonth.of(2024, 1);
+        ZoneId zoneId = ZoneId.systemDefault();
+        List<Ingredient> ingredients = generateIngredients(month, zoneId);
+        List<Instant> instants = StockValuationEngine.endOfDayInstants(month, zoneId);
+
+        System.out.println("=== Stock valuation: " + INGREDIENT_COUNT + " ingredients x " + instants.size() + " days ===");
+
+        long start = System.nanoTime();
+        double serialTotal = 0;
+        for (Ingredient ingredient : ingredients) {
+            for (Instant instant : instants) {
+                serialTotal += ingredient.getStockValueAt(instant).getQuantity() * ingredient.getPrice();
+            }
+        }
+        long serialMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("getStockValueAt loop: " + serialMillis + " ms (total " + serialTotal + ")");
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        long singleCoreNanos = 0;
+        for (int parallelism = 1; parallelism <= cores; parallelism *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            StockValuationEngine engine = new StockValuationEngine(pool);
+            engine.valuate(ingredients, instants); // warm up
+
+            long best = Long.MAX_VALUE;
+            double engineTotal = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long roundStart = System.nanoTime();
+                StockValuationMatrix matrix = engine.valuate(ingredients, instants);
+                best = Math.min(best, System.nanoTime() - roundStart);
+                engineTotal = 0;
+                for (int column = 0; column < matrix.getInstantCount(); column++) {
+                    engineTotal += matrix.getTotalValueAt(column);
+                }
+            }
+            pool.shutdown();
+            if (parallelism == 1) {
+                singleCoreNanos = best;
+            }
+            System.out.printf("engine, %2d core(s): %6.2f ms, speedup x%.2f (total %s)%n",
+                    parallelism, best / 1_000_000.0, (double) singleCoreNanos / best, engineTotal);
+        }
+    }
+
+    private static List<Ingredient> generateIngredients(YearMonth month, ZoneId zoneId) {
+        Random random = new Random(42);
+        Instant from = month.atDay(1).atStartOfDay(zoneId).toInstant();
+        long monthSeconds = ChronoUnit.SECONDS.between(from, month.plusMonths(1).atDay(1).atStartOfDay(zoneId).toInstant());
+        CategoryEnum[] categories = CategoryEnum.values();
+
+        List<Ingredient> ingredients = new ArrayList<>(INGREDIENT_COUNT);
+        for (int id = 1; id <= INGREDIENT_COUNT; id++) {
+            List<StockMovement> stockMovements = new ArrayList<>(MOVEMENTS_PER_INGREDIENT);
+            for (int i = 0; i < MOVEMENTS_PER_INGREDIENT; i++) {
+                StockValue stockValue = new StockValue();
+                stockValue.setQuantity(Math.round(random.nextDouble() * 1000) / 100.0);
+                stockValue.setUnit(Unit.KG);
+
+                StockMovement stockMovement = new StockMovement();
+                stockMovement.setId(id * MOVEMENTS_PER_INGREDIENT + i);
+                stockMovement.setType(random.nextInt(3) == 0 ? MovementTypeEnum.OUT : MovementTypeEnum.IN);
+                stockMovement.setCreationDatetime(from.plusSeconds((long) (random.nextDouble() * monthSeconds)));
+                stockMovement.setValue(stockValue);
+                stockMovements.add(stockMovement);
+            }
+            ingredients.add(new Ingredient(id, "Ingredient " + id, categories[id % categories.length],
+                    100.0 + random.nextInt(5000), stockMovements));
+        }
+        return ingredients;
+    }
+}
@@ -0,0 +1,160 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes stock quantity and value of many ingredients at many instants at once.
+ * Each ingredient's movements are sorted once and swept against the sorted instants,
+ * and ingredients are split across cores with fork/join.
+ */
+public class StockValuationEngine {
+    private static final int INGREDIENTS_PER_TASK = 64;
+
+    private final ForkJoinPool pool;
+
+    public StockValuationEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public StockValuationEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public StockValuationMatrix valuate(List<Ingredient> ingredients, List<Instant> instants) {
+        Instant[] sortedInstants = instants.toArray(new Instant[0]);
+        Arrays.sort(sortedInstants);
+        long[] instantNanos = new long[sortedInstants.length];
+        for (int i = 0; i < sortedInstants.length; i++) {
+            instantNanos[i] = toEpochNanos(sortedInstants[i]);
+        }
+
+        int ingredientCount = ingredients.size();
+        int[] ingredientIds = new int[ingredientCount];
+        Unit[] units = new Unit[ingredientCount];
+        double[] quantities = new double[ingredientCount * sortedInstants.length];
+        double[] values = new double[ingredientCount * sortedInstants.length];
+
+        pool.invoke(new ValuationTask(ingredients, instantNanos, ingredientIds, units, quantities, values, 0, ingredientCount));
+        return new StockValuationMatrix(ingredientIds, sortedInstants, units, quantities, values);
+    }
+
+    public StockValuationMatrix valuateMonth(List<Ingredient> ingredients, YearMonth month, ZoneId zoneId) {
+        return valuate(ingredients, endOfDayInstants(month, zoneId));
+    }
+
+    static List<Instant> endOfDayInstants(YearMonth month, ZoneId zoneId) {
+        List<Instant> instants = new ArrayList<>();
+        for (int day = 1; day <= month.lengthOfMonth(); day++) {
+            LocalDate nextDay = month.atDay(day).plusDays(1);
+            instants.add(nextDay.atStartOfDay(zoneId).toInstant().minusNanos(1));
+        }
+        return instants;
+    }
+
+    private static long toEpochNanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static void valuateIngredient(Ingredient ingredient, long[] instantNanos, int row,
+                                          int[] ingredientIds, Unit[] units, double[] quantities, double[] values) {
+        ingredientIds[row] = ingredient.getId();
+        List<StockMovement> stockMovements = ingredient.getStockMovementList();
+        int movementCount = stockMovements == null ? 0 : stockMovements.size();
+
+        long[] movementNanos = new long[movementCount];
+        double[] signedQuantities = new double[movementCount];
+        Unit unit = null;
+        for (int i = 0; i < movementCount; i++) {
+            StockMovement stockMovement = stockMovements.get(i);
+            Unit movementUnit = stockMovement.getValue().getUnit();
+            if (unit == null) {
+                unit = movementUnit;
+            } else if (unit != movementUnit) {
+                throw new RuntimeException("Multiple unit found and not handle for conversion");
+            }
+            movementNanos[i] = toEpochNanos(stockMovement.getCreationDatetime());
+            double quantity = stockMovement.getValue().getQuantity();
+            signedQuantities[i] = stockMovement.getType() == MovementTypeEnum.IN ? quantity : -quantity;
+        }
+        sortByTime(movementNanos, signedQuantities);
+        units[row] = unit;
+
+        double price = ingredient.getPrice() == null ? 0 : ingredient.getPrice();
+        int offset = row * instantNanos.length;
+        int movementIndex = 0;
+        double quantity = 0;
+        for (int column = 0; column < instantNanos.length; column++) {
+            while (movementIndex < movementCount && movementNanos[movementIndex] <= instantNanos[column]) {
+                quantity += signedQuantities[movementIndex++];
+            }
+            quantities[offset + column] = quantity;
+            values[offset + column] = quantity * price;
+        }
+    }
+
+    private static void sortByTime(long[] times, double[] quantities) {
+        boolean sorted = true;
+        for (int i = 1; i < times.length && sorted; i++) {
+            sorted = times[i - 1] <= times[i];
+        }
+        if (sorted) {
+            return;
+        }
+        Integer[] order = new Integer[times.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(times[a], times[b]));
+        long[] timesCopy = times.clone();
+        double[] quantitiesCopy = quantities.clone();
+        for (int i = 0; i < order.length; i++) {
+            times[i] = timesCopy[order[i]];
+            quantities[i] = quantitiesCopy[order[i]];
+        }
+    }
+
+    private static class ValuationTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Ingredient> ingredients;
+        private final long[] instantNanos;
+        private final int[] ingredientIds;
+        private final Unit[] units;
+        private final double[] quantities;
+        private final double[] values;
+        private final int from;
+        private final int to;
+
+        ValuationTask(List<Ingredient> ingredients, long[] instantNanos, int[] ingredientIds, Unit[] units,
+                      double[] quantities, double[] values, int from, int to) {
+            this.ingredients = ingredients;
+            this.instantNanos = instantNanos;
+            this.ingredientIds = ingredientIds;
+            this.units = units;
+            this.quantities = quantities;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= INGREDIENTS_PER_TASK) {
+                for (int row = from; row < to; row++) {
+                    valuateIngredient(ingredients.get(row), instantNanos, row, ingredientIds, units, quantities, values);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new ValuationTask(ingredients, instantNanos, ingredientIds, units, quantities, values, from, middle),
+                    new ValuationTask(ingredients, instantNanos, ingredientIds, units, quantities, values, middle, to));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Ingredient x instant matrix of stock quantities and values, stored row-major
+ * (one row per ingredient, one column per instant) in flat primitive arrays.
+ */
+public class StockValuationMatrix {
+    private final int[] ingredientIds;
+    private final Instant[] instants;
+    private final Unit[] units;
+    private final double[] quantities;
+    private final double[] values;
+
+    public StockValuationMatrix(int[] ingredientIds, Instant[] instants, Unit[] units, double[] quantities, double[] values) {
+        this.ingredientIds = ingredientIds;
+        this.instants = instants;
+        this.units = units;
+        this.quantities = quantities;
+        this.values = values;
+    }
+
+    public int getIngredientCount() {
+        return ingredientIds.length;
+    }
+
+    public int getInstantCount() {
+        return instants.length;
+    }
+
+    public int getIngredientId(int row) {
+        return ingredientIds[row];
+    }
+
+    public Instant getInstant(int column) {
+        return instants[column];
+    }
+
+    public Unit getUnit(int row) {
+        return units[row];
+    }
+
+    public double getQuantity(int row, int column) {
+        return quantities[row * instants.length + column];
+    }
+
+    public double getValue(int row, int column) {
+        return values[row * instants.length + column];
+    }
+
+    public StockValue getStockValue(int row, int column) {
+        StockValue stockValue = new StockValue();
+        stockValue.setQuantity(getQuantity(row, column));
+        stockValue.setUnit(units[row]);
+        return stockValue;
+    }
+
+    public double getTotalValueAt(int column) {
+        double total = 0;
+        for (int row = 0; row < ingredientIds.length; row++) {
+            total += values[row * instants.length + column];
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "StockValuationMatrix{" +
+                "ingredientIds=" + Arrays.toString(ingredientIds) +
+                ", instants=" + Arrays.toString(instants) +
+                '}';
+    }
+}
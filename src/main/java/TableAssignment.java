@@ -0,0 +1,52 @@
+import java.time.Instant;
+import java.util.ArrayList;
+
+/**
+ * Table chosen for a reservation request, or no table when none could seat it.
+ */
+public class TableAssignment {
+    private final ReservationRequest request;
+    private final RestaurantTable table;
+
+    public TableAssignment(ReservationRequest request, RestaurantTable table) {
+        this.request = request;
+        this.table = table;
+    }
+
+    public ReservationRequest getRequest() {
+        return request;
+    }
+
+    public RestaurantTable getTable() {
+        return table;
+    }
+
+    public boolean isAssigned() {
+        return table != null;
+    }
+
+    /**
+     * Order booking the assigned table for the request, to be saved by an OrderRepository.
+     */
+    public Order toOrder(Instant creationDatetime) {
+        if (table == null) {
+            throw new RuntimeException("No table assigned to " + request.getReference());
+        }
+        Order order = new Order();
+        order.setReference(request.getReference());
+        order.setCreationDatetime(creationDatetime);
+        order.setTable(table);
+        order.setInstallationDate(request.getInstallationDate());
+        order.setDepartureDate(request.getDepartureDate());
+        order.setDishOrderList(new ArrayList<>());
+        return order;
+    }
+
+    @Override
+    public String toString() {
+        return "TableAssignment{" +
+                "request=" + request +
+                ", table=" + table +
+                '}';
+    }
+}
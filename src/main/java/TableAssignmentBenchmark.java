@@ -0,0 +1,52 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TableAssignmentBenchmark {
+    private static final int TABLE_COUNT = 60;
+    private static final int REQUEST_COUNT = 600;
+    private static final int[] CAPACITIES = {2, 2, 4, 4, 4, 6, 8};
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        List<RestaurantTable> tables = new ArrayList<>();
+        for (int number = 1; number <= TABLE_COUNT; number++) {
+            tables.add(new RestaurantTable(number, number, CAPACITIES[random.nextInt(CAPACITIES.length)]));
+        }
+        Instant opening = LocalDate.of(2024, 1, 5).atTime(18, 0).atZone(ZoneId.systemDefault()).toInstant();
+        List<ReservationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            Instant installation = opening.plusSeconds(900L * random.nextInt(20));
+            Instant departure = installation.plusSeconds(1800L + 900L * random.nextInt(6));
+            requests.add(new ReservationRequest("RES-" + i, 1 + random.nextInt(8), installation, departure));
+        }
+
+        System.out.println("=== Table assignment: " + REQUEST_COUNT + " requests on " + TABLE_COUNT + " tables ===");
+        new TableAssignmentOptimizer(tables, List.of()).assign(requests); // warm up
+
+        long best = Long.MAX_VALUE;
+        List<TableAssignment> assignments = List.of();
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            assignments = new TableAssignmentOptimizer(tables, List.of()).assign(requests);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        int assigned = 0;
+        long guests = 0;
+        long seats = 0;
+        for (TableAssignment assignment : assignments) {
+            if (assignment.isAssigned()) {
+                assigned++;
+                guests += assignment.getRequest().getPartySize();
+                seats += assignment.getTable().getCapacity();
+            }
+        }
+        System.out.printf("best-fit: %.2f ms, %d/%d requests seated, %.1f%% of assigned seats used%n",
+                best / 1_000_000.0, assigned, REQUEST_COUNT, 100.0 * guests / seats);
+    }
+}
@@ -0,0 +1,152 @@
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns tables to a batch of reservation requests with best-fit interval scheduling:
+ * requests are taken by installation time, larger parties first, and each one gets the
+ * free table wasting the fewest seats, ties going to the table whose previous booking
+ * ends closest before it so that long free stretches stay whole for later requests.
+ */
+public class TableAssignmentOptimizer {
+    private final RestaurantTable[] tables;
+    private final int[] capacities;
+    // Booked intervals of each table in epoch seconds, start to end, never overlapping.
+    private final List<TreeMap<Long, Long>> bookingsByTable;
+
+    public TableAssignmentOptimizer(List<RestaurantTable> tables, List<Order> bookings) {
+        this.tables = tables.stream()
+                .sorted(Comparator.comparingInt(TableAssignmentOptimizer::capacityOf)
+                        .thenComparing(RestaurantTable::getNumber))
+                .toArray(RestaurantTable[]::new);
+        this.capacities = new int[this.tables.length];
+        this.bookingsByTable = new ArrayList<>(this.tables.length);
+        Map<Integer, Integer> indexByTableId = new HashMap<>();
+        for (int i = 0; i < this.tables.length; i++) {
+            capacities[i] = capacityOf(this.tables[i]);
+            bookingsByTable.add(new TreeMap<>());
+            indexByTableId.put(this.tables[i].getId(), i);
+        }
+        for (Order booking : bookings) {
+            Integer index = booking.getTable() == null ? null : indexByTableId.get(booking.getTable().getId());
+            if (index != null) {
+                bookingsByTable.get(index).put(booking.getInstallationDate().getEpochSecond(),
+                        booking.getDepartureDate().getEpochSecond());
+            }
+        }
+    }
+
+    /**
+     * Optimizer over every table, with the bookings already overlapping [from, to).
+     */
+    public static TableAssignmentOptimizer forWindow(DataStore dataStore, Instant from, Instant to) {
+        return new TableAssignmentOptimizer(dataStore.findAllTables(), dataStore.findTableBookings(from, to));
+    }
+
+    /**
+     * One assignment per request, in the order of the requests. Assigned tables are booked
+     * in this optimizer only; the caller saves the resulting orders.
+     */
+    public List<TableAssignment> assign(List<ReservationRequest> requests) {
+        Integer[] order = new Integer[requests.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer, Instant>comparing(i -> requests.get(i).getInstallationDate())
+                .thenComparing(i -> -requests.get(i).getPartySize())
+                .thenComparing(i -> requests.get(i).getDepartureDate(), Comparator.reverseOrder()));
+
+        TableAssignment[] assignments = new TableAssignment[requests.size()];
+        for (int i : order) {
+            ReservationRequest request = requests.get(i);
+            long start = request.getInstallationDate().getEpochSecond();
+            long end = request.getDepartureDate().getEpochSecond();
+            int index = findBestTable(request.getPartySize(), start, end);
+            if (index >= 0) {
+                bookingsByTable.get(index).put(start, end);
+            }
+            assignments[i] = new TableAssignment(request, index < 0 ? null : tables[index]);
+        }
+        return Arrays.asList(assignments);
+    }
+
+    /**
+     * Best free table for a party over [from, to) without booking it, or null.
+     */
+    public RestaurantTable suggest(int partySize, Instant from, Instant to) {
+        int index = findBestTable(partySize, from.getEpochSecond(), to.getEpochSecond());
+        return index < 0 ? null : tables[index];
+    }
+
+    /**
+     * Table of the list wasting the fewest seats for the party, the largest one when none is
+     * big enough, or null for an empty list.
+     */
+    static RestaurantTable bestFit(List<RestaurantTable> freeTables, int partySize) {
+        RestaurantTable best = null;
+        for (RestaurantTable table : freeTables) {
+            if (best == null || isBetterFit(capacityOf(table), capacityOf(best), partySize)) {
+                best = table;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isBetterFit(int capacity, int bestCapacity, int partySize) {
+        boolean fits = capacity >= partySize;
+        boolean bestFits = bestCapacity >= partySize;
+        if (fits != bestFits) {
+            return fits;
+        }
+        return fits ? capacity < bestCapacity : capacity > bestCapacity;
+    }
+
+    private int findBestTable(int partySize, long start, long end) {
+        int best = -1;
+        long bestGap = Long.MAX_VALUE;
+        for (int i = firstTableSeating(partySize); i < tables.length; i++) {
+            // Tables are sorted by capacity: past the first fitting capacity, fits only get worse.
+            if (best >= 0 && capacities[i] > capacities[best]) {
+                break;
+            }
+            TreeMap<Long, Long> bookings = bookingsByTable.get(i);
+            Map.Entry<Long, Long> previous = bookings.floorEntry(start);
+            if (previous != null && previous.getValue() > start) {
+                continue;
+            }
+            Long next = bookings.higherKey(start);
+            if (next != null && next < end) {
+                continue;
+            }
+            long gap = previous == null ? Long.MAX_VALUE - 1 : start - previous.getValue();
+            if (gap < bestGap) {
+                bestGap = gap;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int firstTableSeating(int partySize) {
+        int low = 0;
+        int high = capacities.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (capacities[middle] < partySize) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int capacityOf(RestaurantTable table) {
+        return table.getCapacity() != null ? table.getCapacity() : RestaurantTable.DEFAULT_CAPACITY;
+    }
+}
@@ -0,0 +1,299 @@
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bookings of every table over one service day, as one bitset of fixed time slots per
+ * table where a set bit means the table is taken during that slot. Queries work a
+ * 64-slot word at a time; saved orders are applied incrementally, see {@link #listenTo}.
+ */
+public class TableAvailabilityGrid {
+    public static final Duration DEFAULT_SLOT = Duration.ofMinutes(15);
+
+    private final Instant start;
+    private final long slotSeconds;
+    private final int slotCount;
+    private final int wordsPerTable;
+    private final List<RestaurantTable> tables;
+    private final Map<Integer, Integer> rowByTableId = new HashMap<>();
+    private final long[] occupied;
+    // The slots of the last booking applied per order, so that a moved order frees its old slots.
+    private final Map<Integer, long[]> bookingByOrderId = new HashMap<>();
+
+    public TableAvailabilityGrid(List<RestaurantTable> tables, Instant start, Duration slot, int slotCount) {
+        this.start = start;
+        this.slotSeconds = slot.toSeconds();
+        this.slotCount = slotCount;
+        this.wordsPerTable = (slotCount + 63) >>> 6;
+        this.tables = List.copyOf(tables);
+        for (int row = 0; row < this.tables.size(); row++) {
+            rowByTableId.put(this.tables.get(row).getId(), row);
+        }
+        this.occupied = new long[this.tables.size() * wordsPerTable];
+    }
+
+    /**
+     * Grid of the given day in 15-minute slots, filled from the orders overlapping it.
+     */
+    public static TableAvailabilityGrid forDay(DataStore dataStore, LocalDate day, ZoneId zoneId) {
+        Instant start = day.atStartOfDay(zoneId).toInstant();
+        Instant end = day.plusDays(1).atStartOfDay(zoneId).toInstant();
+        int slotCount = (int) Duration.between(start, end).dividedBy(DEFAULT_SLOT);
+        TableAvailabilityGrid grid = new TableAvailabilityGrid(dataStore.findAllTables(), start, DEFAULT_SLOT, slotCount);
+        for (Order order : dataStore.findTableBookings(start, end)) {
+            grid.onOrderSaved(order);
+        }
+        return grid;
+    }
+
+    /**
+     * Keeps the grid up to date with the orders saved through the repository from now on.
+     */
+    public TableAvailabilityGrid listenTo(OrderRepository orderRepository) {
+        orderRepository.addOrderListener(this::onOrderSaved);
+        return this;
+    }
+
+    /**
+     * Keeps the grid coherent with the bookings of other nodes: any order change or reset
+     * reloads the bookings of the grid's window, once per coalesced batch of changes.
+     */
+    public TableAvailabilityGrid listenTo(ChangeNotificationListener listener, TableRepository tableRepository) {
+        listener.subscribe(changes -> {
+            if (changes.isReset() || !changes.getOrderIds().isEmpty()) {
+                reload(tableRepository);
+            }
+        });
+        return this;
+    }
+
+    public void reload(TableRepository tableRepository) {
+        List<Order> bookings = tableRepository.findTableBookings(start, getSlotStart(slotCount));
+        synchronized (this) {
+            Arrays.fill(occupied, 0);
+            bookingByOrderId.clear();
+            bookings.forEach(this::onOrderSaved);
+        }
+    }
+
+    public synchronized void onOrderSaved(Order order) {
+        long[] previous = order.getId() == null ? null : bookingByOrderId.remove(order.getId());
+        if (previous != null) {
+            rebuildRow((int) previous[0]);
+        }
+        if (order.getTable() == null || order.getInstallationDate() == null || order.getDepartureDate() == null) {
+            return;
+        }
+        Integer row = rowByTableId.get(order.getTable().getId());
+        if (row == null) {
+            return;
+        }
+        // A booking takes every slot it touches, even partially.
+        int from = Math.max(0, slotAt(order.getInstallationDate(), false));
+        int to = Math.min(slotCount, slotAt(order.getDepartureDate(), true));
+        if (from >= to) {
+            return;
+        }
+        setRange(row, from, to);
+        if (order.getId() != null) {
+            bookingByOrderId.put(order.getId(), new long[]{row, from, to});
+        }
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public Instant getSlotStart(int slot) {
+        return start.plusSeconds(slot * slotSeconds);
+    }
+
+    public int getSlot(Instant instant) {
+        return slotAt(instant, false);
+    }
+
+    public synchronized boolean isFree(Integer tableId, int slot) {
+        Integer row = rowByTableId.get(tableId);
+        return row != null && slot >= 0 && slot < slotCount
+                && (occupied[row * wordsPerTable + (slot >>> 6)] & (1L << slot)) == 0;
+    }
+
+    /**
+     * Free tables of every slot of the day, in table order.
+     */
+    public synchronized List<List<RestaurantTable>> findFreeTablesBySlot() {
+        List<List<RestaurantTable>> freeTables = new ArrayList<>(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            freeTables.add(new ArrayList<>());
+        }
+        for (int row = 0; row < tables.size(); row++) {
+            for (int word = 0; word < wordsPerTable; word++) {
+                long free = ~occupied[row * wordsPerTable + word] & validMask(word);
+                while (free != 0) {
+                    freeTables.get((word << 6) + Long.numberOfTrailingZeros(free)).add(tables.get(row));
+                    free &= free - 1;
+                }
+            }
+        }
+        return freeTables;
+    }
+
+    /**
+     * Number of free tables of every slot of the day.
+     */
+    public synchronized int[] countFreeTablesBySlot() {
+        int[] counts = new int[slotCount];
+        for (int row = 0; row < tables.size(); row++) {
+            for (int word = 0; word < wordsPerTable; word++) {
+                long free = ~occupied[row * wordsPerTable + word] & validMask(word);
+                while (free != 0) {
+                    counts[(word << 6) + Long.numberOfTrailingZeros(free)]++;
+                    free &= free - 1;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Tables free during each of the slots [fromSlot, fromSlot + length).
+     */
+    public synchronized List<RestaurantTable> findTablesFreeFor(int fromSlot, int length) {
+        List<RestaurantTable> freeTables = new ArrayList<>();
+        if (fromSlot < 0 || length <= 0 || fromSlot + length > slotCount) {
+            return freeTables;
+        }
+        long[] range = new long[wordsPerTable];
+        setBits(range, 0, fromSlot, fromSlot + length);
+        for (int row = 0; row < tables.size(); row++) {
+            boolean free = true;
+            for (int word = 0; word < wordsPerTable && free; word++) {
+                free = (occupied[row * wordsPerTable + word] & range[word]) == 0;
+            }
+            if (free) {
+                freeTables.add(tables.get(row));
+            }
+        }
+        return freeTables;
+    }
+
+    /**
+     * First slot at or after fromSlot starting `length` free slots of the table, or -1.
+     */
+    public synchronized int findFirstFreeRun(Integer tableId, int length, int fromSlot) {
+        Integer row = rowByTableId.get(tableId);
+        if (row == null || length <= 0) {
+            return -1;
+        }
+        return firstRunStart(runStarts(row, length), Math.max(fromSlot, 0));
+    }
+
+    /**
+     * Table with the earliest run of `length` free slots at or after fromSlot, ties going to
+     * the first table, or null when no table has one.
+     */
+    public synchronized RestaurantTable findFirstTableFreeFor(int length, int fromSlot) {
+        RestaurantTable bestTable = null;
+        int bestSlot = Integer.MAX_VALUE;
+        for (int row = 0; row < tables.size() && length > 0; row++) {
+            int slot = firstRunStart(runStarts(row, length), Math.max(fromSlot, 0));
+            if (slot >= 0 && slot < bestSlot) {
+                bestSlot = slot;
+                bestTable = tables.get(row);
+            }
+        }
+        return bestTable;
+    }
+
+    /**
+     * Bitset of the slots starting a run of at least `length` free slots: the free bits are
+     * and-ed with themselves shifted by doubling distances, as in x & x>>1, then & x>>2, ...
+     */
+    private long[] runStarts(int row, int length) {
+        long[] runs = new long[wordsPerTable];
+        for (int word = 0; word < wordsPerTable; word++) {
+            runs[word] = ~occupied[row * wordsPerTable + word] & validMask(word);
+        }
+        int covered = 1;
+        while (covered < length) {
+            int shift = Math.min(covered, length - covered);
+            andShiftedDown(runs, shift);
+            covered += shift;
+        }
+        return runs;
+    }
+
+    private static void andShiftedDown(long[] bits, int shift) {
+        int wordShift = shift >>> 6;
+        int bitShift = shift & 63;
+        for (int word = 0; word < bits.length; word++) {
+            int source = word + wordShift;
+            long low = source < bits.length ? bits[source] : 0;
+            long high = source + 1 < bits.length ? bits[source + 1] : 0;
+            long shifted = bitShift == 0 ? low : (low >>> bitShift) | (high << (64 - bitShift));
+            bits[word] &= shifted;
+        }
+    }
+
+    private int firstRunStart(long[] runs, int fromSlot) {
+        for (int word = fromSlot >>> 6; word < wordsPerTable; word++) {
+            long candidates = runs[word];
+            if (word == fromSlot >>> 6) {
+                candidates &= -1L << fromSlot;
+            }
+            if (candidates != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(candidates);
+            }
+        }
+        return -1;
+    }
+
+    private void setRange(int row, int from, int to) {
+        setBits(occupied, row * wordsPerTable, from, to);
+    }
+
+    /**
+     * Recomputes a row from its remaining bookings: two bookings may share a partially
+     * used slot, so the slots of a moved booking cannot simply be cleared.
+     */
+    private void rebuildRow(int row) {
+        for (int word = 0; word < wordsPerTable; word++) {
+            occupied[row * wordsPerTable + word] = 0;
+        }
+        for (long[] booking : bookingByOrderId.values()) {
+            if (booking[0] == row) {
+                setRange(row, (int) booking[1], (int) booking[2]);
+            }
+        }
+    }
+
+    private static void setBits(long[] bits, int offset, int from, int to) {
+        for (int word = from >>> 6; word <= (to - 1) >>> 6; word++) {
+            long mask = -1L;
+            if (word == from >>> 6) {
+                mask &= -1L << from;
+            }
+            if (word == (to - 1) >>> 6) {
+                mask &= -1L >>> (63 - ((to - 1) & 63));
+            }
+            bits[offset + word] |= mask;
+        }
+    }
+
+    private long validMask(int word) {
+        int remaining = slotCount - (word << 6);
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
+    }
+
+    private int slotAt(Instant instant, boolean roundUp) {
+        long seconds = instant.getEpochSecond() - start.getEpochSecond();
+        long slot = roundUp ? Math.ceilDiv(seconds, slotSeconds) : Math.floorDiv(seconds, slotSeconds);
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, slot));
+    }
+}
@@ -0,0 +1,21 @@
+import java.time.Instant;
+import java.util.List;
+
+public interface TableRepository {
+    RestaurantTable saveTable(RestaurantTable table);
+
+    List<RestaurantTable> findAllTables();
+
+    List<RestaurantTable> findAvailableTables(Instant from, Instant to);
+
+    /**
+     * Orders whose table is booked for part of [from, to), without their dish orders.
+     */
+    List<Order> findTableBookings(Instant from, Instant to);
+
+    /**
+     * Orders with a table created or updated at or after since, without their dish orders,
+     * ordered by id; every booked order when since is null.
+     */
+    List<Order> findTableBookingsUpdatedSince(Instant since);
+}
@@ -0,0 +1,83 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * The restaurant the current thread works for, which RoutingDBConnection routes to its
+ * shard. Work of a tenant holds its read lock, so that ShardMover can pause the tenant
+ * while its data is copied: calls made meanwhile wait rather than fail.
+ */
+public final class TenantContext {
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+    private static final Map<String, ReentrantReadWriteLock> LOCKS = new ConcurrentHashMap<>();
+
+    private TenantContext() {
+    }
+
+    public static <T> T run(String tenant, Supplier<T> work) {
+        if (tenant.equals(CURRENT.get())) {
+            return work.get();
+        }
+        ReentrantReadWriteLock.ReadLock lock = lockOf(tenant).readLock();
+        lock.lock();
+        try {
+            return withCurrent(tenant, work);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static void run(String tenant, Runnable work) {
+        run(tenant, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Tenant of the current thread, null outside of run.
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    public static String require() {
+        String tenant = CURRENT.get();
+        if (tenant == null) {
+            throw new IllegalStateException("No restaurant bound to the current thread");
+        }
+        return tenant;
+    }
+
+    /**
+     * Runs work once every call of the tenant in progress has finished, holding off new ones.
+     */
+    static <T> T exclusive(String tenant, Supplier<T> work) {
+        ReentrantReadWriteLock.WriteLock lock = lockOf(tenant).writeLock();
+        lock.lock();
+        try {
+            return withCurrent(tenant, work);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static <T> T withCurrent(String tenant, Supplier<T> work) {
+        String outer = CURRENT.get();
+        CURRENT.set(tenant);
+        try {
+            return work.get();
+        } finally {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+
+    private static ReentrantReadWriteLock lockOf(String tenant) {
+        return LOCKS.computeIfAbsent(tenant, key -> new ReentrantReadWriteLock(true));
+    }
+}
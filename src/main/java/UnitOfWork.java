@@ -0,0 +1,126 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Binds one connection and transaction to the current thread for the duration of a
+ * scope, so that several DataRetriever calls share it and commit or roll back together.
+ * Nested scopes join the outer transaction. A scope belongs to its DBConnection and to the
+ * restaurant of the TenantContext it was opened for: using it through another DBConnection
+ * or for another restaurant fails rather than writing to the wrong database.
+ */
+public class UnitOfWork {
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<List<Runnable>> AFTER_COMMIT = new ThreadLocal<>();
+
+    private final DBConnection dbConnection;
+
+    public UnitOfWork() {
+        this(new DBConnection());
+    }
+
+    public UnitOfWork(DBConnection dbConnection) {
+        this.dbConnection = dbConnection;
+    }
+
+    public <T> T execute(Supplier<T> work) {
+        return execute(Connection.TRANSACTION_READ_COMMITTED, work);
+    }
+
+    public <T> T execute(int isolationLevel, Supplier<T> work) {
+        if (currentConnection(dbConnection) != null) {
+            return work.get();
+        }
+        Connection connection = dbConnection.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(isolationLevel);
+            CURRENT.set(new Scope(dbConnection, TenantContext.current(), connection));
+            AFTER_COMMIT.set(new ArrayList<>());
+            T result = work.get();
+            connection.commit();
+            List<Runnable> callbacks = AFTER_COMMIT.get();
+            AFTER_COMMIT.remove();
+            CURRENT.remove();
+            callbacks.forEach(Runnable::run);
+            return result;
+        } catch (SQLException e) {
+            rollback(connection);
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            rollback(connection);
+            throw e;
+        } finally {
+            CURRENT.remove();
+            AFTER_COMMIT.remove();
+            dbConnection.closeConnection(connection);
+        }
+    }
+
+    public void run(Runnable work) {
+        run(Connection.TRANSACTION_READ_COMMITTED, work);
+    }
+
+    public void run(int isolationLevel, Runnable work) {
+        execute(isolationLevel, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the callback once the current scope commits, or right away outside of any scope.
+     * Callbacks of a rolled back scope are dropped.
+     */
+    static void afterCommit(Runnable callback) {
+        List<Runnable> callbacks = AFTER_COMMIT.get();
+        if (callbacks == null) {
+            callback.run();
+        } else {
+            callbacks.add(callback);
+        }
+    }
+
+    /**
+     * Connection of the current scope, null outside of any scope. Fails when the scope was
+     * opened through another DBConnection or for another restaurant.
+     */
+    static Connection currentConnection(DBConnection dbConnection) {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            return null;
+        }
+        if (!sameDatabase(scope.dbConnection(), dbConnection)) {
+            throw new IllegalStateException("A unit of work of another database is open on this thread");
+        }
+        if (!Objects.equals(scope.tenant(), TenantContext.current())) {
+            throw new IllegalStateException("The unit of work of restaurant " + scope.tenant()
+                    + " cannot be used for restaurant " + TenantContext.current());
+        }
+        return scope.connection();
+    }
+
+    static boolean isOpen() {
+        return CURRENT.get() != null;
+    }
+
+    // Plain DBConnections to the same database and user are interchangeable.
+    private static boolean sameDatabase(DBConnection left, DBConnection right) {
+        return left == right || left.getClass() == DBConnection.class && right.getClass() == DBConnection.class
+                && Objects.equals(left.getUrl(), right.getUrl()) && Objects.equals(left.getUser(), right.getUser());
+    }
+
+    private record Scope(DBConnection dbConnection, String tenant, Connection connection) {
+    }
+
+    private static void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            // The original failure is more useful to the caller than the rollback one.
+        }
+    }
+}
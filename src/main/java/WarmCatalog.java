@@ -0,0 +1,72 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The catalog a node starts from: the CatalogSnapshot file left by its previous run when
+ * there is a valid one, reconciled with the database in the background, otherwise a fresh
+ * snapshot loaded from the database. Every reconciled snapshot is written back to the file
+ * for the next start. Bookings cover bookingWindow from the time of loading.
+ */
+public class WarmCatalog implements AutoCloseable {
+    private final DataStore dataStore;
+    private final Path path;
+    private final Duration bookingWindow;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-snapshot-reconcile");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile CatalogSnapshot snapshot;
+
+    private WarmCatalog(DataStore dataStore, Path path, Duration bookingWindow) {
+        this.dataStore = dataStore;
+        this.path = path;
+        this.bookingWindow = bookingWindow;
+    }
+
+    public static WarmCatalog start(DataStore dataStore, Path path, Duration bookingWindow) {
+        WarmCatalog catalog = new WarmCatalog(dataStore, path, bookingWindow);
+        if (Files.exists(path)) {
+            try {
+                catalog.snapshot = CatalogSnapshot.read(path);
+                catalog.reconcileInBackground();
+                return catalog;
+            } catch (RuntimeException e) {
+                System.err.println("[WARN] Ignoring catalog snapshot: " + e.getMessage());
+            }
+        }
+        Instant now = Instant.now();
+        catalog.snapshot = CatalogSnapshot.capture(dataStore, now, now.plus(bookingWindow));
+        catalog.snapshot.write(path);
+        return catalog;
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Brings the snapshot up to date with the database and writes it to the file.
+     */
+    public synchronized CatalogSnapshot reconcile() {
+        Instant now = Instant.now();
+        CatalogSnapshot reconciled = snapshot.reconcile(dataStore, now, now.plus(bookingWindow));
+        reconciled.write(path);
+        snapshot = reconciled;
+        return reconciled;
+    }
+
+    public CompletableFuture<CatalogSnapshot> reconcileInBackground() {
+        return CompletableFuture.supplyAsync(this::reconcile, executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
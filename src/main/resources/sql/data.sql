@@ -1,5 +1,5 @@
 insert into dish (id, name, dish_type, selling_price)
-values (1, 'Salaide fraîche', 'STARTER', 3500.0),
+values (1, 'Salaide fraîche', 'START', 3500.0),
        (2, 'Poulet grillé', 'MAIN', 12000.0),
        (3, 'Riz aux légumes', 'MAIN', null),
        (4, 'Gâteau au chocolat ', 'DESSERT', 8000.0),
@@ -16,11 +16,11 @@ values (1, 'Laitue', 'VEGETABLE', 800.0),
 
 
 update dish
-set price = 2000.0
+set selling_price = 2000.0
 where id = 1;
 
 update dish
-set price = 6000.0
+set selling_price = 6000.0
 where id = 2;
 
 
@@ -37,9 +37,15 @@ values (1, 1, 5.0, 'IN', 'KG', '2024-01-05 08:00'),
        (10, 5, 0.2, 'OUT', 'KG', '2024-01-06 14:00');
 
 
-insert into dish_ingredient (id, id_dish, id_ingredient, required_quantity, unit)
+insert into dish_ingredient (id, id_dish, id_ingredient, quantity_required, unit)
 values (1, 1, 1, 0.2, 'KG'),
        (2, 1, 2, 0.15, 'KG'),
        (3, 2, 3, 1.0, 'KG'),
        (4, 4, 4, 0.3, 'KG'),
        (5, 4, 5, 0.2, 'KG');
+
+
+select setval(pg_get_serial_sequence('dish', 'id'), coalesce(max(id), 0) + 1, false) from dish;
+select setval(pg_get_serial_sequence('ingredient', 'id'), coalesce(max(id), 0) + 1, false) from ingredient;
+select setval(pg_get_serial_sequence('dish_ingredient', 'id'), coalesce(max(id), 0) + 1, false) from dish_ingredient;
+select setval(pg_get_serial_sequence('stock_movement', 'id'), coalesce(max(id), 0) + 1, false) from stock_movement;
@@ -0,0 +1,44 @@
+-- Every price an ingredient had, valid over [valid_from, valid_to); valid_to is null for
+-- the current one. The primary key index serves as-of lookups and range scans.
+create table if not exists ingredient_price
+(
+    id_ingredient int                         not null references ingredient (id),
+    price         numeric(10, 2)              not null,
+    valid_from    timestamp without time zone not null,
+    valid_to      timestamp without time zone,
+    primary key (id_ingredient, valid_from),
+    check (valid_to is null or valid_to > valid_from)
+);
+
+-- Prices known before the history started are taken as valid since always.
+insert into ingredient_price (id_ingredient, price, valid_from)
+select id, price, timestamp '1970-01-01'
+from ingredient
+where price is not null
+on conflict do nothing;
+
+-- Recorded by trigger so that every writer of ingredient.price keeps the history. The
+-- JDBC driver sets the session time zone to the JVM one, like the other timestamps.
+create or replace function record_ingredient_price() returns trigger
+    language plpgsql as
+$$
+begin
+    if new.price is null or (tg_op = 'UPDATE' and new.price is not distinct from old.price) then
+        return null;
+    end if;
+    update ingredient_price
+    set valid_to = localtimestamp
+    where id_ingredient = new.id
+      and valid_to is null
+      and valid_from < localtimestamp;
+    insert into ingredient_price (id_ingredient, price, valid_from)
+    values (new.id, new.price, localtimestamp)
+    on conflict (id_ingredient, valid_from) do update set price = excluded.price, valid_to = null;
+    return null;
+end
+$$;
+
+drop trigger if exists ingredient_price_history on ingredient;
+create trigger ingredient_price_history
+    after insert or update of price on ingredient
+    for each row execute function record_ingredient_price();
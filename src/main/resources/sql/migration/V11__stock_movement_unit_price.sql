@@ -0,0 +1,15 @@
+-- Purchase price of each IN lot, consumed first in first out by FifoCostLedger.
+alter table stock_movement
+    add column if not exists unit_price numeric(10, 2);
+
+-- Lots received before the column existed are valued at the ingredient price of that time.
+update stock_movement sm
+set unit_price = coalesce((select ip.price
+                           from ingredient_price ip
+                           where ip.id_ingredient = sm.id_ingredient
+                             and ip.valid_from <= sm.creation_datetime
+                           order by ip.valid_from desc
+                           limit 1),
+                          (select i.price from ingredient i where i.id = sm.id_ingredient))
+where sm.type = 'IN'
+  and sm.unit_price is null;
@@ -0,0 +1,15 @@
+-- Perishable lots: an IN movement may expire, and an OUT movement may name the IN lot
+-- it consumed (no foreign key: the primary key of the partitioned table is (id, creation_datetime)).
+alter table stock_movement
+    add column if not exists expiry_datetime timestamp,
+    add column if not exists id_lot          int;
+
+-- "Expiring within N hours": only IN lots with an expiry are indexed.
+create index if not exists stock_movement_expiry_idx
+    on stock_movement (expiry_datetime)
+    where type = 'IN' and expiry_datetime is not null;
+
+-- Consumption of a lot, to know what is left of it.
+create index if not exists stock_movement_id_lot_idx
+    on stock_movement (id_lot)
+    where id_lot is not null;
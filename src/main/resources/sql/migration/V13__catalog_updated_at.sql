@@ -0,0 +1,55 @@
+-- Last change of the entities a CatalogSnapshot holds, so that a node starting from one
+-- reloads only what changed since it was taken. Deleted rows are not seen.
+alter table dish
+    add column if not exists updated_at timestamp not null default now();
+alter table ingredient
+    add column if not exists updated_at timestamp not null default now();
+alter table "order"
+    add column if not exists updated_at timestamp not null default now();
+
+create or replace function touch_updated_at() returns trigger
+    language plpgsql as
+$$
+begin
+    new.updated_at := now();
+    return new;
+end
+$$;
+
+drop trigger if exists dish_touch_updated_at on dish;
+create trigger dish_touch_updated_at
+    before update on dish
+    for each row execute function touch_updated_at();
+
+drop trigger if exists ingredient_touch_updated_at on ingredient;
+create trigger ingredient_touch_updated_at
+    before update on ingredient
+    for each row execute function touch_updated_at();
+
+drop trigger if exists order_touch_updated_at on "order";
+create trigger order_touch_updated_at
+    before update on "order"
+    for each row execute function touch_updated_at();
+
+-- A recipe change is a change of its dish. The dish row is updated once per transaction,
+-- however many of its dish_ingredient rows saveDish replaces.
+create or replace function touch_dish_of_dish_ingredient() returns trigger
+    language plpgsql as
+$$
+begin
+    update dish
+    set updated_at = now()
+    where id in (old.id_dish, new.id_dish)
+      and updated_at is distinct from now();
+    return null;
+end
+$$;
+
+drop trigger if exists dish_ingredient_touch_dish on dish_ingredient;
+create trigger dish_ingredient_touch_dish
+    after insert or update or delete on dish_ingredient
+    for each row execute function touch_dish_of_dish_ingredient();
+
+create index if not exists dish_updated_at_idx on dish (updated_at);
+create index if not exists ingredient_updated_at_idx on ingredient (updated_at);
+create index if not exists order_updated_at_idx on "order" (updated_at);
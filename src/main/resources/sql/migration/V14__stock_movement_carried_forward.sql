@@ -0,0 +1,4 @@
+-- Marks the OUT movement that carries an archived month's shortage into the next month.
+-- It keeps stock values right but was already costed in its own month.
+alter table stock_movement
+    add column if not exists carried_forward boolean not null default false;
@@ -1,16 +1,26 @@
-create type dish_type as enum ('STARTER', 'MAIN', 'DESSERT');
-
-
-create table dish
+do $$
+begin
+    create type dish_type as enum ('START', 'MAIN', 'DESSERT');
+exception
+    when duplicate_object then null;
+end $$;
+
+create table if not exists dish
 (
-    id        serial primary key,
-    name      varchar(255),
-    dish_type dish_type
+    id            serial primary key,
+    name          varchar(255),
+    dish_type     dish_type,
+    selling_price numeric(10, 2)
 );
 
-create type ingredient_category as enum ('VEGETABLE', 'ANIMAL', 'MARINE', 'DAIRY', 'OTHER');
+do $$
+begin
+    create type ingredient_category as enum ('VEGETABLE', 'ANIMAL', 'MARINE', 'DAIRY', 'OTHER');
+exception
+    when duplicate_object then null;
+end $$;
 
-create table ingredient
+create table if not exists ingredient
 (
     id       serial primary key,
     name     varchar(255),
@@ -18,35 +28,30 @@ create table ingredient
     category ingredient_category
 );
 
-alter table dish
-    add column if not exists price numeric(10, 2);
-
-alter table dish
-    rename column price to selling_price;
-
-alter table ingredient
-    drop column if exists id_dish;
-
-alter table ingredient
-    add column if not exists required_quantity numeric(10, 2);
-
-alter table ingredient
-    drop column if exists required_quantity;
-
-create type unit as enum ('PCS', 'KG', 'L');
+do $$
+begin
+    create type unit as enum ('PCS', 'KG', 'L');
+exception
+    when duplicate_object then null;
+end $$;
 
 create table if not exists dish_ingredient
 (
     id                serial primary key,
     id_ingredient     int,
     id_dish           int,
-    required_quantity numeric(10, 2),
+    quantity_required numeric(10, 2),
     unit              unit,
     foreign key (id_ingredient) references ingredient (id),
     foreign key (id_dish) references dish (id)
 );
 
-create type movement_type as enum ('IN', 'OUT');
+do $$
+begin
+    create type movement_type as enum ('IN', 'OUT');
+exception
+    when duplicate_object then null;
+end $$;
 
 create table if not exists stock_movement
 (
@@ -59,7 +64,6 @@ create table if not exists stock_movement
     foreign key (id_ingredient) references ingredient (id)
 );
 
-
 alter table ingredient
     add column if not exists initial_stock numeric(10, 2);
 
@@ -76,4 +80,4 @@ create table if not exists dish_order
     id_order int references "order" (id),
     id_dish  int references dish (id),
     quantity int
-);
\ No newline at end of file
+);
@@ -3,5 +3,5 @@ CREATE TABLE
 
 ALTER TABLE "order"
 ADD COLUMN IF NOT EXISTS id_table INT REFERENCES restaurant_table (id),
-ADD COLUMN IF NOT EXISTS installation_date TIMESTAMP WITHOUT TIME ZONE,
-ADD COLUMN IF NOT EXISTS departure_date TIMESTAMP WITHOUT TIME ZONE;
+ADD COLUMN IF NOT EXISTS installation_datetime TIMESTAMP WITHOUT TIME ZONE,
+ADD COLUMN IF NOT EXISTS departure_datetime TIMESTAMP WITHOUT TIME ZONE;
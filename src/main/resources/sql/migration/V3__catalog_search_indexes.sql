@@ -0,0 +1,45 @@
+-- Keyset pagination and filtering of the catalog listings
+CREATE INDEX IF NOT EXISTS dish_dish_type_id_idx ON dish (dish_type, id);
+CREATE INDEX IF NOT EXISTS dish_selling_price_idx ON dish (selling_price);
+CREATE INDEX IF NOT EXISTS dish_name_prefix_idx ON dish (name text_pattern_ops);
+
+CREATE INDEX IF NOT EXISTS ingredient_category_id_idx ON ingredient (category, id);
+CREATE INDEX IF NOT EXISTS ingredient_price_idx ON ingredient (price);
+CREATE INDEX IF NOT EXISTS ingredient_name_prefix_idx ON ingredient (name text_pattern_ops);
+
+CREATE INDEX IF NOT EXISTS order_creation_datetime_id_idx ON "order" (creation_datetime, id);
+CREATE INDEX IF NOT EXISTS order_id_table_creation_datetime_idx ON "order" (id_table, creation_datetime, id);
+
+-- Accent-insensitive fuzzy name search, when the server ships pg_trgm and unaccent;
+-- without them the application searches an in-memory index instead.
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm SCHEMA public;
+    CREATE EXTENSION IF NOT EXISTS unaccent SCHEMA public;
+EXCEPTION WHEN OTHERS THEN
+    RAISE NOTICE 'Fuzzy name search extensions unavailable: %', SQLERRM;
+END $$;
+
+DO $$
+BEGIN
+    IF (SELECT count(*) FROM pg_extension WHERE extname IN ('pg_trgm', 'unaccent')) = 2 THEN
+        CREATE OR REPLACE FUNCTION immutable_unaccent(text) RETURNS text
+            LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+        AS $fn$ SELECT public.unaccent('public.unaccent', $1) $fn$;
+
+        CREATE INDEX IF NOT EXISTS dish_name_trgm_idx ON dish USING gin (lower(immutable_unaccent(name)) gin_trgm_ops);
+        CREATE INDEX IF NOT EXISTS ingredient_name_trgm_idx ON ingredient USING gin (lower(immutable_unaccent(name)) gin_trgm_ops);
+    END IF;
+END $$;
+
+-- Exact lookup of an order by its reference. References were not unique before:
+-- every duplicate but the first is renamed after its id.
+UPDATE "order" o
+SET reference = left(o.reference, 240) || '#' || o.id
+FROM (SELECT id, row_number() OVER (PARTITION BY reference ORDER BY id) AS rank
+      FROM "order"
+      WHERE reference IS NOT NULL) duplicate
+WHERE duplicate.id = o.id
+  AND duplicate.rank > 1;
+
+CREATE UNIQUE INDEX IF NOT EXISTS order_reference_key ON "order" (reference);
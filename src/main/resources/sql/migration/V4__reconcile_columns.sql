@@ -0,0 +1,49 @@
+-- Databases built by hand from the former scripts used other column names than DataRetriever.
+do $$
+declare
+    renames text[][] := array [
+        ['order', 'installation_date', 'installation_datetime'],
+        ['order', 'departure_date', 'departure_datetime'],
+        ['dish_ingredient', 'required_quantity', 'quantity_required']
+    ];
+    i int;
+    legacy_exists boolean;
+    current_exists boolean;
+begin
+    for i in 1 .. array_length(renames, 1)
+        loop
+            select exists(select 1 from information_schema.columns
+                          where table_schema = current_schema()
+                            and table_name = renames[i][1] and column_name = renames[i][2])
+            into legacy_exists;
+            select exists(select 1 from information_schema.columns
+                          where table_schema = current_schema()
+                            and table_name = renames[i][1] and column_name = renames[i][3])
+            into current_exists;
+
+            if legacy_exists and not current_exists then
+                execute format('alter table %I rename column %I to %I', renames[i][1], renames[i][2], renames[i][3]);
+            elsif legacy_exists and current_exists then
+                execute format('update %I set %I = coalesce(%I, %I)',
+                               renames[i][1], renames[i][3], renames[i][3], renames[i][2]);
+                execute format('alter table %I drop column %I', renames[i][1], renames[i][2]);
+            end if;
+        end loop;
+end $$;
+
+-- DishTypeEnum names the first course START, the former schema named it STARTER.
+do $$
+begin
+    if exists(select 1 from pg_enum e join pg_type t on t.oid = e.enumtypid
+              where t.typname = 'dish_type' and e.enumlabel = 'STARTER') then
+        alter type dish_type rename value 'STARTER' to 'START';
+    end if;
+end $$;
+
+alter table "order"
+    drop constraint if exists order_departure_after_installation;
+
+alter table "order"
+    add constraint order_departure_after_installation
+        check (departure_datetime is null or installation_datetime is null
+            or departure_datetime > installation_datetime);
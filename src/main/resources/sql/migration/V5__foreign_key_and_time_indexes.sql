@@ -0,0 +1,14 @@
+-- Foreign keys used by the joins of DataRetriever
+CREATE INDEX IF NOT EXISTS dish_ingredient_id_dish_idx ON dish_ingredient (id_dish);
+CREATE INDEX IF NOT EXISTS dish_ingredient_id_ingredient_idx ON dish_ingredient (id_ingredient);
+CREATE INDEX IF NOT EXISTS dish_order_id_order_idx ON dish_order (id_order);
+CREATE INDEX IF NOT EXISTS dish_order_id_dish_idx ON dish_order (id_dish);
+
+-- Stock of an ingredient at an instant
+CREATE INDEX IF NOT EXISTS stock_movement_id_ingredient_creation_datetime_idx
+    ON stock_movement (id_ingredient, creation_datetime);
+
+-- Overlapping bookings of a table (findAvailableTables)
+CREATE INDEX IF NOT EXISTS order_id_table_installation_departure_idx
+    ON "order" (id_table, installation_datetime, departure_datetime);
+CREATE INDEX IF NOT EXISTS order_installation_datetime_idx ON "order" (installation_datetime);
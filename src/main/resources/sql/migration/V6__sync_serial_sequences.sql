@@ -0,0 +1,9 @@
+-- Rows inserted with explicit ids (data.sql) leave the serial sequences behind;
+-- DataRetriever now relies on the sequences instead of resyncing them on every insert.
+select setval(pg_get_serial_sequence('dish', 'id'), coalesce(max(id), 0) + 1, false) from dish;
+select setval(pg_get_serial_sequence('ingredient', 'id'), coalesce(max(id), 0) + 1, false) from ingredient;
+select setval(pg_get_serial_sequence('dish_ingredient', 'id'), coalesce(max(id), 0) + 1, false) from dish_ingredient;
+select setval(pg_get_serial_sequence('stock_movement', 'id'), coalesce(max(id), 0) + 1, false) from stock_movement;
+select setval(pg_get_serial_sequence('"order"', 'id'), coalesce(max(id), 0) + 1, false) from "order";
+select setval(pg_get_serial_sequence('dish_order', 'id'), coalesce(max(id), 0) + 1, false) from dish_order;
+select setval(pg_get_serial_sequence('restaurant_table', 'id'), coalesce(max(id), 0) + 1, false) from restaurant_table;
@@ -0,0 +1,9 @@
+-- Seats of each table, used to assign reservations by party size
+alter table restaurant_table
+    add column if not exists capacity int not null default 4;
+
+alter table restaurant_table
+    drop constraint if exists restaurant_table_capacity_positive;
+
+alter table restaurant_table
+    add constraint restaurant_table_capacity_positive check (capacity > 0);
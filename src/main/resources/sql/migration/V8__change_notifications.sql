@@ -0,0 +1,78 @@
+-- Every committed change of a cached entity is announced on the catalog_change channel,
+-- as '<entity>:<id>', and 'reset' when a table is truncated. NOTIFY drops identical
+-- payloads of one transaction, so batch inserts send one message per entity.
+-- Trigger arguments: the entity announced and the column holding its id.
+create or replace function notify_catalog_change() returns trigger
+    language plpgsql as
+$$
+declare
+    changed jsonb;
+begin
+    if tg_op = 'DELETE' then
+        changed := to_jsonb(old);
+    else
+        changed := to_jsonb(new);
+    end if;
+    perform pg_notify('catalog_change', tg_argv[0] || ':' || (changed ->> tg_argv[1]));
+    return null;
+end
+$$;
+
+create or replace function notify_catalog_reset() returns trigger
+    language plpgsql as
+$$
+begin
+    perform pg_notify('catalog_change', 'reset');
+    return null;
+end
+$$;
+
+drop trigger if exists dish_change_notification on dish;
+create trigger dish_change_notification
+    after insert or update or delete on dish
+    for each row execute function notify_catalog_change('dish', 'id');
+
+drop trigger if exists dish_ingredient_change_notification on dish_ingredient;
+create trigger dish_ingredient_change_notification
+    after insert or update or delete on dish_ingredient
+    for each row execute function notify_catalog_change('dish', 'id_dish');
+
+drop trigger if exists ingredient_change_notification on ingredient;
+create trigger ingredient_change_notification
+    after insert or update or delete on ingredient
+    for each row execute function notify_catalog_change('ingredient', 'id');
+
+drop trigger if exists stock_movement_change_notification on stock_movement;
+create trigger stock_movement_change_notification
+    after insert or update or delete on stock_movement
+    for each row execute function notify_catalog_change('ingredient', 'id_ingredient');
+
+drop trigger if exists order_change_notification on "order";
+create trigger order_change_notification
+    after insert or update or delete on "order"
+    for each row execute function notify_catalog_change('order', 'id');
+
+drop trigger if exists dish_truncate_notification on dish;
+create trigger dish_truncate_notification
+    after truncate on dish
+    for each statement execute function notify_catalog_reset();
+
+drop trigger if exists dish_ingredient_truncate_notification on dish_ingredient;
+create trigger dish_ingredient_truncate_notification
+    after truncate on dish_ingredient
+    for each statement execute function notify_catalog_reset();
+
+drop trigger if exists ingredient_truncate_notification on ingredient;
+create trigger ingredient_truncate_notification
+    after truncate on ingredient
+    for each statement execute function notify_catalog_reset();
+
+drop trigger if exists stock_movement_truncate_notification on stock_movement;
+create trigger stock_movement_truncate_notification
+    after truncate on stock_movement
+    for each statement execute function notify_catalog_reset();
+
+drop trigger if exists order_truncate_notification on "order";
+create trigger order_truncate_notification
+    after truncate on "order"
+    for each statement execute function notify_catalog_reset();
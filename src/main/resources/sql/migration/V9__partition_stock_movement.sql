@@ -0,0 +1,90 @@
+-- stock_movement becomes range-partitioned by month on creation_datetime, one
+-- partition per month named stock_movement_yYYYYmMM; see PartitionManager.
+create or replace function ensure_stock_movement_partition(month date) returns text
+    language plpgsql as
+$$
+declare
+    month_start    date := date_trunc('month', month)::date;
+    partition_name text := format('stock_movement_y%sm%s', to_char(month_start, 'YYYY'), to_char(month_start, 'MM'));
+begin
+    if to_regclass(partition_name) is null then
+        -- Rows of that month already in the default partition would block the new one: move them.
+        create temporary table stock_movement_moved on commit drop as
+        select * from stock_movement_default
+        where creation_datetime >= month_start and creation_datetime < month_start + interval '1 month';
+        delete from stock_movement_default
+        where creation_datetime >= month_start and creation_datetime < month_start + interval '1 month';
+        execute format('create table %I partition of stock_movement for values from (%L) to (%L)',
+                       partition_name, month_start, (month_start + interval '1 month')::date);
+        insert into stock_movement select * from stock_movement_moved;
+        drop table stock_movement_moved;
+    end if;
+    return partition_name;
+end
+$$;
+
+do $$
+declare
+    id_sequence text := pg_get_serial_sequence('stock_movement', 'id');
+    month       timestamp;
+begin
+    if exists(select 1 from pg_partitioned_table where partrelid = 'stock_movement'::regclass) then
+        return;
+    end if;
+
+    -- The id sequence outlives the former table.
+    execute format('alter sequence %s owned by none', id_sequence);
+    alter table stock_movement rename to stock_movement_unpartitioned;
+    alter index stock_movement_pkey rename to stock_movement_unpartitioned_pkey;
+    alter index if exists stock_movement_id_ingredient_creation_datetime_idx
+        rename to stock_movement_unpartitioned_id_ingredient_creation_datetime_idx;
+
+    -- The partition key must be part of the primary key.
+    create table stock_movement
+    (
+        id                int not null,
+        id_ingredient     int references ingredient (id),
+        quantity          numeric(10, 2),
+        unit              unit,
+        type              movement_type,
+        creation_datetime timestamp without time zone not null,
+        primary key (id, creation_datetime)
+    ) partition by range (creation_datetime);
+    execute format('alter table stock_movement alter column id set default nextval(%L)', id_sequence);
+    execute format('alter sequence %s owned by stock_movement.id', id_sequence);
+
+    -- Rows outside of every monthly partition; kept empty by creating partitions ahead.
+    create table stock_movement_default partition of stock_movement default;
+
+    for month in select distinct date_trunc('month', creation_datetime)
+                 from stock_movement_unpartitioned
+                 where creation_datetime is not null
+        loop
+            perform ensure_stock_movement_partition(month::date);
+        end loop;
+    for month in select generate_series(date_trunc('month', now()), date_trunc('month', now()) + interval '3 months',
+                                        interval '1 month')
+        loop
+            perform ensure_stock_movement_partition(month::date);
+        end loop;
+
+    -- Movements without a date never had a place in the stock history; they are kept at the epoch.
+    insert into stock_movement (id, id_ingredient, quantity, unit, type, creation_datetime)
+    select id, id_ingredient, quantity, unit, type, coalesce(creation_datetime, timestamp '1970-01-01')
+    from stock_movement_unpartitioned;
+
+    drop table stock_movement_unpartitioned;
+end $$;
+
+create index if not exists stock_movement_id_ingredient_creation_datetime_idx
+    on stock_movement (id_ingredient, creation_datetime);
+
+drop trigger if exists stock_movement_change_notification on stock_movement;
+create trigger stock_movement_change_notification
+    after insert or update or delete on stock_movement
+    for each row execute function notify_catalog_change('ingredient', 'id_ingredient');
+
+drop trigger if exists stock_movement_truncate_notification on stock_movement;
+create trigger stock_movement_truncate_notification
+    after truncate on stock_movement
+    for each statement execute function notify_catalog_reset();